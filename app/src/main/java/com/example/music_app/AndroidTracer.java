@@ -0,0 +1,16 @@
+package com.example.music_app;
+
+import android.os.Trace;
+
+/** Metrics.Tracer ghi ra android.os.Trace để các đoạn đo hiện trong Perfetto / systrace. */
+final class AndroidTracer implements Metrics.Tracer {
+
+    static final AndroidTracer INSTANCE = new AndroidTracer();
+
+    private AndroidTracer() {}
+
+    @Override public void beginSection(String name) { Trace.beginSection(name); }
+    @Override public void endSection() { Trace.endSection(); }
+    @Override public void beginAsyncSection(String name, int cookie) { Trace.beginAsyncSection(name, cookie); }
+    @Override public void endAsyncSection(String name, int cookie) { Trace.endAsyncSection(name, cookie); }
+}
@@ -0,0 +1,205 @@
+package com.example.music_app;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tải ảnh bìa nhúng trong file nhạc: giải mã ở background với inSampleSize vừa kích thước thumbnail,
+ * cache 2 tầng (LruCache trong bộ nhớ tính theo byte + file thumbnail trên đĩa).
+ * Danh sách, mini player và MediaSession dùng chung một cache.
+ */
+public class ArtworkLoader {
+
+    public interface Callback { void onLoaded(Bitmap bitmap); }
+
+    private static final String TAG = "ArtworkLoader";
+    private static final int THUMB_DP = 64;
+    private static final ColorStateList PLACEHOLDER_TINT = ColorStateList.valueOf(Color.WHITE);
+
+    private static ArtworkLoader instance;
+
+    public static synchronized ArtworkLoader get(Context context) {
+        if (instance == null) instance = new ArtworkLoader(context.getApplicationContext());
+        return instance;
+    }
+
+    private final LruCache<String, Bitmap> memory;
+    private final File diskDir;
+    private final int thumbPx;
+    private final Set<String> noArtwork = ConcurrentHashMap.newKeySet();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "artwork"));
+
+    /** Một yêu cầu tải gắn với ImageView; bị huỷ khi view được bind sang bài khác hoặc bị recycle. */
+    private static final class Request {
+        final String path;
+        volatile boolean cancelled;
+        Future<?> future;
+
+        Request(String path) { this.path = path; }
+    }
+
+    private ArtworkLoader(Context context) {
+        int maxKb = (int) (Runtime.getRuntime().maxMemory() / 1024);
+        memory = new LruCache<String, Bitmap>(maxKb / 8) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) { return value.getByteCount() / 1024; }
+        };
+        diskDir = new File(context.getCacheDir(), "artwork");
+        diskDir.mkdirs();
+        thumbPx = Math.round(THUMB_DP * context.getResources().getDisplayMetrics().density);
+    }
+
+    public Bitmap getCached(Song s) {
+        return s != null && s.getPath() != null ? memory.get(s.getPath()) : null;
+    }
+
+    /** Gắn ảnh bìa của bài vào ImageView; chưa có trong bộ nhớ thì hiện placeholder rồi tải ở background. */
+    public void load(Song s, ImageView target) { load(s != null ? s.getPath() : null, target); }
+
+    /** Như load(Song, ImageView) theo path, để adapter bind thẳng từ cột của SongStore mà không tạo Song. */
+    public void load(String path, ImageView target) {
+        cancel(target);
+        Bitmap cached = path != null ? memory.get(path) : null;
+        if (cached != null) {
+            showBitmap(target, cached);
+            return;
+        }
+        showPlaceholder(target);
+        if (path == null || noArtwork.contains(path)) return;
+
+        Request req = new Request(path);
+        target.setTag(R.id.artwork_request, req);
+        req.future = executor.submit(() -> {
+            if (req.cancelled) return;
+            Bitmap bm = loadBlocking(req.path);
+            mainHandler.post(() -> {
+                if (req.cancelled || target.getTag(R.id.artwork_request) != req) return;
+                target.setTag(R.id.artwork_request, null);
+                if (bm != null) showBitmap(target, bm);
+            });
+        });
+    }
+
+    public void cancel(ImageView target) {
+        Object tag = target.getTag(R.id.artwork_request);
+        if (tag instanceof Request) {
+            Request req = (Request) tag;
+            req.cancelled = true;
+            if (req.future != null) req.future.cancel(false);
+        }
+        target.setTag(R.id.artwork_request, null);
+    }
+
+    /** Tải bitmap không gắn với view (MediaSession, notification). Callback chạy trên main thread. */
+    public void loadBitmap(Song s, Callback callback) {
+        Bitmap cached = getCached(s);
+        if (cached != null || s == null || s.getPath() == null || noArtwork.contains(s.getPath())) {
+            callback.onLoaded(cached);
+            return;
+        }
+        String path = s.getPath();
+        executor.execute(() -> {
+            Bitmap bm = loadBlocking(path);
+            mainHandler.post(() -> callback.onLoaded(bm));
+        });
+    }
+
+    private static void showBitmap(ImageView v, Bitmap bm) {
+        v.setImageTintList(null);
+        v.setImageBitmap(bm);
+    }
+
+    private static void showPlaceholder(ImageView v) {
+        v.setImageResource(R.drawable.ic_music_note);
+        v.setImageTintList(PLACEHOLDER_TINT);
+    }
+
+    // ========= BACKGROUND =========
+    private Bitmap loadBlocking(String path) {
+        Bitmap bm = memory.get(path);
+        if (bm != null) return bm;
+
+        File f = new File(path);
+        File thumb = new File(diskDir, Long.toHexString(Song.idForPath(path + ':' + f.length() + ':' + f.lastModified())) + ".jpg");
+        if (thumb.exists()) {
+            bm = BitmapFactory.decodeFile(thumb.getPath(), rgb565());
+            if (bm != null) {
+                memory.put(path, bm);
+                return bm;
+            }
+        }
+
+        byte[] data = null;
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        try {
+            mmr.setDataSource(path);
+            data = mmr.getEmbeddedPicture();
+        } catch (Exception e) {
+            Log.w(TAG, "Không đọc được ảnh bìa: " + path);
+        } finally {
+            try { mmr.release(); } catch (Exception ignored) {}
+        }
+        if (data == null) {
+            noArtwork.add(path);
+            return null;
+        }
+
+        bm = decodeSampled(data, thumbPx);
+        if (bm == null) {
+            noArtwork.add(path);
+            return null;
+        }
+        memory.put(path, bm);
+
+        try (FileOutputStream out = new FileOutputStream(thumb)) {
+            bm.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        } catch (Exception e) {
+            thumb.delete();
+        }
+        return bm;
+    }
+
+    private static BitmapFactory.Options rgb565() {
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inPreferredConfig = Bitmap.Config.RGB_565;
+        return opts;
+    }
+
+    /** Giải mã với inSampleSize lớn nhất mà cạnh ngắn vẫn >= reqPx, không bao giờ giải mã ảnh gốc full size. */
+    static Bitmap decodeSampled(byte[] data, int reqPx) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+        int sample = 1;
+        int minSide = Math.min(bounds.outWidth, bounds.outHeight);
+        while (minSide / (sample * 2) >= reqPx) sample *= 2;
+
+        BitmapFactory.Options opts = rgb565();
+        opts.inSampleSize = sample;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+    }
+}
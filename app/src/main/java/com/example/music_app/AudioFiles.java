@@ -0,0 +1,31 @@
+package com.example.music_app;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/** Liệt kê file nhạc trong một cây thư mục. Không dùng API Android nên đo được trên JVM (module benchmark). */
+final class AudioFiles {
+
+    private AudioFiles() {}
+
+    static boolean isAudioFile(File f) {
+        return f.isFile() && f.getName().toLowerCase().matches(".*\\.(mp3|m4a|wav|aac)$");
+    }
+
+    /** Duyệt cả thư mục con (theo chiều sâu, không đệ quy để tránh tràn stack). */
+    static void collect(File root, List<File> out) {
+        ArrayDeque<File> dirs = new ArrayDeque<>();
+        dirs.push(root);
+        while (!dirs.isEmpty()) {
+            File[] listed = dirs.pop().listFiles();
+            if (listed == null) continue;
+            Arrays.sort(listed);
+            for (int i = listed.length - 1; i >= 0; i--) {
+                if (listed[i].isDirectory()) dirs.push(listed[i]);
+            }
+            for (File f : listed) if (isAudioFile(f)) out.add(f);
+        }
+    }
+}
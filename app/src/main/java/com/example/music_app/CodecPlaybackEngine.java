@@ -0,0 +1,369 @@
+package com.example.music_app;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * PlaybackEngine tự giải mã: MediaExtractor đọc gói nén, MediaCodec giải mã ra PCM 16-bit, AudioTrack phát.
+ * Cả pipeline chạy trên một HandlerThread ưu tiên audio. PCM được ghi thẳng từ các ByteBuffer direct mà
+ * codec cấp phát một lần và tái sử dụng, không copy qua mảng Java.
+ * Seek chính xác tới mẫu: extractor nhảy về sync frame trước đó, phần PCM trước vị trí cần tới bị bỏ đi.
+ * AudioTrack được giữ lại giữa các bài cùng sample rate / số kênh.
+ */
+public class CodecPlaybackEngine implements PlaybackEngine {
+
+    private static final long DEQUEUE_TIMEOUT_US = 10_000;
+
+    private final Context context;
+    private final HandlerThread thread;
+    private final Handler audio;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Runnable pump = this::pumpOnce;
+    private Listener listener;
+
+    // Đọc từ main thread, ghi từ cả hai thread
+    private volatile int generation;    // tăng mỗi lần reset, việc của lần prepare cũ bị bỏ qua
+    private volatile boolean prepared;
+    private volatile boolean playing;
+    private volatile int durationMs;
+    private volatile long baseUs;       // vị trí ứng với frame đầu tiên ghi vào AudioTrack kể từ lần flush gần nhất
+    private volatile int seekingToMs = -1;
+    private volatile float volume = 1f;
+    private volatile boolean released;
+    private volatile AudioTrack track;
+    private volatile int sampleRate;
+
+    // Chỉ dùng trên audio thread
+    private MediaExtractor extractor;
+    private MediaCodec codec;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private int channels;
+    private int frameBytes;
+    private long framesWritten;         // kể từ lần flush gần nhất
+    private long skipUntilUs = -1;
+    private boolean inputDone, outputDone;
+
+    public CodecPlaybackEngine(Context context) {
+        this.context = context.getApplicationContext();
+        thread = new HandlerThread("codec-audio", Process.THREAD_PRIORITY_AUDIO);
+        thread.start();
+        audio = new Handler(thread.getLooper());
+    }
+
+    @Override public void setListener(Listener listener) { this.listener = listener; }
+
+    @Override
+    public void prepare(String path) {
+        int gen = generation;
+        audio.post(() -> {
+            if (gen != generation) return;
+            try {
+                open(path);
+            } catch (Exception e) {
+                closeCodec();
+                postError(gen, "Không giải mã được " + path + ": " + e);
+                return;
+            }
+            main.post(() -> {
+                if (gen != generation) return;
+                prepared = true;
+                if (listener != null) listener.onPrepared(this);
+            });
+        });
+    }
+
+    @Override
+    public void start() {
+        if (!prepared || playing) return;
+        playing = true;
+        int gen = generation;
+        audio.post(() -> {
+            if (gen != generation || track == null) return;
+            track.play();
+            pumpOnce();
+        });
+    }
+
+    @Override
+    public void pause() {
+        if (!playing) return;
+        playing = false;
+        int gen = generation;
+        // Chạy sau lần write đang dở, khi đó AudioTrack vẫn đang phát nên write không bị kẹt
+        audio.postAtFrontOfQueue(() -> {
+            if (gen == generation && track != null) track.pause();
+        });
+    }
+
+    @Override
+    public void seekTo(int ms) {
+        if (!prepared) return;
+        seekingToMs = ms;
+        int gen = generation;
+        audio.post(() -> {
+            if (gen != generation || codec == null) return;
+            long us = ms * 1000L;
+            track.pause();
+            track.flush();
+            codec.flush();
+            extractor.seekTo(us, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+            skipUntilUs = us;
+            baseUs = us;
+            framesWritten = 0;
+            inputDone = false;
+            outputDone = false;
+            seekingToMs = -1;
+            if (playing) {
+                track.play();
+                audio.removeCallbacks(pump);
+                audio.post(pump);
+            }
+        });
+    }
+
+    @Override
+    public int getPosition() {
+        if (!prepared) return 0;
+        int seeking = seekingToMs;
+        if (seeking >= 0) return seeking;
+        AudioTrack t = track;
+        int rate = sampleRate;
+        if (t == null || rate == 0) return (int) (baseUs / 1000);
+        long head = t.getPlaybackHeadPosition() & 0xffffffffL;
+        return (int) (baseUs / 1000 + head * 1000 / rate);
+    }
+
+    @Override public int getDuration() { return prepared ? durationMs : 0; }
+
+    @Override public boolean isPlaying() { return playing; }
+
+    @Override
+    public void setVolume(float v) {
+        if (released) return; // bước fade tới sau release: audio thread đã dừng
+        volume = v;
+        audio.post(() -> {
+            if (track != null) track.setVolume(v);
+        });
+    }
+
+    /** Không nối được như setNextMediaPlayer: controller tự start engine kế tiếp khi bài này hết. */
+    @Override public boolean setNext(PlaybackEngine next) { return next == null; }
+
+    @Override
+    public void reset() {
+        generation++;
+        prepared = false;
+        playing = false;
+        seekingToMs = -1;
+        audio.removeCallbacks(pump);
+        audio.post(() -> {
+            closeCodec();
+            if (track != null) {
+                track.pause();
+                track.flush();
+                track.setNotificationMarkerPosition(0);
+            }
+        });
+    }
+
+    @Override
+    public void release() {
+        released = true;
+        reset();
+        audio.post(() -> {
+            if (track != null) track.release();
+            track = null;
+        });
+        thread.quitSafely();
+    }
+
+    // ========= AUDIO THREAD =========
+    private void open(String path) throws IOException {
+        extractor = new MediaExtractor();
+        if (ContentTracks.isContentUri(path)) {
+            // Extractor dùng fd trực tiếp, đóng được ngay sau setDataSource
+            try (ParcelFileDescriptor pfd = ContentTracks.open(context, path)) {
+                extractor.setDataSource(pfd.getFileDescriptor());
+            }
+        } else {
+            extractor.setDataSource(path);
+        }
+        MediaFormat format = null;
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat f = extractor.getTrackFormat(i);
+            String mime = f.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                format = f;
+                break;
+            }
+        }
+        if (format == null) throw new IOException("Không có track audio");
+
+        durationMs = format.containsKey(MediaFormat.KEY_DURATION)
+                ? (int) (format.getLong(MediaFormat.KEY_DURATION) / 1000) : 0;
+        codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+        codec.configure(format, null, null, 0);
+        codec.start();
+        ensureTrack(format.getInteger(MediaFormat.KEY_SAMPLE_RATE), format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+
+        baseUs = 0;
+        framesWritten = 0;
+        skipUntilUs = -1;
+        inputDone = false;
+        outputDone = false;
+    }
+
+    private void ensureTrack(int rate, int ch) throws IOException {
+        if (track != null && rate == sampleRate && ch == channels) return;
+        if (ch != 1 && ch != 2) throw new IOException("Không hỗ trợ " + ch + " kênh");
+        boolean wasPlaying = track != null && track.getPlayState() == AudioTrack.PLAYSTATE_PLAYING;
+        if (track != null) track.release();
+
+        int mask = ch == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+        int minBuffer = AudioTrack.getMinBufferSize(rate, mask, AudioFormat.ENCODING_PCM_16BIT);
+        AudioTrack t = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setSampleRate(rate)
+                        .setChannelMask(mask)
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .build())
+                .setBufferSizeInBytes(minBuffer * 2)
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .build();
+        t.setVolume(volume);
+        t.setPlaybackPositionUpdateListener(new AudioTrack.OnPlaybackPositionUpdateListener() {
+            @Override public void onMarkerReached(AudioTrack at) { onPlayedToEnd(); }
+            @Override public void onPeriodicNotification(AudioTrack at) {}
+        }, audio);
+
+        sampleRate = rate;
+        channels = ch;
+        frameBytes = 2 * ch;
+        framesWritten = 0;
+        track = t;
+        if (wasPlaying) t.play();
+    }
+
+    /** Một bước: đưa một gói nén vào codec, lấy một buffer PCM ra ghi vào AudioTrack, rồi tự hẹn bước sau. */
+    private void pumpOnce() {
+        if (!playing || codec == null || outputDone) return;
+        int gen = generation;
+        try {
+            if (!inputDone) feedInput();
+            drainOutput();
+        } catch (Exception e) {
+            playing = false;
+            postError(gen, "Lỗi giải mã: " + e);
+            return;
+        }
+        if (playing && !outputDone) audio.post(pump);
+    }
+
+    private void feedInput() {
+        int index = codec.dequeueInputBuffer(0);
+        if (index < 0) return;
+        ByteBuffer in = codec.getInputBuffer(index);
+        int size = in != null ? extractor.readSampleData(in, 0) : -1;
+        if (size < 0) {
+            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            inputDone = true;
+        } else {
+            codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+            extractor.advance();
+        }
+    }
+
+    private void drainOutput() throws IOException {
+        int index = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+        if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            MediaFormat f = codec.getOutputFormat();
+            ensureTrack(f.getInteger(MediaFormat.KEY_SAMPLE_RATE), f.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            return;
+        }
+        if (index < 0) return;
+
+        ByteBuffer pcm = codec.getOutputBuffer(index);
+        int offset = info.offset;
+        int size = info.size;
+        if (skipUntilUs >= 0 && size > 0) {
+            // Seek chính xác: bỏ các mẫu nằm trước vị trí cần tới
+            long skipFrames = (skipUntilUs - info.presentationTimeUs) * sampleRate / 1_000_000;
+            if (skipFrames * frameBytes >= size) {
+                size = 0;
+            } else {
+                if (skipFrames > 0) {
+                    offset += (int) skipFrames * frameBytes;
+                    size -= (int) skipFrames * frameBytes;
+                }
+                skipUntilUs = -1;
+            }
+        }
+        if (pcm != null && size > 0) {
+            pcm.limit(offset + size);
+            pcm.position(offset);
+            int written = track.write(pcm, size, AudioTrack.WRITE_BLOCKING);
+            if (written > 0) framesWritten += written / frameBytes;
+        }
+        codec.releaseOutputBuffer(index, false);
+
+        if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+            outputDone = true;
+            // Báo hoàn thành khi AudioTrack phát hết phần đã ghi, không phải lúc codec giải mã xong
+            if (framesWritten > 0) track.setNotificationMarkerPosition((int) framesWritten);
+            else onPlayedToEnd();
+        }
+    }
+
+    private void onPlayedToEnd() {
+        if (!outputDone) return;
+        int gen = generation;
+        main.post(() -> {
+            if (gen != generation || !playing) return;
+            playing = false;
+            if (listener != null) listener.onCompletion(this);
+        });
+    }
+
+    private void closeCodec() {
+        if (codec != null) {
+            try {
+                codec.stop();
+            } catch (IllegalStateException ignored) {}
+            codec.release();
+            codec = null;
+        }
+        if (extractor != null) {
+            extractor.release();
+            extractor = null;
+        }
+        inputDone = false;
+        outputDone = false;
+    }
+
+    private void postError(int gen, String message) {
+        main.post(() -> {
+            if (gen != generation) return;
+            prepared = false;
+            playing = false;
+            if (listener != null) listener.onError(this, message);
+        });
+    }
+}
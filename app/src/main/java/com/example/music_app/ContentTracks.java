@@ -0,0 +1,70 @@
+package com.example.music_app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Bài mở từ ngoài app (ACTION_VIEW, "Open with" trong trình quản lý file), không qua thư viện.
+ * file:// được đổi thành đường dẫn thường như mọi bài khác; content:// giữ nguyên chuỗi Uri làm path,
+ * engine phát mở nó bằng ContentResolver.openFileDescriptor và đưa thẳng fd cho MediaPlayer / MediaExtractor,
+ * không copy ra file tạm.
+ */
+final class ContentTracks {
+
+    private static final String TAG = "ContentTracks";
+
+    private ContentTracks() {}
+
+    static boolean isContentUri(String path) { return path != null && path.startsWith("content://"); }
+
+    /** fd chỉ đọc của Uri; người gọi đóng sau khi đưa cho MediaPlayer / MediaExtractor (chúng tự dup). */
+    static ParcelFileDescriptor open(Context context, String uri) throws IOException {
+        ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(Uri.parse(uri), "r");
+        if (pfd == null) throw new FileNotFoundException(uri);
+        return pfd;
+    }
+
+    /**
+     * Dựng Song cho Uri với đúng những gì notification / session cần: tag ở header file (TagParser, vài KB)
+     * và tên hiển thị làm title dự phòng. Không ước lượng loudness, không đụng tới MetadataCache. Gọi ở background.
+     */
+    static Song read(Context context, Uri uri) {
+        boolean file = "file".equals(uri.getScheme()) && uri.getPath() != null;
+        String path = file ? uri.getPath() : uri.toString();
+
+        TagParser.Result r = null;
+        try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(open(context, uri.toString()))) {
+            r = new TagParser().parse(in.getChannel());
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Không đọc được tag: " + uri);
+        }
+
+        String title = r != null && r.title != null ? r.title : displayName(context, uri, file);
+        String artist = r != null && r.artist != null ? r.artist : "Unknown";
+        String album = r != null && r.album != null ? r.album : file ? HeaderMetadataReader.folderName(new File(path)) : "";
+        long duration = r != null ? r.durationMs : 0;
+        float gain = r != null && !Float.isNaN(r.gainDb) ? r.gainDb : 0f;
+        return new Song(Song.idForPath(path), title, artist, album, duration, path, gain);
+    }
+
+    private static String displayName(Context context, Uri uri, boolean file) {
+        if (file) return new File(uri.getPath()).getName();
+        try (Cursor c = context.getContentResolver().query(uri,
+                new String[] {OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (c != null && c.moveToFirst() && !c.isNull(0)) return c.getString(0);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Không lấy được tên file: " + uri);
+        }
+        String last = uri.getLastPathSegment();
+        return last != null ? last : uri.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.music_app;
+
+import java.io.File;
+import java.util.List;
+
+/** Nguồn dự phòng: quét thẳng thư mục bằng LibraryScanner, không tự theo dõi thay đổi. */
+public class FolderLibrarySource implements LibrarySource {
+
+    private final LibraryScanner scanner;
+    private final File dir;
+
+    public FolderLibrarySource(LibraryScanner scanner, File dir) {
+        this.scanner = scanner;
+        this.dir = dir;
+    }
+
+    @Override
+    public void load(Listener listener) {
+        scanner.scan(dir, new LibraryScanner.Callback() {
+            @Override
+            public void onBatch(List<Song> batch) { listener.onSongsAdded(batch); }
+
+            @Override
+            public void onFinished(int total) { listener.onLoadFinished(total); }
+        });
+    }
+
+    @Override
+    public void stop() { scanner.cancel(); }
+}
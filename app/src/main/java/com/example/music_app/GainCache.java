@@ -0,0 +1,99 @@
+package com.example.music_app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gain (dB) đã đọc tag / ước lượng lúc phát, lưu trên đĩa với key như MetadataCache: đường dẫn tuyệt đối
+ * + kích thước + lastModified. Bài đã phát một lần thì lần sau (kể cả sau khi service bị kill) không phải
+ * giải mã lại; file bị sửa thì entry cũ tự mất hiệu lực.
+ */
+public class GainCache {
+
+    private static final int MAGIC = 0x4741494E; // "GAIN"
+    private static final int VERSION = 1;
+
+    private static final class Entry {
+        final long length;
+        final long lastModified;
+        final float gainDb;
+
+        Entry(long length, long lastModified, float gainDb) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.gainDb = gainDb;
+        }
+    }
+
+    private final File file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean loaded;
+    private boolean dirty;
+
+    public GainCache(File file) { this.file = file; }
+
+    /** Đọc từ đĩa (chỉ lần đầu). File hỏng thì coi như rỗng. */
+    public synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                entries.put(path, new Entry(in.readLong(), in.readLong(), in.readFloat()));
+            }
+        } catch (IOException e) {
+            entries.clear();
+        }
+    }
+
+    /** Gain đã lưu nếu file chưa thay đổi, ngược lại NaN. */
+    public synchronized float lookup(File f) {
+        Entry e = entries.get(f.getAbsolutePath());
+        if (e == null || e.length != f.length() || e.lastModified != f.lastModified()) return Float.NaN;
+        return e.gainDb;
+    }
+
+    public synchronized void put(File f, float gainDb) {
+        if (Float.isNaN(gainDb)) return;
+        entries.put(f.getAbsolutePath(), new Entry(f.length(), f.lastModified(), gainDb));
+        dirty = true;
+    }
+
+    public synchronized int size() { return entries.size(); }
+
+    /** Ghi ra file tạm rồi rename, để không bao giờ để lại file ghi dở. */
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> me : entries.entrySet()) {
+                Entry e = me.getValue();
+                out.writeUTF(me.getKey());
+                out.writeLong(e.length);
+                out.writeLong(e.lastModified);
+                out.writeFloat(e.gainDb);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Không ghi được " + file);
+        }
+        dirty = false;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.music_app;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * MetadataReader đọc thẳng header file bằng TagParser (vài KB, không qua decoder native);
+ * chỉ file parser không xử lý được mới rơi về MediaMetadataRetriever.
+ * Không có tag ReplayGain thì gain để NaN: giải mã thử để ước lượng tốn hơn cả đọc tag, nên để tới lúc phát.
+ */
+public class HeaderMetadataReader implements MetadataReader {
+
+    private final TagParser parser = new TagParser();
+    private RetrieverMetadataReader fallback;
+
+    @Override
+    public Song read(File f, long id) throws IOException {
+        TagParser.Result r = parser.parse(f);
+        if (r == null) {
+            Metrics.TAG_PARSER_FALLBACKS.inc();
+            if (fallback == null) fallback = new RetrieverMetadataReader();
+            return fallback.read(f, id);
+        }
+
+        String title = r.title != null ? r.title : f.getName();
+        String artist = r.artist != null ? r.artist : "Unknown";
+        // Không có tag album thì lấy tên thư mục, như MediaStore
+        String album = r.album != null ? r.album : folderName(f);
+
+        return new Song(id, title, artist, album, r.durationMs, f.getAbsolutePath(), r.gainDb);
+    }
+
+    static String folderName(File f) {
+        File dir = f.getParentFile();
+        return dir != null ? dir.getName() : "";
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fallback != null) {
+            fallback.close();
+            fallback = null;
+        }
+    }
+}
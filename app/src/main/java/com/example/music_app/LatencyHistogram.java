@@ -0,0 +1,90 @@
+package com.example.music_app;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram độ trễ kiểu HDR: bucket log-tuyến tính theo micro giây, mỗi bậc luỹ thừa 2 chia 16 bucket con
+ * nên sai số tương đối ≤ 1/16 trên toàn dải 1 µs .. ~12 ngày. Ghi là vài phép toán bit + một lần tăng
+ * atomic, không cấp phát, gọi được từ mọi thread.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;   // 32
+    private static final int HALF = SUB_COUNT / 2;         // 16
+    private static final int MAX_BITS = 40;                // giá trị lớn hơn 2^40 µs bị kẹp lại
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) { this.name = name; }
+
+    /** Bậc b = vị trí bit cao nhất trừ (SUB_BITS - 1); index = b * HALF + (v >> b), liền mạch với bậc 0. */
+    static int indexOf(long v) {
+        int b = Math.max(0, 63 - Long.numberOfLeadingZeros(v | (SUB_COUNT - 1)) - (SUB_BITS - 1));
+        return b * HALF + (int) (v >>> b);
+    }
+
+    /** Giá trị lớn nhất rơi vào bucket index. */
+    static long highestValueAt(int index) {
+        int b = Math.max(0, index / HALF - 1);
+        long sub = index - (long) b * HALF;
+        return ((sub + 1) << b) - 1;
+    }
+
+    public void recordMicros(long us) {
+        if (us < 0) us = 0;
+        if (us > MAX_VALUE) us = MAX_VALUE;
+        counts.incrementAndGet(indexOf(us));
+        total.incrementAndGet();
+        sum.addAndGet(us);
+        long m;
+        while (us > (m = max.get()) && !max.compareAndSet(m, us)) { /* thử lại */ }
+    }
+
+    public void recordNanos(long ns) { recordMicros(ns / 1000); }
+
+    public void recordMillis(long ms) { recordMicros(ms * 1000); }
+
+    public long count() { return total.get(); }
+
+    public long maxMicros() { return max.get(); }
+
+    public double meanMicros() {
+        long n = total.get();
+        return n > 0 ? sum.get() / (double) n : 0;
+    }
+
+    /** Phân vị (0..100) tính bằng µs, làm tròn lên tới cận trên của bucket. */
+    public long percentileMicros(double percentile) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(highestValueAt(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /** Một dòng tóm tắt, đơn vị ms. */
+    public String summary() {
+        return String.format(Locale.US, "%-26s n=%-6d mean=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f ms",
+                name, count(), meanMicros() / 1000.0, percentileMicros(50) / 1000.0, percentileMicros(90) / 1000.0,
+                percentileMicros(99) / 1000.0, maxMicros() / 1000.0);
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.music_app;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Các cách xem thư viện (theo tên bài, theo nghệ sĩ, theo album) dựng một lần cho mỗi snapshot SongStore,
+ * trên background thread. Mỗi cách xem là một hoán vị sắp sẵn của các dòng trong store, kèm vị trí header
+ * của từng nhóm và các section chữ cái đầu (đã bỏ dấu tiếng Việt) cho thanh cuộn nhanh A–Z.
+ * Đổi cách xem chỉ là lấy Rows có sẵn; tìm dòng / section là tìm nhị phân, không sắp xếp lại gì.
+ */
+public final class LibraryIndex {
+
+    public enum Mode { SONGS, ARTISTS, ALBUMS }
+
+    // Khoá sắp xếp ghép 3 hạng 21 bit vào một long: đủ cho ~2 triệu bài / chuỗi khác nhau
+    private static final int RANK_BITS = 21;
+    private static final long RANK_MASK = (1L << RANK_BITS) - 1;
+    private static final String OTHER_SECTION = "#";
+
+    private final Rows songs, artists, albums;
+
+    private LibraryIndex(Rows songs, Rows artists, Rows albums) {
+        this.songs = songs;
+        this.artists = artists;
+        this.albums = albums;
+    }
+
+    public Rows rows(Mode mode) {
+        switch (mode) {
+            case ARTISTS: return artists;
+            case ALBUMS: return albums;
+            default: return songs;
+        }
+    }
+
+    // ========= DỰNG INDEX =========
+    public static LibraryIndex build(SongStore store) {
+        int n = store.size();
+
+        // Hạng của từng chuỗi trong pool (artist / album) theo khoá đã bỏ dấu; chỉ fold những ref thật sự dùng
+        int poolLength = store.poolLength();
+        String[] poolKeys = new String[poolLength];
+        for (int row = 0; row < n; row++) {
+            int a = store.artistRef(row), b = store.albumRef(row);
+            if (poolKeys[a] == null) poolKeys[a] = sortKey(store.pooled(a));
+            if (poolKeys[b] == null) poolKeys[b] = sortKey(store.pooled(b));
+        }
+        int[] poolRank = rank(poolKeys);
+
+        // Thứ tự theo tên bài; hạng của bài trong thứ tự này dùng làm khoá phụ cuối cùng cho các cách xem khác
+        String[] titleKeys = new String[n];
+        for (int row = 0; row < n; row++) titleKeys[row] = sortKey(store.title(row));
+        int[] titleRank = rank(titleKeys);
+        int[] byTitle = new int[n];
+        for (int row = 0; row < n; row++) byTitle[titleRank[row]] = row;
+
+        long[] artistKeys = new long[n];
+        long[] albumKeys = new long[n];
+        for (int row = 0; row < n; row++) {
+            long artist = poolRank[store.artistRef(row)];
+            long album = poolRank[store.albumRef(row)];
+            artistKeys[row] = artist << (2 * RANK_BITS) | album << RANK_BITS | titleRank[row];
+            albumKeys[row] = album << (2 * RANK_BITS) | artist << RANK_BITS | titleRank[row];
+        }
+        Arrays.sort(artistKeys);
+        Arrays.sort(albumKeys);
+        int[] byArtist = new int[n];
+        int[] byAlbum = new int[n];
+        for (int i = 0; i < n; i++) {
+            byArtist[i] = byTitle[(int) (artistKeys[i] & RANK_MASK)];
+            byAlbum[i] = byTitle[(int) (albumKeys[i] & RANK_MASK)];
+        }
+
+        return new LibraryIndex(
+                flatRows(store, byTitle, titleKeys),
+                groupedRows(store, byArtist, Mode.ARTISTS, poolKeys),
+                groupedRows(store, byAlbum, Mode.ALBUMS, poolKeys));
+    }
+
+    /** Khoá sắp xếp: chữ thường, bỏ dấu, bỏ khoảng trắng đầu. */
+    static String sortKey(String s) {
+        return s == null ? "" : SearchIndex.fold(s).trim();
+    }
+
+    /** Chữ cái đầu A–Z của khoá, ký tự khác (số, ký hiệu, rỗng) gom vào "#". */
+    static String sectionOf(String key) {
+        if (key.isEmpty()) return OTHER_SECTION;
+        char c = key.charAt(0);
+        return c >= 'a' && c <= 'z' ? String.valueOf((char) (c - 32)) : OTHER_SECTION;
+    }
+
+    /** rank[i] = vị trí của keys[i] khi sắp xếp (bằng nhau thì theo chỉ số); ô null không được xếp hạng. */
+    private static int[] rank(String[] keys) {
+        List<Integer> order = new ArrayList<>(keys.length);
+        for (int i = 0; i < keys.length; i++) if (keys[i] != null) order.add(i);
+        order.sort((x, y) -> {
+            int c = keys[x].compareTo(keys[y]);
+            return c != 0 ? c : Integer.compare(x, y);
+        });
+        int[] rank = new int[keys.length];
+        for (int r = 0; r < order.size(); r++) rank[order.get(r)] = r;
+        return rank;
+    }
+
+    private static Rows flatRows(SongStore store, int[] perm, String[] titleKeys) {
+        SectionBuilder sections = new SectionBuilder();
+        for (int i = 0; i < perm.length; i++) sections.add(sectionOf(titleKeys[perm[i]]), i);
+        return new Rows(store, perm, new int[0], new Song[0], sections.labels(), sections.positions());
+    }
+
+    /** Header đứng trước mỗi nhóm; bài cùng nhóm khi cùng ref artist (và cùng album nếu xem theo album). */
+    private static Rows groupedRows(SongStore store, int[] perm, Mode mode, String[] poolKeys) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < perm.length; i++) {
+            if (i == 0 || !sameGroup(store, perm[i - 1], perm[i], mode)) starts.add(i);
+        }
+        int groups = starts.size();
+        int[] headerPos = new int[groups];
+        Song[] headers = new Song[groups];
+        SectionBuilder sections = new SectionBuilder();
+        for (int g = 0; g < groups; g++) {
+            int start = starts.get(g);
+            int end = g + 1 < groups ? starts.get(g + 1) : perm.length;
+            int first = perm[start];
+            headerPos[g] = start + g;
+            headers[g] = header(store, first, end - start, mode);
+            int ref = mode == Mode.ARTISTS ? store.artistRef(first) : store.albumRef(first);
+            sections.add(sectionOf(poolKeys[ref]), headerPos[g]);
+        }
+        return new Rows(store, perm, headerPos, headers, sections.labels(), sections.positions());
+    }
+
+    private static boolean sameGroup(SongStore store, int a, int b, Mode mode) {
+        if (store.artistRef(a) != store.artistRef(b)) return false;
+        return mode == Mode.ARTISTS || store.albumRef(a) == store.albumRef(b);
+    }
+
+    /**
+     * Header là một Song riêng (title = tên nhóm, artist = dòng phụ), tạo một lần lúc dựng index nên bind
+     * không phải ghép chuỗi. Id âm, suy ra từ tên nhóm nên ổn định giữa các snapshot và không trùng id bài.
+     */
+    private static Song header(SongStore store, int firstRow, int count, Mode mode) {
+        String artist = store.artist(firstRow);
+        String countText = count + " bài";
+        if (mode == Mode.ARTISTS) {
+            String name = artist.isEmpty() ? "Unknown" : artist;
+            return new Song(~Song.idForPath("artist:" + artist), name, countText, 0, null);
+        }
+        String album = store.album(firstRow);
+        String name = album.isEmpty() ? "Không rõ album" : album;
+        return new Song(~Song.idForPath("album:" + album + '\u0000' + artist), name, artist + " · " + countText, 0, null);
+    }
+
+    private static final class SectionBuilder {
+        private final List<String> labels = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+
+        void add(String label, int position) {
+            if (!labels.isEmpty() && labels.get(labels.size() - 1).equals(label)) return;
+            labels.add(label);
+            positions.add(position);
+        }
+
+        String[] labels() { return labels.toArray(new String[0]); }
+
+        int[] positions() {
+            int[] p = new int[positions.size()];
+            for (int i = 0; i < p.length; i++) p[i] = positions.get(i);
+            return p;
+        }
+    }
+
+    // ========= DÒNG HIỂN THỊ =========
+    /**
+     * Danh sách dòng cho adapter: header của nhóm xen giữa các bài. get(position) trả về header (Song dựng sẵn)
+     * hoặc view của bài trong store. Các bài theo đúng thứ tự hiển thị (không có header) lấy qua songs(),
+     * là danh sách đưa cho service làm playlist.
+     */
+    public static final class Rows extends AbstractList<Song> implements RandomAccess {
+        private final SongStore store;
+        private final int[] perm;
+        private final int[] headerPos;   // vị trí (trong Rows) của header từng nhóm, tăng dần
+        private final Song[] headers;
+        private final String[] sections;
+        private final int[] sectionPos;  // vị trí dòng đầu tiên của từng section, tăng dần
+        private final List<Song> songs;
+
+        Rows(SongStore store, int[] perm, int[] headerPos, Song[] headers, String[] sections, int[] sectionPos) {
+            this.store = store;
+            this.perm = perm;
+            this.headerPos = headerPos;
+            this.headers = headers;
+            this.sections = sections;
+            this.sectionPos = sectionPos;
+            this.songs = new SongsInOrder();
+        }
+
+        @Override public int size() { return perm.length + headers.length; }
+
+        @Override
+        public Song get(int position) {
+            int g = groupAt(position);
+            if (g >= 0 && headerPos[g] == position) return headers[g];
+            return store.get(perm[position - g - 1]);
+        }
+
+        /** Row trong store của bài ở dòng position, -1 nếu dòng là header. Không tạo Song. */
+        public int storeRow(int position) {
+            int g = groupAt(position);
+            if (g >= 0 && headerPos[g] == position) return -1;
+            return perm[position - g - 1];
+        }
+
+        /** Header (Song dựng sẵn) ở dòng position, null nếu dòng là bài. */
+        public Song headerAt(int position) {
+            int g = groupAt(position);
+            return g >= 0 && headerPos[g] == position ? headers[g] : null;
+        }
+
+        public boolean isHeader(int position) {
+            int g = groupAt(position);
+            return g >= 0 && headerPos[g] == position;
+        }
+
+        /** Vị trí của bài trong songs(), -1 nếu dòng là header. */
+        public int songIndexAt(int position) {
+            int g = groupAt(position);
+            if (g >= 0 && headerPos[g] == position) return -1;
+            return position - g - 1;
+        }
+
+        /** Ngược lại của songIndexAt: số header đứng trước bài thứ index là số nhóm có header <= index + g. */
+        public int positionOfSong(int index) {
+            int lo = 0, hi = headers.length;    // tìm số nhóm g có headerPos[g] - g <= index
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (headerPos[mid] - mid <= index) lo = mid + 1;
+                else hi = mid;
+            }
+            return index + lo;
+        }
+
+        /** Bài theo thứ tự hiển thị, không có header. */
+        public List<Song> songs() { return songs; }
+
+        public SongStore store() { return store; }
+
+        /** Nhóm chứa position (header cuối cùng có vị trí <= position), -1 nếu không có nhóm. */
+        private int groupAt(int position) {
+            int lo = 0, hi = headerPos.length - 1, g = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (headerPos[mid] <= position) {
+                    g = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return g;
+        }
+
+        // Cùng ngữ nghĩa với android.widget.SectionIndexer, để MusicAdapter chỉ việc chuyển tiếp
+        public Object[] getSections() { return sections; }
+
+        public int getPositionForSection(int section) {
+            if (sectionPos.length == 0) return 0;
+            return sectionPos[Math.max(0, Math.min(section, sectionPos.length - 1))];
+        }
+
+        public int getSectionForPosition(int position) {
+            int lo = 0, hi = sectionPos.length - 1, s = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sectionPos[mid] <= position) {
+                    s = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return s;
+        }
+
+        private final class SongsInOrder extends AbstractList<Song> implements RandomAccess {
+            @Override public int size() { return perm.length; }
+            @Override public Song get(int index) { return store.get(perm[index]); }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.music_app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Quét thư mục nhạc ở background: đọc metadata trên một pool worker có giới hạn
+ * và trả kết quả về main thread theo từng batch (giữ đúng thứ tự thư mục).
+ * File không đổi kể từ lần quét trước được lấy từ MetadataCache.
+ */
+public class LibraryScanner {
+
+    public interface Callback {
+        /** Gọi trên main thread, mỗi batch chỉ chứa bài mới (add-only). */
+        void onBatch(List<Song> batch);
+        void onFinished(int total);
+    }
+
+    private static final String TAG = "LibraryScanner";
+
+    // Batch đầu nhỏ để màn hình đầu tiên hiện ra nhanh, các batch sau lớn hơn để giảm số lần notify
+    private static final int FIRST_BATCH_SIZE = 12;
+    private static final int BATCH_SIZE = 64;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor();
+    private final ExecutorService workers;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+    private final MetadataCache cache;
+
+    public LibraryScanner(MetadataCache cache) {
+        this.cache = cache;
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        workers = Executors.newFixedThreadPool(threads);
+    }
+
+    public void scan(File dir, Callback callback) {
+        int gen = generation.incrementAndGet();
+        coordinator.execute(() -> runScan(dir, callback, gen));
+    }
+
+    /** Bỏ lần quét đang chạy; các batch còn lại sẽ không được gửi về UI. */
+    public void cancel() { generation.incrementAndGet(); }
+
+    public void shutdown() {
+        cancel();
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void runScan(File dir, Callback callback, int gen) {
+        long startedAt = System.nanoTime();
+        Metrics.trace().beginSection("LibraryScanner.scan");
+        try {
+            scanFiles(dir, callback, gen);
+        } finally {
+            Metrics.trace().endSection();
+        }
+        if (gen == generation.get()) Metrics.SCAN_TOTAL.recordNanos(System.nanoTime() - startedAt);
+    }
+
+    private void scanFiles(File dir, Callback callback, int gen) {
+        cache.load();
+
+        List<File> files = new ArrayList<>();
+        AudioFiles.collect(dir, files);
+        Set<String> paths = new HashSet<>();
+        for (File f : files) paths.add(f.getAbsolutePath());
+
+        // Chia file thành các chunk, mỗi chunk chạy trên một worker
+        List<Future<List<Song>>> chunks = new ArrayList<>();
+        int from = 0;
+        while (from < files.size()) {
+            int to = Math.min(files.size(), from + (from == 0 ? FIRST_BATCH_SIZE : BATCH_SIZE));
+            List<File> part = files.subList(from, to);
+            chunks.add(workers.submit(() -> extractChunk(part)));
+            from = to;
+        }
+
+        int total = 0;
+        for (Future<List<Song>> chunk : chunks) {
+            if (gen != generation.get()) {
+                for (Future<List<Song>> f : chunks) f.cancel(true);
+                return;
+            }
+            List<Song> batch;
+            try {
+                batch = chunk.get();
+            } catch (Exception e) {
+                Log.e(TAG, "Lỗi quét batch", e);
+                continue;
+            }
+            if (batch.isEmpty()) continue;
+            total += batch.size();
+            mainHandler.post(() -> {
+                if (gen == generation.get()) callback.onBatch(batch);
+            });
+        }
+
+        // Bỏ entry của file đã bị xoá rồi lưu lại index
+        if (gen == generation.get()) {
+            cache.retainOnly(paths);
+            try {
+                cache.save();
+            } catch (IOException e) {
+                Log.e(TAG, "Lỗi lưu metadata cache", e);
+            }
+        }
+
+        int count = total;
+        mainHandler.post(() -> {
+            if (gen == generation.get()) callback.onFinished(count);
+        });
+    }
+
+    private List<Song> extractChunk(List<File> files) {
+        // Một reader cho cả chunk; file có trong cache thì không cần đọc header
+        try (MetadataReader reader = new HeaderMetadataReader()) {
+            return cache.resolve(files, reader);
+        } catch (Exception e) {
+            Log.e(TAG, "Lỗi đóng MetadataReader", e);
+            return new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.music_app;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Nguồn thư viện nhạc. Mọi callback của Listener đều chạy trên main thread
+ * và chỉ mô tả phần thay đổi (diff) so với những gì đã gửi trước đó.
+ */
+public interface LibrarySource {
+
+    interface Listener {
+        void onSongsAdded(List<Song> added);
+        void onSongsRemoved(Set<Long> removedIds);
+        void onLoadFinished(int total);
+    }
+
+    /** Tải toàn bộ thư viện rồi (nếu nguồn hỗ trợ) tiếp tục theo dõi thay đổi. */
+    void load(Listener listener);
+
+    /** Dừng tải và bỏ theo dõi. */
+    void stop();
+}
@@ -0,0 +1,128 @@
+package com.example.music_app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Chuẩn hoá âm lượng giữa các bài kiểu ReplayGain. Lúc quét chỉ đọc tag REPLAYGAIN_TRACK_GAIN có sẵn trong file;
+ * bài không có tag được ước lượng từ RMS của vài đoạn PCM khi sắp phát lần đầu.
+ * Còn lại chỉ cần đổi gain ra hệ số volume, không phân tích lại.
+ */
+public final class Loudness {
+
+    /** Mức RMS (dBFS) mà mọi bài được đưa về; xấp xỉ mức tham chiếu của ReplayGain với RMS không trọng số. */
+    static final float TARGET_RMS_DB = -18f;
+    static final float MIN_GAIN_DB = -18f;
+    static final float MAX_GAIN_DB = 12f;
+
+    // Tag nằm ở đầu file (ID3v2, Vorbis comment, moov đặt trước) hoặc cuối file (APE, moov đặt sau)
+    private static final int HEAD_BYTES = 256 * 1024;
+    private static final int TAIL_BYTES = 64 * 1024;
+    private static final byte[] KEY = "replaygain_track_gain".getBytes(StandardCharsets.US_ASCII);
+
+    private Loudness() {}
+
+    /** Hệ số volume cho gain; volume của engine tối đa là 1 nên gain dương không làm to hơn được. */
+    public static float toVolume(float gainDb) {
+        if (gainDb >= 0f || Float.isNaN(gainDb)) return 1f;
+        return (float) Math.pow(10, gainDb / 20.0);
+    }
+
+    static float clamp(float gainDb) { return Math.max(MIN_GAIN_DB, Math.min(MAX_GAIN_DB, gainDb)); }
+
+    /** Gain từ RMS (0..1 so với full scale) để đưa bài về TARGET_RMS_DB. */
+    static float gainForRms(double rms) {
+        if (rms <= 0) return 0f;
+        return clamp((float) (TARGET_RMS_DB - 20 * Math.log10(rms)));
+    }
+
+    // ========= REPLAYGAIN TAG =========
+    /** Đọc REPLAYGAIN_TRACK_GAIN từ đầu / cuối file, NaN nếu không có. */
+    public static float readTagGain(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            long length = raf.length();
+            byte[] head = new byte[(int) Math.min(HEAD_BYTES, length)];
+            raf.readFully(head);
+            float gain = findTagGain(head, head.length);
+            if (!Float.isNaN(gain) || length <= head.length) return gain;
+
+            byte[] tail = new byte[(int) Math.min(TAIL_BYTES, length - head.length)];
+            raf.seek(length - tail.length);
+            raf.readFully(tail);
+            return findTagGain(tail, tail.length);
+        }
+    }
+
+    /**
+     * Tìm key REPLAYGAIN_TRACK_GAIN (không phân biệt hoa thường) rồi đọc số dB đứng sau nó.
+     * Byte 0 được bỏ qua khi so khớp nên tag UTF-16 của ID3 (TXXX) và dấu kết thúc chuỗi cũng khớp;
+     * sau key là '=' (Vorbis / APE), '\0' (ID3) hoặc header atom "data" (MP4) trước khi tới con số.
+     */
+    static float findTagGain(byte[] buf, int len) {
+        for (int i = 0; i < len; i++) {
+            if ((buf[i] | 0x20) != KEY[0]) continue;
+            int p = matchKey(buf, len, i);
+            if (p < 0) continue;
+            float gain = parseGain(buf, len, p);
+            if (!Float.isNaN(gain)) return clamp(gain);
+        }
+        return Float.NaN;
+    }
+
+    private static int matchKey(byte[] buf, int len, int start) {
+        int p = start;
+        for (int k = 0; k < KEY.length; k++) {
+            while (p < len && buf[p] == 0) p++;
+            if (p >= len) return -1;
+            int c = buf[p] >= 'A' && buf[p] <= 'Z' ? buf[p] | 0x20 : buf[p];
+            if (c != KEY[k]) return -1;
+            p++;
+        }
+        return p;
+    }
+
+    /** Đọc số kiểu "-6.54 dB" bắt đầu trong vòng 24 byte sau vị trí p. */
+    private static float parseGain(byte[] buf, int len, int p) {
+        int end = Math.min(len, p + 24);
+        while (p < end && !isNumberStart(buf[p])) p++;
+        StringBuilder sb = new StringBuilder(8);
+        for (; p < len && sb.length() < 12; p++) {
+            byte b = buf[p];
+            if (b == 0) continue;
+            if ((b >= '0' && b <= '9') || b == '.' || b == ',' || ((b == '-' || b == '+') && sb.length() == 0)) {
+                sb.append(b == ',' ? '.' : (char) b);
+            } else {
+                break;
+            }
+        }
+        try {
+            return sb.length() > 0 ? Float.parseFloat(sb.toString()) : Float.NaN;
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    private static boolean isNumberStart(byte b) { return (b >= '0' && b <= '9') || b == '-' || b == '+'; }
+
+    // ========= RMS =========
+    /** Cộng dồn bình phương các mẫu PCM 16-bit (mọi kênh) để ước lượng gain khi file không có tag. */
+    static final class Meter {
+        private double sumSquares;
+        private long samples;
+
+        void add(short sample) {
+            double v = sample / 32768.0;
+            sumSquares += v * v;
+            samples++;
+        }
+
+        long samples() { return samples; }
+
+        double rms() { return samples > 0 ? Math.sqrt(sumSquares / samples) : 0; }
+
+        /** Gain ước lượng, NaN nếu chưa có mẫu nào (không giải mã được). */
+        float gainDb() { return samples > 0 ? gainForRms(rms()) : Float.NaN; }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.music_app;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Ước lượng gain cho bài không có tag ReplayGain: giải mã vài đoạn ngắn rải trong bài
+ * (không giải mã cả bài) bằng MediaCodec rồi đo RMS. Chạy nền lúc bài sắp phát lần đầu
+ * (PlaybackController.GainEstimator), không chạy lúc quét thư viện.
+ */
+final class LoudnessEstimator {
+
+    private static final int WINDOWS = 3;
+    private static final long WINDOW_US = 1_500_000;
+    private static final long TIMEOUT_US = 10_000;
+    private static final int MAX_IDLE_LOOPS = 200;
+
+    private LoudnessEstimator() {}
+
+    /** Gain (dB) ước lượng, NaN nếu không giải mã được. */
+    static float estimateGainDb(String path, long durationMs) {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(path);
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat f = extractor.getTrackFormat(i);
+                String mime = f.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = f;
+                    break;
+                }
+            }
+            if (format == null) return Float.NaN;
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            Loudness.Meter meter = new Loudness.Meter();
+            long durationUs = durationMs * 1000;
+            for (int w = 0; w < WINDOWS; w++) {
+                // Các đoạn ở 1/4, 2/4, 3/4 bài; bài ngắn hơn một đoạn thì đo từ đầu
+                long startUs = durationUs > WINDOW_US * 2 ? durationUs * (w + 1) / (WINDOWS + 1) : 0;
+                extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                codec.flush();
+                decodeWindow(extractor, codec, startUs, startUs + WINDOW_US, meter);
+                if (startUs == 0) break;
+            }
+            return meter.gainDb();
+        } catch (IOException | RuntimeException e) {
+            return Float.NaN;
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException ignored) {}
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static void decodeWindow(MediaExtractor extractor, MediaCodec codec, long fromUs, long toUs,
+                                     Loudness.Meter meter) {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        boolean inputDone = false;
+        int idle = 0;
+        while (idle < MAX_IDLE_LOOPS) {
+            if (!inputDone) {
+                int in = codec.dequeueInputBuffer(TIMEOUT_US);
+                if (in >= 0) {
+                    ByteBuffer buf = codec.getInputBuffer(in);
+                    int size = buf != null ? extractor.readSampleData(buf, 0) : -1;
+                    if (size < 0 || extractor.getSampleTime() > toUs) {
+                        codec.queueInputBuffer(in, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        codec.queueInputBuffer(in, 0, size, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            int out = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (out < 0) {
+                idle++;
+                continue;
+            }
+            idle = 0;
+            ByteBuffer pcm = codec.getOutputBuffer(out);
+            if (pcm != null && info.size > 0 && info.presentationTimeUs >= fromUs) {
+                pcm.position(info.offset);
+                pcm.limit(info.offset + info.size);
+                ShortBuffer samples = pcm.order(ByteOrder.nativeOrder()).asShortBuffer();
+                while (samples.hasRemaining()) meter.add(samples.get());
+            }
+            codec.releaseOutputBuffer(out, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) return;
+        }
+    }
+}
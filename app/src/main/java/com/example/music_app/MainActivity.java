@@ -5,14 +5,20 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
+import android.graphics.Color;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.EditText;
 import android.widget.ImageButton;
-import android.widget.SeekBar;
+import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -23,43 +29,96 @@ import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import android.media.MediaMetadataRetriever;
 import android.util.Log;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_PERMISSION = 100;
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+    private static final int SEARCH_LIMIT = 500;
+    private static final int TAB_INACTIVE = 0xFFB3B3B3;
 
     private RecyclerView recyclerView;
     private MusicAdapter adapter;
-    private List<Song> songs = new ArrayList<>();
+    private final SongStore.Builder library = new SongStore.Builder();
+    private List<Song> displayed = SongStore.EMPTY;  // list adapter đang hiện, service dùng chung
 
     private MusicService musicService;
     private boolean bound = false;
 
-    private SeekBar seekBar;
+    private WaveformSeekBar seekBar;
     private TextView tvMiniTitle, tvMiniArtist;
+    private ImageView imgMiniCover;
     private ImageButton btnPlayPause, btnNext, btnBack;
 
     private ImageButton btnShuffle;
-    private boolean isShuffle = false;
 
     private Handler uiHandler = new Handler();
 
+    // Trạng thái phát nhận từ service; SeekBar được nội suy từ mốc (position, updateTime)
+    private boolean started;
+    private boolean playingState;
+    private int lastPosition;
+    private long lastUpdateTime;
+    private boolean userSeeking;
+    private Song miniCoverSong;
+    private LibraryScanner scanner;
+    private LibrarySource librarySource;
+    private boolean loading;
+
+    // Số liệu: main thread bị nghẽn, thời gian từ lúc process khởi động tới khi danh sách đầu tiên hiện ra
+    private final MainThreadWatchdog watchdog = new MainThreadWatchdog();
+    private boolean firstListShown;
+
+    // Tìm kiếm: index dựng dần theo snapshot thư viện, cập nhật và query đều chạy trên một thread riêng
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private String query = "";
+    private int searchToken;
+
+    // Cách xem thư viện: LibraryIndex dựng trên searchExecutor mỗi khi thư viện tải xong / thay đổi,
+    // đổi cách xem chỉ là lấy Rows có sẵn. listKind cho biết list adapter đang giữ được sắp theo kiểu nào.
+    private static final int KIND_FLAT = -1;
+    private static final int KIND_SEARCH = -2;
+    private LibraryIndex.Mode viewMode = LibraryIndex.Mode.SONGS;
+    private LibraryIndex libraryIndex;
+    private SongStore libraryIndexStore;   // snapshot mà libraryIndex được dựng từ
+    private int indexToken;
+    private int listKind = KIND_FLAT;
+    private TextView tabSongs, tabArtists, tabAlbums;
+    private SectionIndexBar sectionBar;
+
+    // Mở bằng ACTION_VIEW: Uri chờ service bind xong; thư viện chỉ bắt đầu tải khi bài đó đã phát
+    // (hoặc sau LIBRARY_DEFER_MS nếu lỗi) để việc quét không tranh I/O với file người dùng vừa mở
+    private static final long LIBRARY_DEFER_MS = 3000;
+    private Uri pendingViewUri;
+    private boolean libraryDeferred;
+    private final Runnable startDeferredLibrary = this::startDeferredLibrary;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        Metrics.setTracer(AndroidTracer.INSTANCE);
         setContentView(R.layout.activity_main);
 
+        scanner = new LibraryScanner(new MetadataCache(new File(getFilesDir(), "metadata.idx")));
+
         initUI();
 
-        checkAndRequestPermission();
+        if (isViewIntent(getIntent())) {
+            libraryDeferred = true;
+            uiHandler.postDelayed(startDeferredLibrary, LIBRARY_DEFER_MS);
+        } else {
+            checkAndRequestPermission();
+        }
         handleIntent(getIntent());
-        startSeekBarUpdater();
 
         Intent serviceIntent = new Intent(this, MusicService.class);
         startService(serviceIntent);
@@ -69,13 +128,50 @@ public class MainActivity extends AppCompatActivity {
     private void initUI() {
         recyclerView = findViewById(R.id.recycler);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        adapter = new MusicAdapter(songs);
+        adapter = new MusicAdapter(ArtworkLoader.get(this));
         recyclerView.setAdapter(adapter);
+        // Đang cuộn thì service tạm dừng đọc trước bài sắp phát, nhường I/O cho ảnh bìa
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView rv, int newState) {
+                if (bound && musicService != null) {
+                    musicService.setUserScrolling(newState != RecyclerView.SCROLL_STATE_IDLE);
+                }
+            }
+        });
+
+        // --- Ô tìm kiếm ---
+        EditText etSearch = findViewById(R.id.etSearch);
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                query = s.toString().trim();
+                uiHandler.removeCallbacks(searchRunnable);
+                uiHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+            }
+        });
+
+        // --- Cách xem + cuộn nhanh A–Z ---
+        tabSongs = findViewById(R.id.tabSongs);
+        tabArtists = findViewById(R.id.tabArtists);
+        tabAlbums = findViewById(R.id.tabAlbums);
+        tabSongs.setOnClickListener(v -> setViewMode(LibraryIndex.Mode.SONGS));
+        tabArtists.setOnClickListener(v -> setViewMode(LibraryIndex.Mode.ARTISTS));
+        tabAlbums.setOnClickListener(v -> setViewMode(LibraryIndex.Mode.ALBUMS));
+        sectionBar = findViewById(R.id.sectionBar);
+        sectionBar.setOnSectionSelectedListener(section -> {
+            LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+            if (lm != null) lm.scrollToPositionWithOffset(adapter.getPositionForSection(section), 0);
+        });
 
         // --- Mini player UI ---
         seekBar = findViewById(R.id.seekBar);
         tvMiniTitle = findViewById(R.id.tvMiniTitle);
         tvMiniArtist = findViewById(R.id.tvMiniArtist);
+        imgMiniCover = findViewById(R.id.imgMiniCover);
         btnPlayPause = findViewById(R.id.btnPlayPause);
         btnNext = findViewById(R.id.btnNext);
 
@@ -83,43 +179,20 @@ public class MainActivity extends AppCompatActivity {
         btnBack = findViewById(R.id.btnBack);
         btnBack.setOnClickListener(v -> {
             if (!bound || musicService == null) return;
-            Song current = musicService.getCurrentSong();
-            if (songs.isEmpty()) return;
-
-            int currentIndex = -1;
-            if (current != null) {
-                // Tìm index an toàn bằng path (tránh phụ thuộc equals())
-                String curPath = current.getPath();
-                for (int i = 0; i < songs.size(); i++) {
-                    Song s = songs.get(i);
-                    if (s != null && s.getPath() != null && s.getPath().equals(curPath)) {
-                        currentIndex = i;
-                        break;
-                    }
-                }
+            // Chưa phát bài nào thì previous() lấy bài cuối danh sách; đang phát thì lùi trong hàng đợi hiện có
+            if (musicService.getCurrentSong() == null) {
+                if (displayed.isEmpty()) return;
+                musicService.setPlaylist(displayed);
             }
-
-            // Nếu không tìm thấy current (ví dụ chưa phát), lấy index 0
-            if (currentIndex == -1) {
-                // Nếu đang rỗng thì không làm gì
-                if (songs.isEmpty()) return;
-                // Phát bài cuối làm previous của "chưa có bài"
-                musicService.setPlaylist(songs);
-                musicService.playAt(Math.max(0, songs.size() - 1));
-            } else {
-                // previous with wrap-around
-                int prevIndex = (currentIndex - 1 + songs.size()) % songs.size();
-                musicService.playAt(prevIndex);
-            }
-            updateMiniPlayer();
+            musicService.previous();
         });
 
         // --- Click bài hát ---
-        adapter.setOnItemClickListener(position -> {
+        adapter.setOnItemClickListener(index -> {
             if (!bound || musicService == null) return;
-            musicService.setPlaylist(songs);
-            musicService.playAt(position);
-            updateMiniPlayer();
+            // index thuộc danh sách adapter đang hiển thị (đã bỏ header, có thể chưa kịp cập nhật theo library)
+            musicService.setPlaylist(displayed);
+            musicService.playAt(index);
         });
 
         // --- Play / Pause ---
@@ -132,8 +205,8 @@ public class MainActivity extends AppCompatActivity {
                 btnPlayPause.setImageResource(R.drawable.ic_play);
             } else {
                 Song s = musicService.getCurrentSong();
-                if (s == null && !songs.isEmpty()) {
-                    musicService.setPlaylist(songs);
+                if (s == null && !displayed.isEmpty()) {
+                    musicService.setPlaylist(displayed);
                     musicService.playAt(0);
                 } else {
                     musicService.play();
@@ -149,23 +222,22 @@ public class MainActivity extends AppCompatActivity {
 
             Song s = musicService.getCurrentSong();
             if (s == null) {
-                musicService.setPlaylist(songs);
+                musicService.setPlaylist(displayed);
                 musicService.playAt(0);
             } else {
                 musicService.next();
             }
-            updateMiniPlayer();
         });
 
         // --- Seekbar ---
         if (seekBar != null) {
-            seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
-                @Override public void onProgressChanged(SeekBar seekBar, int progress, boolean isUser) {}
-                @Override public void onStartTrackingTouch(SeekBar seekBar) {}
+            seekBar.setOnSeekListener(new WaveformSeekBar.OnSeekListener() {
+                @Override public void onStartSeek() { userSeeking = true; }
 
                 @Override
-                public void onStopTrackingTouch(SeekBar seekBar) {
-                    if (bound && musicService != null)
+                public void onStopSeek(boolean commit) {
+                    userSeeking = false;
+                    if (commit && bound && musicService != null)
                         musicService.seekTo(seekBar.getProgress());
                 }
             });
@@ -174,25 +246,17 @@ public class MainActivity extends AppCompatActivity {
         // --- Nút shuffle ---
         btnShuffle = findViewById(R.id.btnShuffle);
         btnShuffle.setOnClickListener(v -> {
-            if (!bound || musicService == null || songs.isEmpty()) return;
-
-            isShuffle = !isShuffle; // bật / tắt shuffle
+            if (!bound || musicService == null) return;
 
-            if (isShuffle) {
-                // Shuffle danh sách
-                List<Song> shuffled = new ArrayList<>(songs);
-                java.util.Collections.shuffle(shuffled);
-                musicService.setPlaylist(shuffled);
-                musicService.playAt(0);
-                Toast.makeText(this, "Bật phát ngẫu nhiên", Toast.LENGTH_SHORT).show();
-            } else {
-                // Trở về danh sách gốc
-                musicService.setPlaylist(songs);
-                musicService.playAt(0);
-                Toast.makeText(this, "Tắt phát ngẫu nhiên", Toast.LENGTH_SHORT).show();
+            // Shuffle nằm trong service: không copy danh sách, bài đang phát vẫn tiếp tục.
+            // Chỉ gắn list đang hiện khi chưa có hàng đợi; đang phát thì xáo đúng hàng đợi đó
+            if (musicService.getCurrentSong() == null) {
+                if (displayed.isEmpty()) return;
+                musicService.setPlaylist(displayed);
             }
-
-            updateMiniPlayer();
+            boolean isShuffle = !musicService.isShuffle();
+            musicService.setShuffle(isShuffle);
+            Toast.makeText(this, isShuffle ? "Bật phát ngẫu nhiên" : "Tắt phát ngẫu nhiên", Toast.LENGTH_SHORT).show();
         });
 
     }
@@ -212,11 +276,16 @@ public class MainActivity extends AppCompatActivity {
         if (ContextCompat.checkSelfPermission(this, perm) != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions(this, getRequiredPermissions(), REQUEST_PERMISSION);
         } else {
-            loadSongsFromMusicFolder();
+            loadLibrary();
         }
     }
 
-    // ========= LOAD FILE MUSIC =========
+    // ========= LOAD LIBRARY =========
+    private void loadLibrary() {
+        // MediaStore là nguồn chính; nếu không có kết quả thì quét thẳng /Music/
+        startLibrarySource(new MediaStoreLibrarySource(this), true);
+    }
+
     private void loadSongsFromMusicFolder() {
         File musicDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_MUSIC);
 
@@ -225,35 +294,121 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        File[] files = musicDir.listFiles();
-        if (files == null) return;
-
-        long id = 1;
+        startLibrarySource(new FolderLibrarySource(scanner, musicDir), false);
+    }
 
-        for (File f : files) {
-            if (f.getName().toLowerCase().matches(".*\\.(mp3|m4a|wav|aac)$")) {
-                try {
-                    MediaMetadataRetriever mmr = new MediaMetadataRetriever();
-                    mmr.setDataSource(this, Uri.fromFile(f));
+    private void startLibrarySource(LibrarySource source, boolean fallbackToFolder) {
+        if (librarySource != null) librarySource.stop();
+        librarySource = source;
 
-                    String title = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE);
-                    String artist = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
-                    String dur = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+        // Lần tải đầu: hiện dần theo từng batch. Quét lại: giữ danh sách cũ tới khi xong
+        // rồi mới diff một lần, để chỉ những bài thay đổi mới bị animate.
+        boolean rescan = !library.isEmpty();
+        library.clear();
+        searchExecutor.execute(searchIndex::clear);
+        loading = true;
 
-                    long duration = dur != null ? Long.parseLong(dur) : 0;
+        source.load(new LibrarySource.Listener() {
+            @Override
+            public void onSongsAdded(List<Song> added) {
+                library.addAll(added);
+                SongStore snapshot = library.snapshot();
+                searchExecutor.execute(() -> searchIndex.append(snapshot));
+                if (!rescan || !loading) publishSongs();
+            }
 
-                    if (title == null || title.isEmpty()) title = f.getName();
-                    if (artist == null || artist.isEmpty()) artist = "Unknown";
+            @Override
+            public void onSongsRemoved(Set<Long> removedIds) {
+                library.removeIds(removedIds);
+                SongStore snapshot = library.snapshot();
+                searchExecutor.execute(() -> searchIndex.reset(snapshot));
+                publishSongs();
+            }
 
-                    songs.add(new Song(id++, title, artist, duration, f.getAbsolutePath()));
-                    mmr.release();
-                } catch (Exception e) {
-                    Log.e("MUSIC", "Lỗi đọc file: " + f.getName(), e);
-                }
+            @Override
+            public void onLoadFinished(int total) {
+                loading = false;
+                publishSongs();
+                Log.d("MUSIC", "Đã tải xong " + total + " bài");
+                if (total == 0 && fallbackToFolder) loadSongsFromMusicFolder();
             }
+        });
+    }
+
+    /**
+     * Đưa thư viện (theo cách xem hiện tại) hoặc kết quả tìm kiếm cho adapter; AsyncListDiffer tính diff ở background.
+     * Lần tải đầu hiện thứ tự quét cho tới khi index dựng xong; sau đó index cũ vẫn được hiện tới khi index mới sẵn sàng.
+     */
+    private void publishSongs() {
+        if (bound && musicService != null) musicService.setLibrary(library.snapshot());
+        if (!query.isEmpty()) {
+            runSearch();
+            return;
         }
+        searchToken++; // bỏ kết quả tìm kiếm còn đang chạy
+        SongStore snapshot = library.snapshot();
+        if (libraryIndex != null && libraryIndexStore == snapshot) {
+            submitSongs(libraryIndex.rows(viewMode), viewMode.ordinal());
+            return;
+        }
+        if (libraryIndex == null) submitSongs(snapshot, KIND_FLAT);
+        if (!loading) buildIndex(snapshot);
+    }
+
+    /** Sắp xếp / gom nhóm một lần cho mỗi snapshot, trên thread của tìm kiếm. */
+    private void buildIndex(SongStore snapshot) {
+        int token = ++indexToken;
+        searchExecutor.execute(() -> {
+            LibraryIndex index = LibraryIndex.build(snapshot);
+            uiHandler.post(() -> {
+                if (token != indexToken) return;
+                libraryIndex = index;
+                libraryIndexStore = snapshot;
+                if (query.isEmpty()) publishSongs();
+            });
+        });
+    }
+
+    private void setViewMode(LibraryIndex.Mode mode) {
+        tabSongs.setTextColor(mode == LibraryIndex.Mode.SONGS ? Color.WHITE : TAB_INACTIVE);
+        tabArtists.setTextColor(mode == LibraryIndex.Mode.ARTISTS ? Color.WHITE : TAB_INACTIVE);
+        tabAlbums.setTextColor(mode == LibraryIndex.Mode.ALBUMS ? Color.WHITE : TAB_INACTIVE);
+        if (mode == viewMode) return;
+        viewMode = mode;
+        if (query.isEmpty()) publishSongs();
+    }
+
+    private final Runnable searchRunnable = this::publishSongs;
+
+    private void runSearch() {
+        String q = query;
+        int token = ++searchToken;
+        searchExecutor.execute(() -> {
+            List<Song> results = searchIndex.search(q, SEARCH_LIMIT);
+            uiHandler.post(() -> {
+                if (token == searchToken) submitSongs(results, KIND_SEARCH);
+            });
+        });
+    }
 
-        adapter.notifyDataSetChanged();
+    private void submitSongs(List<Song> list, int kind) {
+        // Đổi kiểu sắp xếp thì hai list gần như khác hẳn thứ tự: diff rất tốn mà không có gì để animate,
+        // nên bỏ list cũ rồi hiện list mới từ đầu
+        if (kind != listKind) {
+            listKind = kind;
+            adapter.submitList(null);
+            recyclerView.scrollToPosition(0);
+        }
+        adapter.submitList(list, () -> {
+            // Các bài theo thứ tự hiển thị (Rows thì bỏ header); service chỉ nhận list này khi người dùng bấm phát
+            displayed = list instanceof LibraryIndex.Rows ? ((LibraryIndex.Rows) list).songs() : list;
+            sectionBar.setIndexer(adapter);
+            if (!firstListShown && !list.isEmpty()) {
+                firstListShown = true;
+                Metrics.STARTUP_FIRST_LIST.recordMillis(SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime());
+            }
+            if (bound && musicService != null) musicService.offerRestore(displayed);
+        });
     }
 
     // ========= OPEN WITH AUDIO FILE =========
@@ -263,15 +418,28 @@ public class MainActivity extends AppCompatActivity {
         handleIntent(intent);
     }
 
+    private static boolean isViewIntent(Intent intent) {
+        return intent != null && Intent.ACTION_VIEW.equals(intent.getAction()) && intent.getData() != null;
+    }
+
+    /** "Open with" từ trình quản lý file: phát đúng Uri đó, chưa bind xong thì giữ lại tới onServiceConnected. */
     private void handleIntent(Intent intent) {
-        if (intent == null) return;
+        if (!isViewIntent(intent)) return;
+        pendingViewUri = intent.getData();
+        deliverViewUri();
+    }
 
-        Uri data = intent.getData();
-        if (Intent.ACTION_VIEW.equals(intent.getAction()) && data != null && bound && musicService != null) {
-            musicService.setPlaylist(songs);
-            musicService.playAt(0);
-            updateMiniPlayer();
-        }
+    private void deliverViewUri() {
+        if (pendingViewUri == null || !bound || musicService == null) return;
+        musicService.playUri(pendingViewUri);
+        pendingViewUri = null;
+    }
+
+    private void startDeferredLibrary() {
+        if (!libraryDeferred) return;
+        libraryDeferred = false;
+        uiHandler.removeCallbacks(startDeferredLibrary);
+        checkAndRequestPermission();
     }
 
     // ========= SERVICE CONNECTION =========
@@ -282,55 +450,111 @@ public class MainActivity extends AppCompatActivity {
             musicService = binder.getService();
             bound = true;
 
-            musicService.setPlaylist(songs);
-            updateMiniPlayer();
+            musicService.setLibrary(library.snapshot());
+            musicService.offerRestore(displayed);
+            deliverViewUri();
+            if (started) musicService.addPlaybackListener(playbackListener);
         }
 
         @Override
         public void onServiceDisconnected(ComponentName name) {
             bound = false;
             musicService = null;
+            uiHandler.removeCallbacks(seekTicker);
         }
     };
 
     // ========= MINI PLAYER UI UPDATE =========
-    private void updateMiniPlayer() {
-        if (!bound || musicService == null) return;
+    private final MusicService.PlaybackListener playbackListener = (song, playing, position, duration, updateTime) -> {
+        playingState = playing;
+        lastPosition = position;
+        lastUpdateTime = updateTime;
+        updateMiniPlayer(song, duration);
+        // duration > 0 chỉ khi bài đã prepare xong: file mở từ ngoài đang phát, giờ mới tải thư viện
+        if (libraryDeferred && song != null && duration > 0) startDeferredLibrary();
+
+        // Chỉ tick SeekBar khi đang phát và Activity đang hiển thị
+        uiHandler.removeCallbacks(seekTicker);
+        if (playing && started) uiHandler.post(seekTicker);
+    };
 
-        Song s = musicService.getCurrentSong();
-        if (s != null && musicService.getDuration() > 0) {
+    private void updateMiniPlayer(Song s, int duration) {
+        // Bài có thể vẫn đang prepare (duration = 0): vẫn hiện tên bài ngay
+        if (s != null) {
             tvMiniTitle.setText(s.getTitle());
             tvMiniArtist.setText(s.getArtist());
-            seekBar.setMax(musicService.getDuration());
-            seekBar.setProgress(musicService.getCurrentPosition());
-            btnPlayPause.setImageResource(musicService.isPlaying() ? R.drawable.ic_pause : R.drawable.ic_play);
+            if (!s.equals(miniCoverSong)) {  // get() từ store mỗi lần là view mới: so theo id
+                miniCoverSong = s;
+                ArtworkLoader.get(this).load(s, imgMiniCover);
+                seekBar.setPeaks(null);
+                WaveformLoader.get(this).load(s, waveformCallback);
+            }
+            seekBar.setMax(duration);
+            if (!userSeeking) seekBar.setProgress(lastPosition);
+            btnPlayPause.setImageResource(playingState ? R.drawable.ic_pause : R.drawable.ic_play);
         } else {
             tvMiniTitle.setText("No song");
             tvMiniArtist.setText("");
+            miniCoverSong = null;
+            ArtworkLoader.get(this).load(null, imgMiniCover);
+            seekBar.setPeaks(null);
+            WaveformLoader.get(this).load(null, waveformCallback);
             seekBar.setMax(0);
             seekBar.setProgress(0);
             btnPlayPause.setImageResource(R.drawable.ic_play);
         }
     }
 
+    // Waveform tới muộn (giải mã ở background) thì chỉ gắn nếu mini player vẫn đang hiện bài đó
+    private final WaveformLoader.Callback waveformCallback = (song, peaks) -> {
+        if (Objects.equals(song, miniCoverSong)) seekBar.setPeaks(peaks);  // so theo id, không theo instance
+    };
+
     // ========= SEEK BAR AUTO UPDATE =========
-    private void startSeekBarUpdater() {
-        uiHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                if (bound && musicService != null && musicService.isPlaying()) {
-                    seekBar.setMax(musicService.getDuration());
-                    seekBar.setProgress(musicService.getCurrentPosition());
-                }
-                uiHandler.postDelayed(this, 500);
-            }
-        });
+    // Nội suy vị trí từ mốc thời gian thay vì hỏi service mỗi lần; nhịp tick ~ thời gian ứng với 1 pixel
+    private final Runnable seekTicker = new Runnable() {
+        @Override
+        public void run() {
+            if (!playingState || !started) return;
+            int max = seekBar.getMax();
+            long pos = lastPosition + (SystemClock.elapsedRealtime() - lastUpdateTime);
+            if (!userSeeking) seekBar.setProgress((int) Math.min(pos, max));
+
+            int width = Math.max(1, seekBar.getWidth());
+            long interval = Math.max(50, Math.min(1000, max / width));
+            uiHandler.postDelayed(this, interval);
+        }
+    };
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        started = true;
+        watchdog.start();
+        if (bound && musicService != null) musicService.addPlaybackListener(playbackListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        started = false;
+        watchdog.stop();
+        uiHandler.removeCallbacks(seekTicker);
+        if (bound && musicService != null) musicService.removePlaybackListener(playbackListener);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (librarySource != null) librarySource.stop();
+        scanner.shutdown();
+        searchExecutor.shutdownNow();
+        uiHandler.removeCallbacksAndMessages(null);
         if (bound) {
+            if (musicService != null) {
+                musicService.removePlaybackListener(playbackListener);
+                musicService.setUserScrolling(false);
+            }
             unbindService(connection);
             bound = false;
         }
@@ -344,7 +568,7 @@ public class MainActivity extends AppCompatActivity {
         if (requestCode == REQUEST_PERMISSION &&
                 grantResults.length > 0 &&
                 grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-            loadSongsFromMusicFolder();
+            loadLibrary();
         } else {
             Toast.makeText(this, "Bạn phải cấp quyền để xem nhạc!", Toast.LENGTH_LONG).show();
         }
@@ -0,0 +1,65 @@
+package com.example.music_app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Phát hiện main thread bị nghẽn: một thread nền định kỳ post một tin nhắn rỗng lên main looper và đo
+ * thời gian tới khi nó được chạy. Độ trễ vào Metrics.MAIN_LATENCY, lần nào vượt STALL_MS thì tính là stall.
+ * Chỉ một tin nhắn mỗi PERIOD_MS nên gần như không tốn gì.
+ */
+final class MainThreadWatchdog {
+
+    private static final String TAG = "MainThreadWatchdog";
+    private static final long PERIOD_MS = 250;
+    static final long STALL_MS = 100;
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private Thread thread;
+
+    synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::loop, "main-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop() {
+        if (thread == null) return;
+        thread.interrupt();
+        thread = null;
+    }
+
+    private void loop() {
+        Object lock = new Object();
+        long[] ranAt = new long[1];
+        Runnable ping = () -> {
+            synchronized (lock) {
+                ranAt[0] = SystemClock.uptimeMillis();
+                lock.notifyAll();
+            }
+        };
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long postedAt;
+                synchronized (lock) {
+                    ranAt[0] = 0;
+                    postedAt = SystemClock.uptimeMillis();
+                    main.post(ping);
+                    while (ranAt[0] == 0) lock.wait();
+                }
+                long latency = ranAt[0] - postedAt;
+                Metrics.MAIN_LATENCY.recordMillis(latency);
+                if (latency >= STALL_MS) {
+                    Metrics.MAIN_STALLS.inc();
+                    Log.w(TAG, "Main thread bị nghẽn " + latency + " ms");
+                }
+                Thread.sleep(PERIOD_MS);
+            }
+        } catch (InterruptedException ignored) {
+            main.removeCallbacks(ping);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.music_app;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.IOException;
+
+/** PlaybackEngine dùng android.media.MediaPlayer, hỗ trợ gapless qua setNextMediaPlayer. */
+public class MediaPlayerEngine implements PlaybackEngine {
+
+    private final Context context;
+    private final MediaPlayer player = new MediaPlayer();
+    private Listener listener;
+    private int generation;         // tăng mỗi lần reset, callback của lần prepare cũ bị bỏ qua
+    private boolean prepared;
+    private boolean released;       // setVolume đến từ fade thread, có thể tới sau release
+
+    public MediaPlayerEngine(Context context) {
+        this.context = context.getApplicationContext();
+        player.setOnCompletionListener(mp -> {
+            if (listener != null) listener.onCompletion(this);
+        });
+        player.setOnInfoListener((mp, what, extra) -> {
+            if (what == MediaPlayer.MEDIA_INFO_STARTED_AS_NEXT && listener != null) listener.onStartedAsNext(this);
+            return false;
+        });
+        player.setOnErrorListener((mp, what, extra) -> {
+            prepared = false;
+            mp.reset();
+            if (listener != null) listener.onError(this, "MediaPlayer lỗi: " + what + "/" + extra);
+            return true;
+        });
+    }
+
+    @Override public void setListener(Listener listener) { this.listener = listener; }
+
+    @Override
+    public void prepare(String path) throws IOException {
+        int gen = generation;
+        if (ContentTracks.isContentUri(path)) {
+            // MediaPlayer dup fd nên đóng ngay được; dữ liệu đọc thẳng từ provider, không copy
+            try (ParcelFileDescriptor pfd = ContentTracks.open(context, path)) {
+                player.setDataSource(pfd.getFileDescriptor());
+            }
+        } else {
+            player.setDataSource(context, Uri.fromFile(new File(path)));
+        }
+        player.setOnPreparedListener(mp -> {
+            if (gen != generation) return;
+            prepared = true;
+            if (listener != null) listener.onPrepared(this);
+        });
+        player.prepareAsync();
+    }
+
+    @Override public void start() { if (prepared) player.start(); }
+
+    @Override public void pause() { if (prepared && player.isPlaying()) player.pause(); }
+
+    @Override public void seekTo(int ms) {
+        // SEEK_CLOSEST: chính xác tới mẫu thay vì nhảy về sync frame gần nhất
+        if (prepared) player.seekTo(ms, MediaPlayer.SEEK_CLOSEST);
+    }
+
+    @Override public int getPosition() { return prepared ? player.getCurrentPosition() : 0; }
+
+    @Override public int getDuration() { return prepared ? player.getDuration() : 0; }
+
+    @Override public boolean isPlaying() { return prepared && player.isPlaying(); }
+
+    @Override
+    public synchronized void setVolume(float volume) {
+        // Bước fade đang chạy dở trên fade thread khi service bị huỷ: MediaPlayer đã release thì bỏ qua
+        if (!released) player.setVolume(volume, volume);
+    }
+
+    @Override
+    public boolean setNext(PlaybackEngine next) {
+        if (next != null && !(next instanceof MediaPlayerEngine)) return false;
+        try {
+            player.setNextMediaPlayer(next != null ? ((MediaPlayerEngine) next).player : null);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void reset() {
+        generation++;
+        prepared = false;
+        player.reset();
+    }
+
+    @Override
+    public synchronized void release() {
+        generation++;
+        prepared = false;
+        released = true;
+        player.release();
+    }
+}
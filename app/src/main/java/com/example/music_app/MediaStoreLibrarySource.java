@@ -0,0 +1,205 @@
+package com.example.music_app;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lấy thư viện từ MediaStore.Audio.Media (đã được hệ thống index sẵn, có cả thư mục con).
+ * Cursor được đọc theo từng trang; sau khi tải xong, một ContentObserver biến các lần
+ * thêm / xoá file thành diff thay vì tải lại toàn bộ.
+ */
+public class MediaStoreLibrarySource implements LibrarySource {
+
+    private static final String TAG = "MediaStoreSource";
+    private static final Uri AUDIO_URI = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+    private static final int PAGE_SIZE = 500;
+    private static final long OBSERVER_DEBOUNCE_MS = 500;
+
+    private static final String[] PROJECTION = {
+            MediaStore.Audio.Media._ID,
+            MediaStore.Audio.Media.TITLE,
+            MediaStore.Audio.Media.ARTIST,
+            MediaStore.Audio.Media.ALBUM,
+            MediaStore.Audio.Media.DURATION,
+            MediaStore.Audio.Media.DATA
+    };
+    private static final String SELECTION = MediaStore.Audio.Media.IS_MUSIC + " != 0";
+
+    private final ContentResolver resolver;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Chỉ truy cập trên executor
+    private final Set<Long> knownIds = new HashSet<>();
+
+    private Listener listener;
+    private volatile boolean stopped;
+
+    private final Runnable syncRunnable = () -> executor.execute(this::syncChanges);
+
+    private final ContentObserver observer = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            // Gom nhiều thông báo liên tiếp (ví dụ copy cả album) thành một lần diff
+            mainHandler.removeCallbacks(syncRunnable);
+            mainHandler.postDelayed(syncRunnable, OBSERVER_DEBOUNCE_MS);
+        }
+    };
+
+    public MediaStoreLibrarySource(Context context) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+    }
+
+    @Override
+    public void load(Listener listener) {
+        this.listener = listener;
+        stopped = false;
+        executor.execute(this::loadAll);
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        mainHandler.removeCallbacks(syncRunnable);
+        resolver.unregisterContentObserver(observer);
+        executor.shutdownNow();
+    }
+
+    private void loadAll() {
+        knownIds.clear();
+        int total = 0;
+        int offset = 0;
+        long startedAt = System.nanoTime();
+        Metrics.trace().beginSection("MediaStore.loadAll");
+        try {
+            while (!stopped) {
+                List<Song> page = queryPage(offset);
+                if (page.isEmpty()) break;
+                for (Song s : page) knownIds.add(s.getId());
+                total += page.size();
+                offset += PAGE_SIZE;
+                postAdded(page);
+                if (page.size() < PAGE_SIZE) break;
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Lỗi truy vấn MediaStore", e);
+        } finally {
+            Metrics.trace().endSection();
+        }
+        Metrics.SCAN_TOTAL.recordNanos(System.nanoTime() - startedAt);
+
+        int count = total;
+        mainHandler.post(() -> {
+            if (stopped) return;
+            resolver.registerContentObserver(AUDIO_URI, true, observer);
+            listener.onLoadFinished(count);
+        });
+    }
+
+    private List<Song> queryPage(int offset) {
+        Bundle args = new Bundle();
+        args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, SELECTION);
+        args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, MediaStore.Audio.Media._ID);
+        args.putInt(ContentResolver.QUERY_ARG_LIMIT, PAGE_SIZE);
+        args.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
+
+        long startedAt = System.nanoTime();
+        try (Cursor c = resolver.query(AUDIO_URI, PROJECTION, args, null)) {
+            return readSongs(c);
+        } finally {
+            Metrics.MEDIASTORE_QUERY.recordNanos(System.nanoTime() - startedAt);
+        }
+    }
+
+    private static List<Song> readSongs(Cursor c) {
+        List<Song> result = new ArrayList<>();
+        if (c == null) return result;
+
+        int idCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media._ID);
+        int titleCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.TITLE);
+        int artistCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.ARTIST);
+        int albumCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM);
+        int durCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.DURATION);
+        int dataCol = c.getColumnIndexOrThrow(MediaStore.Audio.Media.DATA);
+
+        while (c.moveToNext()) {
+            long id = c.getLong(idCol);
+            String title = c.getString(titleCol);
+            String artist = c.getString(artistCol);
+            String path = c.getString(dataCol);
+
+            if (path == null) path = Uri.withAppendedPath(AUDIO_URI, String.valueOf(id)).toString();
+            if (title == null || title.isEmpty()) title = path.substring(path.lastIndexOf('/') + 1);
+            if (artist == null || artist.isEmpty() || MediaStore.UNKNOWN_STRING.equals(artist)) artist = "Unknown";
+
+            // MediaStore không có ReplayGain: gain NaN để đọc tag / ước lượng khi bài được phát lần đầu
+            result.add(new Song(id, title, artist, c.getString(albumCol), c.getLong(durCol), path, Float.NaN));
+        }
+        return result;
+    }
+
+    /** Chỉ truy vấn cột _ID để tìm bài bị xoá / thêm, rồi mới lấy chi tiết các bài mới. */
+    private void syncChanges() {
+        if (stopped) return;
+
+        Set<Long> current = new HashSet<>();
+        try (Cursor c = resolver.query(AUDIO_URI, new String[]{ MediaStore.Audio.Media._ID }, SELECTION, null, null)) {
+            if (c == null) return;
+            while (c.moveToNext()) current.add(c.getLong(0));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Lỗi đồng bộ MediaStore", e);
+            return;
+        }
+
+        Set<Long> removed = new HashSet<>();
+        for (Long id : knownIds) if (!current.contains(id)) removed.add(id);
+
+        List<Long> addedIds = new ArrayList<>();
+        for (Long id : current) if (!knownIds.contains(id)) addedIds.add(id);
+
+        knownIds.removeAll(removed);
+        if (!removed.isEmpty()) {
+            mainHandler.post(() -> {
+                if (!stopped) listener.onSongsRemoved(removed);
+            });
+        }
+
+        for (int from = 0; from < addedIds.size(); from += PAGE_SIZE) {
+            List<Long> part = addedIds.subList(from, Math.min(addedIds.size(), from + PAGE_SIZE));
+            StringBuilder sel = new StringBuilder(SELECTION).append(" AND ")
+                    .append(MediaStore.Audio.Media._ID).append(" IN (");
+            for (int i = 0; i < part.size(); i++) sel.append(i == 0 ? "" : ",").append(part.get(i));
+            sel.append(')');
+
+            try (Cursor c = resolver.query(AUDIO_URI, PROJECTION, sel.toString(), null, MediaStore.Audio.Media._ID)) {
+                List<Song> added = readSongs(c);
+                for (Song s : added) knownIds.add(s.getId());
+                postAdded(added);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Lỗi đọc bài mới", e);
+            }
+        }
+    }
+
+    private void postAdded(List<Song> songs) {
+        if (songs.isEmpty()) return;
+        mainHandler.post(() -> {
+            if (!stopped) listener.onSongsAdded(songs);
+        });
+    }
+}
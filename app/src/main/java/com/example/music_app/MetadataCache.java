@@ -0,0 +1,161 @@
+package com.example.music_app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index metadata lưu trên đĩa, key là đường dẫn tuyệt đối + kích thước + lastModified.
+ * File không đổi được lấy thẳng từ index, chỉ file mới / đã sửa mới phải đọc lại bằng MetadataReader.
+ */
+public class MetadataCache {
+
+    private static final int MAGIC = 0x4D494458; // "MIDX"
+    private static final int VERSION = 3;
+
+    static final class Entry {
+        final long length;
+        final long lastModified;
+        final String title;
+        final String artist;
+        final String album;
+        final long duration;
+        final float gainDb;
+
+        Entry(long length, long lastModified, String title, String artist, String album, long duration, float gainDb) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.duration = duration;
+            this.gainDb = gainDb;
+        }
+    }
+
+    private final File file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean loaded;
+    private boolean dirty;
+
+    public MetadataCache(File file) { this.file = file; }
+
+    /** Đọc index từ đĩa (chỉ lần đầu). File hỏng thì coi như cache rỗng. */
+    public synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                String title = in.readUTF();
+                String artist = in.readUTF();
+                String album = in.readUTF();
+                long duration = in.readLong();
+                float gainDb = in.readFloat();
+                entries.put(path, new Entry(length, lastModified, title, artist, album, duration, gainDb));
+            }
+        } catch (IOException e) {
+            entries.clear();
+        }
+    }
+
+    /** Trả về Song từ index nếu file chưa thay đổi, ngược lại null. */
+    public synchronized Song lookup(File f, long id) {
+        String path = f.getAbsolutePath();
+        Entry e = entries.get(path);
+        if (e == null || e.length != f.length() || e.lastModified != f.lastModified()) return null;
+        return new Song(id, e.title, e.artist, e.album, e.duration, path, e.gainDb);
+    }
+
+    public synchronized void put(File f, Song s) {
+        entries.put(f.getAbsolutePath(),
+                new Entry(f.length(), f.lastModified(), s.getTitle(), s.getArtist(), nonNull(s.getAlbum()),
+                        s.getDuration(), s.getGainDb()));
+        dirty = true;
+    }
+
+    /** Xoá entry của các file không còn tồn tại. */
+    public synchronized void retainOnly(Collection<String> paths) {
+        if (entries.keySet().retainAll(paths)) dirty = true;
+    }
+
+    public synchronized int size() { return entries.size(); }
+
+    /**
+     * Lấy metadata cho danh sách file: hit thì dùng index, miss thì đọc bằng reader và ghi vào index.
+     * Id của mỗi bài lấy từ Song.idForPath nên không đổi giữa các lần quét.
+     * Thời gian từng file và tỉ lệ hit được ghi vào Metrics.
+     */
+    public List<Song> resolve(List<File> files, MetadataReader reader) {
+        List<Song> result = new ArrayList<>(files.size());
+        for (File f : files) {
+            if (Thread.currentThread().isInterrupted()) break;
+            long startedAt = System.nanoTime();
+            long id = Song.idForPath(f.getAbsolutePath());
+            Song s = lookup(f, id);
+            if (s != null) {
+                Metrics.CACHE_HITS.inc();
+            } else {
+                Metrics.CACHE_MISSES.inc();
+                Metrics.trace().beginSection("MetadataReader.read");
+                try {
+                    s = reader.read(f, id);
+                    if (s != null) put(f, s);
+                } catch (Exception e) {
+                    s = null;
+                } finally {
+                    Metrics.trace().endSection();
+                }
+            }
+            Metrics.SCAN_FILE.recordNanos(System.nanoTime() - startedAt);
+            if (s != null) result.add(s);
+        }
+        return result;
+    }
+
+    /** Ghi index ra file tạm rồi rename, để không bao giờ để lại file ghi dở. */
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> me : entries.entrySet()) {
+                Entry e = me.getValue();
+                out.writeUTF(me.getKey());
+                out.writeLong(e.length);
+                out.writeLong(e.lastModified);
+                out.writeUTF(e.title);
+                out.writeUTF(e.artist);
+                out.writeUTF(e.album);
+                out.writeLong(e.duration);
+                out.writeFloat(e.gainDb);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Không ghi được " + file);
+        }
+        dirty = false;
+    }
+
+    private static String nonNull(String s) { return s != null ? s : ""; }
+}
@@ -0,0 +1,10 @@
+package com.example.music_app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/** Đọc title / artist / duration của một file nhạc. */
+public interface MetadataReader extends Closeable {
+    Song read(File file, long id) throws IOException;
+}
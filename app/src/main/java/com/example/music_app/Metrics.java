@@ -0,0 +1,110 @@
+package com.example.music_app;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Số liệu trong app: bộ đếm và histogram độ trễ dùng chung toàn process, ghi từ mọi thread với chi phí
+ * một lần tăng atomic. Xem trên máy bằng `adb shell dumpsys activity service .MusicService`.
+ * Các đoạn quan trọng đồng thời được đánh dấu qua Tracer (android.os.Trace) để xem trong Perfetto;
+ * mặc định Tracer không làm gì nên code thuần Java (và unit test) không phụ thuộc Android.
+ */
+public final class Metrics {
+
+    public interface Tracer {
+        void beginSection(String name);
+        void endSection();
+        void beginAsyncSection(String name, int cookie);
+        void endAsyncSection(String name, int cookie);
+    }
+
+    public static final class Counter {
+        final String name;
+        private final AtomicLong value = new AtomicLong();
+
+        Counter(String name) { this.name = name; }
+
+        public void inc() { value.incrementAndGet(); }
+        public void add(long n) { value.addAndGet(n); }
+        public long get() { return value.get(); }
+    }
+
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<LatencyHistogram> HISTOGRAMS = new ArrayList<>();
+
+    // ========= THƯ VIỆN =========
+    public static final LatencyHistogram SCAN_TOTAL = histogram("library.scan_total");
+    public static final LatencyHistogram SCAN_FILE = histogram("library.scan_per_file");
+    public static final LatencyHistogram MEDIASTORE_QUERY = histogram("library.mediastore_query");
+    public static final LatencyHistogram STARTUP_FIRST_LIST = histogram("startup.first_list");
+    public static final Counter CACHE_HITS = counter("metadata.cache_hit");
+    public static final Counter CACHE_MISSES = counter("metadata.cache_miss");
+    public static final Counter TAG_PARSER_FALLBACKS = counter("metadata.parser_fallback");
+
+    // ========= PHÁT NHẠC =========
+    public static final LatencyHistogram PREPARE = histogram("playback.prepare");
+    public static final LatencyHistogram PREPARE_PREFETCHED = histogram("playback.prepare_prefetched");
+    public static final LatencyHistogram PREPARE_COLD = histogram("playback.prepare_cold");
+    public static final LatencyHistogram TRANSITION_GAP = histogram("playback.transition_gap");
+    public static final Counter PREPARE_ERRORS = counter("playback.error");
+    public static final Counter PREFETCH_FILES = counter("prefetch.files");
+    public static final Counter PREFETCH_BYTES = counter("prefetch.bytes");
+    public static final Counter PREFETCH_BACKOFFS = counter("prefetch.backoff");
+    public static final Counter NOTIFICATION_REBUILDS = counter("notification.rebuild");
+
+    // ========= LỊCH SỬ NGHE =========
+    public static final LatencyHistogram HISTORY_COMPACTION = histogram("history.compaction");
+
+    // ========= MAIN THREAD =========
+    public static final LatencyHistogram MAIN_LATENCY = histogram("main.message_latency");
+    public static final Counter MAIN_STALLS = counter("main.stall");
+
+    private static final Tracer NO_TRACE = new Tracer() {
+        @Override public void beginSection(String name) {}
+        @Override public void endSection() {}
+        @Override public void beginAsyncSection(String name, int cookie) {}
+        @Override public void endAsyncSection(String name, int cookie) {}
+    };
+    private static volatile Tracer tracer = NO_TRACE;
+
+    private Metrics() {}
+
+    private static LatencyHistogram histogram(String name) {
+        LatencyHistogram h = new LatencyHistogram(name);
+        HISTOGRAMS.add(h);
+        return h;
+    }
+
+    private static Counter counter(String name) {
+        Counter c = new Counter(name);
+        COUNTERS.add(c);
+        return c;
+    }
+
+    public static void setTracer(Tracer t) { tracer = t != null ? t : NO_TRACE; }
+
+    public static Tracer trace() { return tracer; }
+
+    public static double cacheHitRate() {
+        long hits = CACHE_HITS.get();
+        long total = hits + CACHE_MISSES.get();
+        return total > 0 ? hits / (double) total : 0;
+    }
+
+    public static void dump(PrintWriter pw) {
+        pw.println("Metrics:");
+        for (Counter c : COUNTERS) pw.printf(Locale.US, "  %-26s %d%n", c.name, c.get());
+        pw.printf(Locale.US, "  %-26s %.1f%%%n", "metadata.cache_hit_rate", cacheHitRate() * 100);
+        for (LatencyHistogram h : HISTOGRAMS) pw.println("  " + h.summary());
+        pw.flush();
+    }
+
+    /** Xoá số liệu (dumpsys ... reset). */
+    public static void reset() {
+        for (Counter c : COUNTERS) c.value.set(0);
+        for (LatencyHistogram h : HISTOGRAMS) h.reset();
+    }
+}
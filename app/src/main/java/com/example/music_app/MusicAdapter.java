@@ -3,50 +3,189 @@ package com.example.music_app;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.List;
+import java.util.Objects;
 
-public class MusicAdapter extends RecyclerView.Adapter<MusicAdapter.VH> {
+/**
+ * Danh sách bài, có thể xen header nhóm (nghệ sĩ / album) khi list là LibraryIndex.Rows.
+ * Header là Song dựng sẵn trong index nên bind header cũng chỉ là setText, không ghép chuỗi.
+ * List lấy từ SongStore (thư viện, Rows) được bind thẳng từ các cột theo row: bind / getItemId không tạo Song nào.
+ * Section A–Z cho thanh cuộn nhanh lấy từ Rows; list thường (kết quả tìm kiếm) thì không có section.
+ */
+public class MusicAdapter extends ListAdapter<Song, RecyclerView.ViewHolder> implements SectionIndexer {
+
+    private static final int TYPE_SONG = 0;
+    private static final int TYPE_HEADER = 1;
+    private static final Object[] NO_SECTIONS = new Object[0];
+
+    // Diff chạy trên background thread của AsyncListDiffer, chỉ phần thay đổi mới được bind lại
+    private static final DiffUtil.ItemCallback<Song> DIFF = new DiffUtil.ItemCallback<Song>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Song a, @NonNull Song b) { return a.getId() == b.getId(); }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Song a, @NonNull Song b) {
+            return a.getDuration() == b.getDuration()
+                    && Objects.equals(a.getTitle(), b.getTitle())
+                    && Objects.equals(a.getArtist(), b.getArtist())
+                    && Objects.equals(a.getPath(), b.getPath());
+        }
+    };
 
-    private List<Song> list;
     private OnItemClickListener listener;
+    private final ArtworkLoader artwork;
+    private LibraryIndex.Rows rows;   // list hiện tại nếu là Rows, null nếu là list phẳng
+    private SongStore flat;           // list hiện tại nếu chính là SongStore (thứ tự quét)
+    private List<Song> submitted;     // list gốc của lần submit gần nhất
 
-    public MusicAdapter(List<Song> list) { this.list = list; }
+    public MusicAdapter(ArtworkLoader artwork) {
+        super(DIFF);
+        this.artwork = artwork;
+        setHasStableIds(true);
+    }
 
     public void setOnItemClickListener(OnItemClickListener l) { this.listener = l; }
 
-    @NonNull
     @Override
-    public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_song, parent, false);
-        return new VH(v);
+    public void submitList(List<Song> list) {
+        submitted = list;
+        super.submitList(list);
+    }
+
+    @Override
+    public void submitList(List<Song> list, Runnable commitCallback) {
+        submitted = list;
+        super.submitList(list, commitCallback);
+    }
+
+    @Override
+    public void onCurrentListChanged(@NonNull List<Song> previous, @NonNull List<Song> current) {
+        // current là bản bọc unmodifiable của AsyncListDiffer, không bao giờ là Rows: lấy lại list gốc.
+        // Differ chỉ commit lần submit mới nhất nên list gốc đó đúng là list vừa được commit
+        rows = submitted instanceof LibraryIndex.Rows ? (LibraryIndex.Rows) submitted : null;
+        flat = submitted instanceof SongStore ? (SongStore) submitted : null;
+    }
+
+    /** Row trong store của dòng adapter; -1 nếu là header hoặc list không đọc từ store (kết quả tìm kiếm). */
+    private int storeRow(int position) {
+        if (rows != null) return rows.storeRow(position);
+        return flat != null ? position : -1;
     }
 
+    private SongStore store() { return rows != null ? rows.store() : flat; }
+
     @Override
-    public void onBindViewHolder(@NonNull VH holder, int position) {
-        Song s = list.get(position);
-        holder.title.setText(s.getTitle());
-        holder.artist.setText(s.getArtist());
+    public long getItemId(int position) {
+        int row = storeRow(position);
+        if (row >= 0) return store().id(row);
+        Song header = rows != null ? rows.headerAt(position) : null;
+        return (header != null ? header : getItem(position)).getId();
+    }
 
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) listener.onItemClick(position);
+    @Override
+    public int getItemViewType(int position) {
+        return rows != null && rows.isHeader(position) ? TYPE_HEADER : TYPE_SONG;
+    }
+
+    /** Vị trí trong danh sách bài (không tính header) ứng với dòng adapter, -1 nếu là header. */
+    public int songIndexAt(int position) {
+        return rows != null ? rows.songIndexAt(position) : position;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == TYPE_HEADER) {
+            return new HeaderVH(inflater.inflate(R.layout.item_header, parent, false));
+        }
+        View v = inflater.inflate(R.layout.item_song, parent, false);
+        VH holder = new VH(v);
+        // Một listener cho mỗi VH, đọc vị trí lúc click thay vì giữ position lúc bind
+        v.setOnClickListener(view -> {
+            int pos = holder.getBindingAdapterPosition();
+            if (pos == RecyclerView.NO_POSITION || listener == null) return;
+            int index = songIndexAt(pos);
+            if (index >= 0) listener.onItemClick(index);
         });
+        return holder;
     }
 
     @Override
-    public int getItemCount() { return list == null ? 0 : list.size(); }
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        if (holder instanceof HeaderVH) {
+            HeaderVH h = (HeaderVH) holder;
+            Song header = rows != null ? rows.headerAt(position) : null;
+            if (header == null) header = getItem(position);
+            h.title.setText(header.getTitle());
+            h.subtitle.setText(header.getArtist());
+            return;
+        }
+        VH h = (VH) holder;
+        int row = storeRow(position);
+        if (row >= 0) {
+            SongStore store = store();
+            h.title.setText(store.title(row));
+            h.artist.setText(store.artist(row));
+            artwork.load(store.path(row), h.cover);
+            return;
+        }
+        // Kết quả tìm kiếm: list đã là các Song có sẵn, getItem không tạo thêm gì
+        Song s = getItem(position);
+        h.title.setText(s.getTitle());
+        h.artist.setText(s.getArtist());
+        artwork.load(s.getPath(), h.cover);
+    }
 
-    public interface OnItemClickListener { void onItemClick(int position); }
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        // Huỷ yêu cầu tải ảnh của view đã bị recycle
+        if (holder instanceof VH) artwork.cancel(((VH) holder).cover);
+    }
+
+    // ========= SECTION INDEXER =========
+    @Override
+    public Object[] getSections() { return rows != null ? rows.getSections() : NO_SECTIONS; }
+
+    @Override
+    public int getPositionForSection(int sectionIndex) {
+        return rows != null ? rows.getPositionForSection(sectionIndex) : 0;
+    }
+
+    @Override
+    public int getSectionForPosition(int position) {
+        return rows != null ? rows.getSectionForPosition(position) : 0;
+    }
+
+    /** index là vị trí trong danh sách bài đang hiển thị (đã bỏ header), khớp với playlist của service. */
+    public interface OnItemClickListener { void onItemClick(int index); }
 
     static class VH extends RecyclerView.ViewHolder {
         TextView title, artist;
+        ImageView cover;
 
         VH(@NonNull View itemView) {
             super(itemView);
+            cover = itemView.findViewById(R.id.imgCover);
             title = itemView.findViewById(R.id.tvTitle);
             artist = itemView.findViewById(R.id.tvArtist);
         }
     }
+
+    static class HeaderVH extends RecyclerView.ViewHolder {
+        TextView title, subtitle;
+
+        HeaderVH(@NonNull View itemView) {
+            super(itemView);
+            title = itemView.findViewById(R.id.tvHeaderTitle);
+            subtitle = itemView.findViewById(R.id.tvHeaderSubtitle);
+        }
+    }
 }
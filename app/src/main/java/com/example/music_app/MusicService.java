@@ -4,15 +4,26 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.media.AudioAttributes;
+import android.media.AudioFocusRequest;
+import android.media.AudioManager;
 import android.media.MediaMetadataRetriever;
-import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
-import android.widget.Toast;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
@@ -22,24 +33,111 @@ import android.support.v4.media.session.PlaybackStateCompat;
 import android.support.v4.media.MediaMetadataCompat;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class MusicService extends Service {
 
     public static final String ACTION_PLAY = "com.example.musicplayer.ACTION_PLAY";
     public static final String ACTION_PAUSE = "com.example.musicplayer.ACTION_PAUSE";
     public static final String ACTION_NEXT = "com.example.musicplayer.ACTION_NEXT";
+    public static final String ACTION_PREV = "com.example.musicplayer.ACTION_PREV";
     public static final String ACTION_START_PLAYLIST = "com.example.musicplayer.ACTION_START_PLAYLIST";
 
     private final IBinder binder = new LocalBinder();
-    private MediaPlayer mediaPlayer;
+    private final Handler handler = new Handler(Looper.getMainLooper());
     private MediaSessionCompat mediaSession;
-    private List<Song> playlist = new ArrayList<>();
-    private int currentIndex = 0;
+
+    // Engine phát: MediaPlayer (mặc định) hoặc pipeline MediaExtractor + MediaCodec + AudioTrack
+    private static final boolean USE_CODEC_ENGINE = false;
+    private PlaybackController player;
+    private PlaybackQueue queue;
+    // Ramp volume của crossfade chạy trên thread ưu tiên audio, không phụ thuộc main thread bận vẽ UI
+    private final HandlerThread fadeThread = new HandlerThread("playback-fade", Process.THREAD_PRIORITY_AUDIO);
+    private Handler fadeHandler;
+
+    // Lưu hàng đợi: gom các thay đổi trong STATE_SAVE_DELAY_MS, khi đang phát thì chốt vị trí định kỳ
+    private static final long STATE_SAVE_DELAY_MS = 2000;
+    private static final long STATE_CHECKPOINT_MS = 15000;
+    private QueueStateStore stateStore;
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    private final Runnable saveStateRunnable = this::saveState;
+    private QueueStateStore.State pendingRestore;  // thứ tự đã lưu, chờ snapshot thư viện khớp version
+
+    // Bài mở từ Uri bên ngoài: hàng đợi chỉ có bài đó, snapshot thư viện gửi tới trong lúc này được giữ lại
+    // và chỉ gắn vào khi người dùng chọn bài / Next / Previous
+    private boolean external;
+    private List<Song> deferredLibrary;
+    private int uriToken;
+
+    // Đọc trước các bài sắp phát trên thread nền; nhường khi tiết kiệm pin hoặc UI đang cuộn
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "prefetch"));
+    private Prefetcher prefetcher;
+    // Đọc tag / ước lượng gain cho bài sắp phát: thread riêng, không xếp sau prefetch (có thể đợi tới hết budget I/O)
+    private final ExecutorService gainExecutor = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "loudness"));
+    private GainCache gainCache;
+    private PowerManager powerManager;
+    private volatile boolean userScrolling;
+
+    // Lịch sử nghe: log ghi trên thread io, service chỉ đẩy sự kiện khi đổi bài
+    private PlayHistory history;
+    private PlayHistory.Tracker listenTracker;
+    private SongStore library = SongStore.EMPTY;  // cả thư viện mới nhất, độc lập với hàng đợi (có thể là kết quả tìm kiếm)
+
+    // Audio focus: mất tạm thời thì pause rồi phát lại khi được trả focus, bị "duck" thì giảm âm lượng
+    private static final float DUCK_VOLUME = 0.2f;
+    private AudioManager audioManager;
+    private AudioFocusRequest focusRequest;
+    private boolean hasFocus;
+    private boolean resumeOnFocusGain;
+    private boolean noisyRegistered;
+
+    private final BroadcastReceiver noisyReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Rút tai nghe / ngắt Bluetooth: dừng ngay để không phát ra loa ngoài
+            if (AudioManager.ACTION_AUDIO_BECOMING_NOISY.equals(intent.getAction())) pause();
+        }
+    };
 
     private static final int NOTIF_ID = 1;
     private static final String CHANNEL_ID = "music_playback_channel";
+    private static final long NOTIFY_MIN_INTERVAL_MS = 500;
+
+    private NotificationManager notificationManager;
+    private NotificationCompat.Builder notificationBuilder;
+    private NotificationCompat.Action actionPrev, actionPlay, actionPause, actionNext;
+    private final Runnable notifyRunnable = this::updateNotification;
+    private boolean foreground;
+    private String postedTitle, postedArtist;
+    private boolean postedPlaying;
+    private Bitmap currentArt, postedArt;
+    private long lastNotifyAt;
+
+    /**
+     * Nhận thay đổi trạng thái phát (đổi bài, play / pause, seek) trên main thread.
+     * position được đo tại updateTime (SystemClock.elapsedRealtime), UI tự nội suy khi đang phát.
+     */
+    public interface PlaybackListener {
+        void onPlaybackChanged(Song song, boolean playing, int position, int duration, long updateTime);
+    }
+
+    private final List<PlaybackListener> playbackListeners = new ArrayList<>();
 
     public class LocalBinder extends Binder {
         public MusicService getService() { return MusicService.this; }
@@ -52,11 +150,56 @@ public class MusicService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
+        Metrics.setTracer(AndroidTracer.INSTANCE);
+
+        fadeThread.start();
+        fadeHandler = new Handler(fadeThread.getLooper());
+        player = new PlaybackController(
+                USE_CODEC_ENGINE ? () -> new CodecPlaybackEngine(this) : () -> new MediaPlayerEngine(this),
+                scheduler, fadeScheduler, host);
+        queue = player.getQueue();
+        powerManager = getSystemService(PowerManager.class);
+        prefetcher = new Prefetcher(prefetchExecutor,
+                () -> userScrolling || (powerManager != null && powerManager.isPowerSaveMode()));
+        player.setPrefetcher(prefetcher);
+        gainCache = new GainCache(new File(getFilesDir(), "gain.idx"));
+        player.setGainEstimator((path, durationMs) -> gainExecutor.execute(() -> {
+            float db = estimateGain(path, durationMs);
+            handler.post(() -> player.onGainEstimated(path, db));
+        }));
 
         mediaSession = new MediaSessionCompat(this, "MusicService");
+        mediaSession.setCallback(new MediaSessionCompat.Callback() {
+            @Override public void onPlay() { play(); }
+            @Override public void onPause() { pause(); }
+            @Override public void onStop() { pause(); }
+            @Override public void onSkipToNext() { next(); }
+            @Override public void onSkipToPrevious() { previous(); }
+            @Override public void onSeekTo(long pos) { seekTo((int) pos); }
+        }, handler);
         mediaSession.setActive(true);
 
+        audioManager = getSystemService(AudioManager.class);
+        focusRequest = new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .build())
+                .setWillPauseWhenDucked(false)
+                .setAcceptsDelayedFocusGain(true)
+                .setOnAudioFocusChangeListener(this::onAudioFocusChange, handler)
+                .build();
+
         createNotificationChannel();
+        initNotification();
+
+        stateStore = new QueueStateStore(new File(getFilesDir(), "queue.state"));
+        history = new PlayHistory(new File(getFilesDir(), "history"), io);
+        listenTracker = new PlayHistory.Tracker(history);
+        io.execute(() -> {
+            QueueStateStore.State st = stateStore.load();
+            if (st != null) handler.post(() -> restoreState(st));
+        });
     }
 
     private void createNotificationChannel() {
@@ -76,138 +219,561 @@ public class MusicService extends Service {
         return new NotificationCompat.Action.Builder(icon, title, pi).build();
     }
 
-    private void startForegroundNotification() {
-        Song s = getCurrentSong();
-        String title = s != null ? s.getTitle() : "No song";
-        String artist = s != null ? s.getArtist() : "";
-        boolean isPlaying = mediaPlayer != null && mediaPlayer.isPlaying();
-        int playPauseIcon = isPlaying ? R.drawable.ic_pause : R.drawable.ic_play;
-        String playPauseText = isPlaying ? "Pause" : "Play";
-
-        NotificationCompat.Builder nb = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle(title)
-                .setContentText(artist)
-                .setSmallIcon(R.drawable.ic_music_note)
-                .setOnlyAlertOnce(true)
-                .addAction(buildAction(R.drawable.ic_music_note, "Prev", ACTION_NEXT))
-                .addAction(buildAction(playPauseIcon, playPauseText, isPlaying ? ACTION_PAUSE : ACTION_PLAY))
-                .addAction(buildAction(R.drawable.ic_next, "Next", ACTION_NEXT))
-                .setStyle(new MediaStyle().setMediaSession(mediaSession.getSessionToken()).setShowActionsInCompactView(1));
+    // ========= NOTIFICATION =========
+    // PendingIntent / Action / Builder được tạo một lần; chỉ build lại khi tên bài, ca sĩ hoặc trạng thái phát đổi
+    private void initNotification() {
+        actionPrev = buildAction(R.drawable.ic_back, "Prev", ACTION_PREV);
+        actionPlay = buildAction(R.drawable.ic_play, "Play", ACTION_PLAY);
+        actionPause = buildAction(R.drawable.ic_pause, "Pause", ACTION_PAUSE);
+        actionNext = buildAction(R.drawable.ic_next, "Next", ACTION_NEXT);
 
         Intent open = new Intent(this, MainActivity.class);
         int flags = PendingIntent.FLAG_UPDATE_CURRENT;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) flags |= PendingIntent.FLAG_IMMUTABLE;
         PendingIntent piOpen = PendingIntent.getActivity(this, 0, open, flags);
-        nb.setContentIntent(piOpen);
 
-        startForeground(NOTIF_ID, nb.build());
+        notificationBuilder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_music_note)
+                .setOnlyAlertOnce(true)
+                .setContentIntent(piOpen)
+                .setStyle(new MediaStyle().setMediaSession(mediaSession.getSessionToken()).setShowActionsInCompactView(1));
+        notificationManager = getSystemService(NotificationManager.class);
     }
 
-    public Song getCurrentSong() {
-        if (playlist == null || playlist.isEmpty() || currentIndex < 0 || currentIndex >= playlist.size()) return null;
-        return playlist.get(currentIndex);
+    /** Cập nhật notification nếu nội dung thật sự đổi, tối đa một lần mỗi NOTIFY_MIN_INTERVAL_MS. */
+    private void updateNotification() {
+        Song s = getCurrentSong();
+        String title = s != null ? s.getTitle() : "No song";
+        String artist = s != null ? s.getArtist() : "";
+        boolean isPlaying = isPlaying();
+
+        if (foreground && isPlaying == postedPlaying && title.equals(postedTitle) && artist.equals(postedArtist)
+                && currentArt == postedArt) {
+            handler.removeCallbacks(notifyRunnable);
+            return;
+        }
+
+        long wait = lastNotifyAt + NOTIFY_MIN_INTERVAL_MS - SystemClock.elapsedRealtime();
+        if (foreground && wait > 0) {
+            // Gộp các thay đổi dồn dập (skip liên tục) vào một lần notify
+            handler.removeCallbacks(notifyRunnable);
+            handler.postDelayed(notifyRunnable, wait);
+            return;
+        }
+
+        postedTitle = title;
+        postedArtist = artist;
+        postedPlaying = isPlaying;
+        postedArt = currentArt;
+        lastNotifyAt = SystemClock.elapsedRealtime();
+        Metrics.NOTIFICATION_REBUILDS.inc();
+        Metrics.trace().beginSection("notification.rebuild");
+
+        notificationBuilder
+                .setContentTitle(title)
+                .setContentText(artist)
+                .setLargeIcon(currentArt)
+                .clearActions()
+                .addAction(actionPrev)
+                .addAction(isPlaying ? actionPause : actionPlay)
+                .addAction(actionNext);
+
+        if (!foreground) {
+            startForeground(NOTIF_ID, notificationBuilder.build());
+            foreground = true;
+        } else if (notificationManager != null) {
+            notificationManager.notify(NOTIF_ID, notificationBuilder.build());
+        }
+        Metrics.trace().endSection();
     }
 
-    private void prepareAndStart(String path) {
-        try {
-            if (mediaPlayer != null) {
-                mediaPlayer.reset();
-                mediaPlayer.release();
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent != null ? intent.getAction() : null;
+        if (action != null) {
+            switch (action) {
+                case ACTION_PLAY: play(); break;
+                case ACTION_PAUSE: pause(); break;
+                case ACTION_NEXT: next(); break;
+                case ACTION_PREV: previous(); break;
             }
+        }
+        return START_STICKY;
+    }
 
-            mediaPlayer = new MediaPlayer();
-            File f = new File(path);
-            if (!f.exists()) {
-                Log.e("MusicService","File không tồn tại: "+path);
-                return;
-            }
-            mediaPlayer.setDataSource(this, Uri.fromFile(f));
-            mediaPlayer.prepare();
-            mediaPlayer.start();
+    public Song getCurrentSong() { return player.getCurrentSong(); }
+
+    /** Index của bài đang phát trong snapshot đã truyền vào setPlaylist, -1 nếu chưa phát. */
+    public int getCurrentIndex() { return player.getCurrentIndex(); }
+
+    // ========= PLAYBACK CONTROLLER =========
+    private final PlaybackController.Scheduler scheduler = new PlaybackController.Scheduler() {
+        @Override public void postDelayed(Runnable r, long delayMs) { handler.postDelayed(r, delayMs); }
+        @Override public void cancel(Runnable r) { handler.removeCallbacks(r); }
+        @Override public long now() { return SystemClock.elapsedRealtime(); }
+    };
+
+    private final PlaybackController.Scheduler fadeScheduler = new PlaybackController.Scheduler() {
+        @Override public void postDelayed(Runnable r, long delayMs) { fadeHandler.postDelayed(r, delayMs); }
+        @Override public void cancel(Runnable r) { fadeHandler.removeCallbacks(r); }
+        @Override public long now() { return SystemClock.elapsedRealtime(); }
+    };
+
+    private final PlaybackController.Host host = new PlaybackController.Host() {
+        @Override public boolean requestAudioFocus() { return MusicService.this.requestAudioFocus(); }
 
-            mediaPlayer.setOnCompletionListener(mp -> next());
+        @Override
+        public boolean isPlayable(String path) { return ContentTracks.isContentUri(path) || new File(path).exists(); }
 
+        @Override
+        public void onTrackReady() {
             updateMediaSessionMetadata();
-            updatePlaybackState(true);
-            startForegroundNotification();
+            updatePlaybackState();
+            updateNotification();
+        }
 
-        } catch (Exception e) {
-            Log.e("MusicService", "Lỗi phát nhạc: " + path, e);
-            Toast.makeText(this, "Nhac đang phát: " + path, Toast.LENGTH_SHORT).show();
+        @Override
+        public void onStateChanged(int positionMs) {
+            updatePlaybackState(positionMs);
+            updateNotification();
         }
-    }
+
+        @Override
+        public void onTransition(long gapMs) { Metrics.TRANSITION_GAP.recordMillis(gapMs); }
+
+        @Override
+        public void onError(String path, String message) {
+            Log.e("MusicService", message);
+            updatePlaybackState();
+        }
+    };
 
     private void updateMediaSessionMetadata() {
         Song s = getCurrentSong();
         if (s == null) return;
-        MediaMetadataCompat meta = new MediaMetadataCompat.Builder()
+
+        // Ảnh bìa lấy từ cache dùng chung với danh sách; chưa có thì tải xong sẽ cập nhật lại
+        ArtworkLoader artwork = ArtworkLoader.get(this);
+        currentArt = artwork.getCached(s);
+        if (currentArt == null) {
+            artwork.loadBitmap(s, bm -> {
+                if (bm != null && s.equals(getCurrentSong())) {
+                    updateMediaSessionMetadata();
+                    updateNotification();
+                }
+            });
+        }
+
+        MediaMetadataCompat.Builder mb = new MediaMetadataCompat.Builder()
                 .putString(MediaMetadataCompat.METADATA_KEY_TITLE, s.getTitle())
                 .putString(MediaMetadataCompat.METADATA_KEY_ARTIST, s.getArtist())
-                .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, s.getDuration())
-                .build();
-        mediaSession.setMetadata(meta);
+                .putString(MediaMetadataCompat.METADATA_KEY_ALBUM, s.getAlbum())
+                .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, s.getDuration());
+        if (currentArt != null) mb.putBitmap(MediaMetadataCompat.METADATA_KEY_ALBUM_ART, currentArt);
+        mediaSession.setMetadata(mb.build());
+    }
+
+    // ========= PLAYBACK LISTENERS =========
+    public void addPlaybackListener(PlaybackListener l) {
+        if (!playbackListeners.contains(l)) playbackListeners.add(l);
+        l.onPlaybackChanged(getCurrentSong(), isPlaying(), getCurrentPosition(), getDuration(), SystemClock.elapsedRealtime());
+    }
+
+    public void removePlaybackListener(PlaybackListener l) { playbackListeners.remove(l); }
+
+    private void dispatchPlaybackChanged(int pos) {
+        if (playbackListeners.isEmpty()) return;
+        Song s = getCurrentSong();
+        boolean playing = isPlaying();
+        int dur = getDuration();
+        long now = SystemClock.elapsedRealtime();
+        for (int i = playbackListeners.size() - 1; i >= 0; i--) {
+            playbackListeners.get(i).onPlaybackChanged(s, playing, pos, dur, now);
+        }
+    }
+
+    // ========= QUEUE STATE =========
+    private void scheduleStateSave() {
+        handler.removeCallbacks(saveStateRunnable);
+        handler.postDelayed(saveStateRunnable, STATE_SAVE_DELAY_MS);
+    }
+
+    /**
+     * Chụp trạng thái trên main thread rồi ghi ở thread io. Đang phát thì hẹn lần chốt vị trí tiếp theo.
+     * Đang phát file ngoài (content://, không khôi phục được) thì không ghi: trạng thái của hàng đợi thư
+     * viện đã lưu trước đó được giữ nguyên để lần mở sau quay về đúng chỗ.
+     */
+    private void saveState() {
+        handler.removeCallbacks(saveStateRunnable);
+        if (external) return;
+        Song cur = getCurrentSong();
+        if (cur == null || stateStore == null) return;
+
+        // Snapshot trong service có thể chỉ là bài đã khôi phục; khi đó giữ nguyên thứ tự cũ đang chờ
+        QueueStateStore.State st = pendingRestore != null
+                ? new QueueStateStore.State(pendingRestore.libraryVersion, pendingRestore.shuffle, pendingRestore.order,
+                        pendingRestore.position, pendingRestore.generated, cur, player.getPosition())
+                : new QueueStateStore.State(SongStore.versionOf(queue.getLibrary()), queue.isShuffle(),
+                        queue.copyShuffledOrder(), queue.position(), queue.generated(),
+                        new Song(cur.getId(), cur.getTitle(), cur.getArtist(), cur.getAlbum(), cur.getDuration(),
+                                cur.getPath(), cur.getGainDb()),
+                        player.getPosition());
+        io.execute(() -> {
+            try {
+                stateStore.save(st);
+            } catch (IOException e) {
+                Log.w("MusicService", "Không lưu được hàng đợi", e);
+            }
+        });
+        if (isPlaying()) handler.postDelayed(saveStateRunnable, STATE_CHECKPOINT_MS);
+    }
+
+    /**
+     * Khôi phục bài và vị trí đã lưu sau khi service bị kill: prepare sẵn ở trạng thái pause, không đợi
+     * activity quét thư viện. Thứ tự hàng đợi được áp lại khi snapshot thư viện khớp version đã lưu.
+     */
+    private void restoreState(QueueStateStore.State st) {
+        if (getCurrentSong() != null || player.isLoading()) return; // người dùng đã chọn bài khác
+        if (st.current.getPath().isEmpty() || !new File(st.current.getPath()).exists()) return;
+
+        if (queue.isEmpty()) {
+            queue.setLibrary(Collections.singletonList(st.current));
+            queue.moveTo(0);
+            pendingRestore = st;
+        } else if (!applyRestore(st)) {
+            int i = queue.indexOfId(st.current.getId());
+            if (i < 0) return;
+            queue.setShuffle(st.shuffle);
+            queue.moveTo(i);
+        }
+        player.prepareCurrent(false, st.positionMs);
     }
 
-    private void updatePlaybackState(boolean isPlaying) {
-        long state = isPlaying ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_PAUSED;
+    /** Áp thứ tự đã lưu nếu snapshot hiện tại đúng là snapshot lúc lưu và bài hiện tại vẫn khớp. */
+    private boolean applyRestore(QueueStateStore.State st) {
+        if (SongStore.versionOf(queue.getLibrary()) != st.libraryVersion) return false;
+        if (!queue.restore(st.shuffle, st.order, st.position, st.generated)) return false;
+        Song cur = queue.current();
+        return cur != null && cur.getId() == st.current.getId();
+    }
+
+    /**
+     * Gain cho bài chưa biết gain (bài từ MediaStore, hoặc file không có tag lúc quét), chạy trên gainExecutor:
+     * lấy từ GainCache nếu đã tính ở lần phát trước, không thì đọc tag ReplayGain, không có tag mới giải mã
+     * để ước lượng. Kết quả được lưu lại nên mỗi file chỉ phân tích một lần.
+     */
+    private float estimateGain(String path, long durationMs) {
+        if (ContentTracks.isContentUri(path)) return LoudnessEstimator.estimateGainDb(path, durationMs);
+        File f = new File(path);
+        gainCache.load();
+        float db = gainCache.lookup(f);
+        if (!Float.isNaN(db)) return db;
+        try {
+            db = Loudness.readTagGain(f);
+        } catch (IOException e) {
+            db = Float.NaN;
+        }
+        if (Float.isNaN(db)) db = LoudnessEstimator.estimateGainDb(path, durationMs);
+        gainCache.put(f, db);
+        try {
+            gainCache.save();
+        } catch (IOException e) {
+            Log.w("MusicService", "Không lưu được gain", e);
+        }
+        return db;
+    }
+
+    // ========= AUDIO FOCUS =========
+    private boolean requestAudioFocus() {
+        if (hasFocus) return true;
+        int r = audioManager.requestAudioFocus(focusRequest);
+        hasFocus = r == AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+        // DELAYED (đang có cuộc gọi...): sẽ phát khi nhận AUDIOFOCUS_GAIN
+        resumeOnFocusGain = r == AudioManager.AUDIOFOCUS_REQUEST_DELAYED;
+        return hasFocus;
+    }
+
+    /** Trả focus, kể cả yêu cầu DELAYED còn đang chờ (không thì AUDIOFOCUS_GAIN đến muộn sẽ tự phát). */
+    private void abandonAudioFocus() {
+        if (!hasFocus && !resumeOnFocusGain) return;
+        audioManager.abandonAudioFocusRequest(focusRequest);
+        hasFocus = false;
+        resumeOnFocusGain = false;
+    }
+
+    private void onAudioFocusChange(int change) {
+        switch (change) {
+            case AudioManager.AUDIOFOCUS_GAIN:
+                hasFocus = true;
+                setVolume(1f);
+                if (resumeOnFocusGain) {
+                    resumeOnFocusGain = false;
+                    play();
+                }
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                setVolume(DUCK_VOLUME);
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT: {
+                boolean wasPlaying = isPlaying();
+                pause();
+                resumeOnFocusGain = wasPlaying;
+                break;
+            }
+            case AudioManager.AUDIOFOCUS_LOSS:
+                // App khác chiếm hẳn focus: dừng và không tự phát lại
+                resumeOnFocusGain = false;
+                pause();
+                abandonAudioFocus();
+                break;
+        }
+    }
+
+    private void setVolume(float v) { player.setVolume(v); }
+
+    private void setNoisyReceiverRegistered(boolean register) {
+        if (register == noisyRegistered) return;
+        if (register) registerReceiver(noisyReceiver, new IntentFilter(AudioManager.ACTION_AUDIO_BECOMING_NOISY));
+        else unregisterReceiver(noisyReceiver);
+        noisyRegistered = register;
+    }
+
+    /**
+     * Đăng trạng thái lên MediaSession kèm thời điểm đo; controller (notification, Bluetooth, màn hình khoá)
+     * tự ngoại suy vị trí theo tốc độ phát nên chỉ cần đăng lại khi trạng thái đổi hoặc seek.
+     */
+    private void updatePlaybackState() {
+        updatePlaybackState(player.getPosition());
+    }
+
+    private void updatePlaybackState(int pos) {
+        boolean loading = player.isLoading();
+        boolean playing = isPlaying();
+        int state;
+        if (getCurrentSong() == null) state = PlaybackStateCompat.STATE_NONE;
+        else if (loading && player.isPlayWhenReady()) state = PlaybackStateCompat.STATE_BUFFERING;
+        else state = playing ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_PAUSED;
+
         PlaybackStateCompat pb = new PlaybackStateCompat.Builder()
-                .setActions(PlaybackStateCompat.ACTION_PLAY | PlaybackStateCompat.ACTION_PAUSE | PlaybackStateCompat.ACTION_SKIP_TO_NEXT | PlaybackStateCompat.ACTION_STOP)
-                .setState((int) state, mediaPlayer != null ? mediaPlayer.getCurrentPosition() : 0L,1.0f)
+                .setActions(PlaybackStateCompat.ACTION_PLAY | PlaybackStateCompat.ACTION_PAUSE
+                        | PlaybackStateCompat.ACTION_PLAY_PAUSE | PlaybackStateCompat.ACTION_STOP
+                        | PlaybackStateCompat.ACTION_SKIP_TO_NEXT | PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS
+                        | PlaybackStateCompat.ACTION_SEEK_TO)
+                .setState(state, pos, state == PlaybackStateCompat.STATE_PLAYING ? 1.0f : 0f,
+                        SystemClock.elapsedRealtime())
                 .build();
         mediaSession.setPlaybackState(pb);
+        listenTracker.update(getCurrentSong(), state == PlaybackStateCompat.STATE_PLAYING,
+                System.currentTimeMillis(), SystemClock.elapsedRealtime());
+        setNoisyReceiverRegistered(playing);
+        dispatchPlaybackChanged(pos);
+        scheduleStateSave();
+    }
+
+    // ========= PLAYBACK API =========
+    /**
+     * Gắn snapshot thư viện (list không đổi, dùng chung với adapter). Gọi lại với cùng snapshot là O(1);
+     * snapshot mới chỉ tốn O(n) int để dựng lại hàng đợi, không copy Song.
+     */
+    public void setPlaylist(List<Song> snapshot) {
+        // Rows có các dòng header (path null): hàng đợi chỉ nhận các bài, đúng thứ tự và index của click
+        if (snapshot instanceof LibraryIndex.Rows) snapshot = ((LibraryIndex.Rows) snapshot).songs();
+        if (external) {
+            deferredLibrary = snapshot;
+            return;
+        }
+        if (snapshot == queue.getLibrary()) return;
+        player.setPlaylist(snapshot);
+        if (pendingRestore != null && applyRestore(pendingRestore)) {
+            pendingRestore = null;
+            player.onQueueChanged();
+        }
+        scheduleStateSave();
     }
 
-    public void setPlaylist(List<Song> list) {
-        playlist.clear();
-        playlist.addAll(list);
+    /**
+     * List activity đang hiện: chỉ dùng để áp lại hàng đợi đã lưu khi đúng là list lúc lưu. Danh sách mới
+     * hay kết quả tìm kiếm không được thay hàng đợi đang phát; việc đó chỉ xảy ra khi người dùng bấm phát.
+     */
+    public void offerRestore(List<Song> snapshot) {
+        if (pendingRestore == null || external) return;
+        if (SongStore.versionOf(snapshot) != pendingRestore.libraryVersion) return;
+        setPlaylist(snapshot);
     }
 
     public void playAt(int index) {
-        if (playlist.isEmpty()) return;
-        if (index < 0) index = 0;
-        if (index >= playlist.size()) index = playlist.size()-1;
-        currentIndex = index;
-        Song s = getCurrentSong();
-        if (s != null) prepareAndStart(s.getPath());
+        pendingRestore = null;
+        leaveExternal();
+        player.playAt(index);
     }
 
-    public void play() {
-        if (mediaPlayer == null) {
-            Song s = getCurrentSong();
-            if (s != null) prepareAndStart(s.getPath());
-            return;
-        }
-        if (!mediaPlayer.isPlaying()) {
-            mediaPlayer.start();
-            updatePlaybackState(true);
-            startForegroundNotification();
-        }
+    /**
+     * Phát file mở từ ngoài app (ACTION_VIEW). Chỉ đọc tag ở header trên thread io rồi phát như hàng đợi
+     * một bài; không cần thư viện hay đợi quét xong.
+     */
+    public void playUri(Uri uri) {
+        int token = ++uriToken;
+        io.execute(() -> {
+            Song s = ContentTracks.read(this, uri);
+            handler.post(() -> {
+                if (token != uriToken) return;
+                pendingRestore = null;
+                if (!external) deferredLibrary = queue.getLibrary();
+                external = true;
+                player.setPlaylist(Collections.singletonList(s));
+                player.playAt(0);
+            });
+        });
+    }
+
+    /** Người dùng quay về thư viện: gắn snapshot đã giữ lại, bài ngoài không còn trong hàng đợi. */
+    private void leaveExternal() {
+        uriToken++;
+        if (!external) return;
+        external = false;
+        List<Song> library = deferredLibrary;
+        deferredLibrary = null;
+        if (library != null) setPlaylist(library);
     }
 
+    public void play() { player.play(); }
+
+    /** Người dùng đã chủ động dừng: focus DELAYED có đến sau cũng không tự phát. */
     public void pause() {
-        if (mediaPlayer != null && mediaPlayer.isPlaying()) {
-            mediaPlayer.pause();
-            updatePlaybackState(false);
-            startForegroundNotification();
+        resumeOnFocusGain = false;
+        player.pause();
+    }
+
+    public void next() {
+        pendingRestore = null;
+        leaveExternal();
+        player.next();
+    }
+
+    public void previous() {
+        pendingRestore = null;
+        leaveExternal();
+        player.previous();
+    }
+
+    /** Bật / tắt shuffle: bài đang phát không bị ngắt, chỉ bài chờ (gapless) được chuẩn bị lại. */
+    public void setShuffle(boolean enabled) {
+        pendingRestore = null;
+        player.setShuffle(enabled);
+        scheduleStateSave();
+    }
+
+    public boolean isShuffle() { return player.isShuffle(); }
+
+    public void setGapless(boolean enabled) { player.setGapless(enabled); }
+
+    /** Crossfade giữa các bài, 0..12000 ms (0 = tắt). */
+    public void setCrossfade(int ms) { player.setCrossfade(ms); }
+    public int getCrossfade() { return player.getCrossfade(); }
+
+    // ========= LỊCH SỬ NGHE =========
+    /** Activity báo snapshot thư viện mới; chỉ giữ tham chiếu, không đụng tới hàng đợi. */
+    public void setLibrary(SongStore snapshot) { library = snapshot; }
+
+    /** Các bài nghe nhiều nhất còn trong thư viện hiện tại, nhiều nhất n bài. */
+    public List<Song> getMostPlayed(int n) { return resolve(history.mostPlayed(n)); }
+
+    /** Các bài nghe gần đây nhất còn trong thư viện hiện tại, mới nhất trước. */
+    public List<Song> getRecentlyPlayed(int n) { return resolve(history.recentlyPlayed(n)); }
+
+    private List<Song> resolve(List<PlayHistory.Entry> entries) {
+        List<Song> songs = new ArrayList<>(entries.size());
+        SongStore lib = library;
+        for (PlayHistory.Entry e : entries) {
+            int i = lib.indexOfId(e.id);
+            if (i >= 0) songs.add(lib.get(i));
         }
+        return songs;
     }
 
+    /** UI báo đang cuộn / kéo danh sách: prefetch tạm dừng để không tranh I/O với ảnh bìa và bind. */
+    public void setUserScrolling(boolean scrolling) { userScrolling = scrolling; }
 
-    public void next() {
-        if (playlist.isEmpty()) return;
-        currentIndex = (currentIndex + 1) % playlist.size();
-        playAt(currentIndex);
+    /** Chuẩn hoá âm lượng theo gain ReplayGain (tag) hoặc RMS ước lượng lúc phát lần đầu. */
+    public void setNormalizeLoudness(boolean enabled) { player.setNormalize(enabled); }
+
+    public int getCurrentPosition() { return player.getPosition(); }
+    public int getDuration() { return player.getDuration(); }
+    // Đang chờ prepare mà người dùng muốn phát thì vẫn coi là "đang phát" để UI không nhấp nháy
+    public boolean isPlaying() { return player.isPlaying(); }
+    public void seekTo(int pos) { player.seekTo(pos); }
+
+    // dump() chờ main thread tối đa chừng này rồi bỏ qua phần trạng thái hàng đợi
+    private static final long DUMP_TIMEOUT_MS = 2000;
+
+    /**
+     * Xem số liệu trên máy không cần debugger:
+     * adb shell dumpsys activity service com.example.music_app/.MusicService [reset | prefetch on|off]
+     * Tắt prefetch rồi reset để so playback.prepare_cold với playback.prepare_prefetched.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            Metrics.reset();
+            pw.println("Metrics reset");
+            return;
+        }
+        if (args != null && args.length > 1 && "prefetch".equals(args[0])) {
+            boolean on = "on".equals(args[1]);
+            handler.post(() -> prefetcher.setEnabled(on));
+            pw.println("Prefetch " + (on ? "on" : "off"));
+            return;
+        }
+        // dump chạy trên binder thread: trạng thái hàng đợi / player chỉ được đọc trên main thread
+        StringWriter report = new StringWriter();
+        CountDownLatch done = new CountDownLatch(1);
+        handler.post(() -> {
+            dumpState(new PrintWriter(report));
+            done.countDown();
+        });
+        try {
+            if (done.await(DUMP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                pw.print(report);
+            } else {
+                pw.println("Main thread không trả lời sau " + DUMP_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        Metrics.dump(pw);
     }
 
-    public int getCurrentPosition() { return mediaPlayer != null ? mediaPlayer.getCurrentPosition() : 0; }
-    public int getDuration() { return mediaPlayer != null ? mediaPlayer.getDuration() : 0; }
-    public boolean isPlaying() { return mediaPlayer != null && mediaPlayer.isPlaying(); }
-    public void seekTo(int pos) { if (mediaPlayer != null) mediaPlayer.seekTo(pos); }
+    private void dumpState(PrintWriter pw) {
+        Song s = getCurrentSong();
+        pw.println("Đang phát: " + (s != null ? s.getPath() : "-") + (isPlaying() ? " (playing)" : " (paused)"));
+        pw.println("Hàng đợi: " + queue.size() + " bài, shuffle=" + isShuffle() + ", crossfade=" + getCrossfade() + " ms"
+                + ", prefetch=" + (prefetcher.isEnabled() ? "on" : "off"));
+        pw.println("Nghe nhiều nhất:");
+        for (PlayHistory.Entry e : history.mostPlayed(5)) {
+            int i = library.indexOfId(e.id);
+            String title = i >= 0 ? library.get(i).getTitle() : Long.toString(e.id);
+            pw.println("  " + e.plays + "× " + (e.listenedMs / 60_000) + " phút  " + title);
+        }
+        pw.flush();
+    }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (mediaPlayer != null) { mediaPlayer.release(); mediaPlayer = null; }
+        saveState();
+        listenTracker.finish(SystemClock.elapsedRealtime());
+        history.close();
+        io.shutdown();
+        prefetcher.cancel();
+        prefetchExecutor.shutdownNow();
+        gainExecutor.shutdownNow();
+        setNoisyReceiverRegistered(false);
+        abandonAudioFocus();
+        handler.removeCallbacksAndMessages(null);
+        playbackListeners.clear();
+        player.release();
+        fadeThread.quitSafely();
         if (mediaSession != null) { mediaSession.release(); mediaSession = null; }
     }
 }
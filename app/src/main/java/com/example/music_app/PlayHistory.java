@@ -0,0 +1,368 @@
+package com.example.music_app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lịch sử nghe nhạc: mỗi lần nghe là một bản ghi 20 byte (id bài, lúc bắt đầu, số ms đã nghe) nối vào
+ * cuối file log. Thread phát nhạc chỉ đẩy sự kiện vào hàng đợi lock-free; việc ghi, cộng dồn và compaction
+ * chạy trên executor đơn luồng (thread io của service), nên ghi không bao giờ chặn việc phát.
+ * Bộ đếm theo từng bài luôn nằm trong bộ nhớ; khi log đủ dài thì được ghi thành snapshot rồi log bắt đầu
+ * lại từ đầu, nên truy vấn "nghe nhiều nhất" / "nghe gần đây" chỉ phụ thuộc số bài, không phụ thuộc
+ * bao nhiêu năm lịch sử.
+ */
+public class PlayHistory {
+
+    /** Bộ đếm của một bài tại thời điểm truy vấn. */
+    public static final class Entry {
+        public final long id;
+        public final int plays;
+        public final long listenedMs;
+        public final long lastPlayedAt;
+
+        Entry(long id, int plays, long listenedMs, long lastPlayedAt) {
+            this.id = id;
+            this.plays = plays;
+            this.listenedMs = listenedMs;
+            this.lastPlayedAt = lastPlayedAt;
+        }
+    }
+
+    static final long MIN_LISTEN_MS = 3000;
+
+    private static final int LOG_MAGIC = 0x50484c47;   // "PHLG"
+    private static final int SNAP_MAGIC = 0x5048534e;  // "PHSN"
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 20;
+    static final int COMPACT_EVENTS = 1024;
+
+    private static final Comparator<Stats> BY_PLAYS = (a, b) ->
+            a.plays != b.plays ? Integer.compare(a.plays, b.plays) : Long.compare(a.lastPlayedAt, b.lastPlayedAt);
+    private static final Comparator<Stats> BY_RECENT = (a, b) -> Long.compare(a.lastPlayedAt, b.lastPlayedAt);
+
+    private static final class Stats {
+        final long id;
+        int plays;
+        long listenedMs;
+        long lastPlayedAt;
+
+        Stats(long id) { this.id = id; }
+
+        void add(long startedAt, long listened) {
+            plays++;
+            listenedMs += listened;
+            lastPlayedAt = Math.max(lastPlayedAt, startedAt);
+        }
+
+        Entry toEntry() { return new Entry(id, plays, listenedMs, lastPlayedAt); }
+    }
+
+    private static final class Event {
+        final long id, startedAt, listenedMs;
+
+        Event(long id, long startedAt, long listenedMs) {
+            this.id = id;
+            this.startedAt = startedAt;
+            this.listenedMs = listenedMs;
+        }
+    }
+
+    private final File logFile;
+    private final File snapFile;
+    private final Executor writer;
+    private final ConcurrentLinkedQueue<Event> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Runnable drain = this::drain;
+
+    // Đọc từ thread bất kỳ (truy vấn), ghi trên writer
+    private final Map<Long, Stats> stats = new HashMap<>();
+
+    // Chỉ dùng trên writer
+    private DataOutputStream log;
+    private long logSeq;            // số thứ tự của file log hiện tại; snapshot ghi lại log cuối đã gộp
+    private int logEvents;
+    private boolean closed;
+
+    /** writer phải là executor đơn luồng: mở file, ghi và compaction chạy tuần tự trên đó. */
+    public PlayHistory(File dir, Executor writer) {
+        dir.mkdirs();
+        this.logFile = new File(dir, "history.log");
+        this.snapFile = new File(dir, "history.snap");
+        this.writer = writer;
+        writer.execute(this::open);
+    }
+
+    // ========= GHI (thread phát nhạc) =========
+    /** Không chặn: chỉ đẩy vào hàng đợi, writer tự gom và ghi. */
+    public void record(long id, long startedAt, long listenedMs) {
+        if (listenedMs <= 0) return;
+        pending.offer(new Event(id, startedAt, listenedMs));
+        if (drainScheduled.compareAndSet(false, true)) writer.execute(drain);
+    }
+
+    /** Ghi nốt các sự kiện còn chờ rồi đóng log (service bị huỷ). */
+    public void close() {
+        writer.execute(() -> {
+            drain();
+            closeLog();
+            closed = true;
+        });
+    }
+
+    /**
+     * Theo dõi bài đang nghe trên thread phát: chỉ cộng thời gian thực sự phát (bỏ lúc pause / đang prepare),
+     * đổi bài thì ghi một sự kiện cho bài trước. Lượt nghe ngắn hơn MIN_LISTEN_MS (bấm Next lướt qua) bị bỏ.
+     */
+    public static final class Tracker {
+        private final PlayHistory history;
+        private boolean tracking;
+        private long id;
+        private long startedAt = -1;    // wall clock lúc bắt đầu phát thật
+        private long listened;
+        private long playingSince = -1; // elapsedRealtime lúc bắt đầu đoạn đang phát, -1 khi không phát
+
+        public Tracker(PlayHistory history) { this.history = history; }
+
+        /** Gọi mỗi khi trạng thái phát đổi; song null khi không có bài. */
+        public void update(Song song, boolean playing, long wallNow, long elapsedNow) {
+            if (tracking && (song == null || song.getId() != id)) finish(elapsedNow);
+            if (song == null) return;
+            if (!tracking) {
+                tracking = true;
+                id = song.getId();
+                startedAt = -1;
+                listened = 0;
+                playingSince = -1;
+            }
+            if (playing && playingSince < 0) {
+                playingSince = elapsedNow;
+                if (startedAt < 0) startedAt = wallNow;
+            } else if (!playing && playingSince >= 0) {
+                listened += elapsedNow - playingSince;
+                playingSince = -1;
+            }
+        }
+
+        /** Chốt bài đang theo dõi (đổi bài, service bị huỷ). */
+        public void finish(long elapsedNow) {
+            if (!tracking) return;
+            tracking = false;
+            if (playingSince >= 0) listened += elapsedNow - playingSince;
+            playingSince = -1;
+            if (listened >= MIN_LISTEN_MS) history.record(id, startedAt, listened);
+        }
+    }
+
+    // ========= TRUY VẤN =========
+    public List<Entry> mostPlayed(int n) { return top(n, BY_PLAYS); }
+
+    public List<Entry> recentlyPlayed(int n) { return top(n, BY_RECENT); }
+
+    public Entry get(long id) {
+        synchronized (stats) {
+            Stats s = stats.get(id);
+            return s != null ? s.toEntry() : null;
+        }
+    }
+
+    /** Chọn n phần tử lớn nhất bằng min-heap kích thước n: O(số bài · log n), không sắp xếp cả bảng. */
+    private List<Entry> top(int n, Comparator<Stats> order) {
+        List<Entry> result = new ArrayList<>();
+        if (n <= 0) return result;
+        PriorityQueue<Stats> heap = new PriorityQueue<>(n + 1, order);
+        synchronized (stats) {
+            for (Stats s : stats.values()) {
+                if (heap.size() < n) {
+                    heap.add(s);
+                } else if (order.compare(s, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(s);
+                }
+            }
+            while (!heap.isEmpty()) result.add(heap.poll().toEntry());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // ========= WRITER =========
+    private void open() {
+        long mergedSeq = readSnapshot();
+        logSeq = mergedSeq + 1;
+        if (logFile.exists()) {
+            long seq = replayLog(mergedSeq);
+            if (seq > 0) logSeq = seq;
+            else logFile.delete();  // log hỏng, hoặc đã được gộp vào snapshot trước khi kịp xoá
+        }
+        if (logEvents >= COMPACT_EVENTS) compact();
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        if (closed) return;
+        Event e;
+        int added = 0;
+        try {
+            while ((e = pending.poll()) != null) {
+                if (log == null) openLog();
+                log.writeLong(e.id);
+                log.writeLong(e.startedAt);
+                log.writeInt((int) Math.min(Integer.MAX_VALUE, e.listenedMs));
+                synchronized (stats) {
+                    apply(e.id, e.startedAt, e.listenedMs);
+                }
+                added++;
+            }
+            if (log != null) log.flush();
+        } catch (IOException ex) {
+            closeLog();
+            return;
+        }
+        logEvents += added;
+        if (logEvents >= COMPACT_EVENTS) compact();
+    }
+
+    private void apply(long id, long startedAt, long listenedMs) {
+        Stats s = stats.get(id);
+        if (s == null) stats.put(id, s = new Stats(id));
+        s.add(startedAt, listenedMs);
+    }
+
+    /**
+     * Ghi bộ đếm (đã gồm mọi sự kiện trong log) thành snapshot rồi bỏ log. Snapshot nhớ số thứ tự log
+     * đã gộp: nếu app chết giữa hai bước thì lần mở sau nhận ra log cũ và không cộng lại lần nữa.
+     */
+    void compact() {
+        long start = System.nanoTime();
+        closeLog();
+        File tmp = new File(snapFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(SNAP_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(logSeq);
+            synchronized (stats) {
+                out.writeInt(stats.size());
+                for (Stats s : stats.values()) {
+                    out.writeLong(s.id);
+                    out.writeInt(s.plays);
+                    out.writeLong(s.listenedMs);
+                    out.writeLong(s.lastPlayedAt);
+                }
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(snapFile)) {
+            tmp.delete();
+            return;
+        }
+        logFile.delete();
+        logSeq++;
+        logEvents = 0;
+        Metrics.HISTORY_COMPACTION.recordNanos(System.nanoTime() - start);
+    }
+
+    /** Nạp snapshot vào stats; trả về số thứ tự log cuối cùng đã được gộp (0 nếu chưa có snapshot). */
+    private long readSnapshot() {
+        if (!snapFile.exists()) return 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapFile)))) {
+            if (in.readInt() != SNAP_MAGIC || in.readInt() != VERSION) return 0;
+            long mergedSeq = in.readLong();
+            int n = in.readInt();
+            Map<Long, Stats> loaded = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i++) {
+                Stats s = new Stats(in.readLong());
+                s.plays = in.readInt();
+                s.listenedMs = in.readLong();
+                s.lastPlayedAt = in.readLong();
+                loaded.put(s.id, s);
+            }
+            synchronized (stats) {
+                stats.putAll(loaded);
+            }
+            return mergedSeq;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Cộng các bản ghi trong log vào stats và cắt bỏ bản ghi ghi dở ở cuối (app chết giữa chừng), để các
+     * bản ghi nối thêm sau đó vẫn thẳng hàng. Trả về số thứ tự của log, -1 nếu log không dùng được.
+     */
+    private long replayLog(long mergedSeq) {
+        long valid;
+        long seq;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            if (in.readInt() != LOG_MAGIC || in.readInt() != VERSION) return -1;
+            seq = in.readLong();
+            if (seq <= mergedSeq) return -1;
+            valid = LOG_HEADER_BYTES;
+            synchronized (stats) {
+                while (true) {
+                    long id, startedAt;
+                    int listened;
+                    try {
+                        id = in.readLong();
+                        startedAt = in.readLong();
+                        listened = in.readInt();
+                    } catch (EOFException eof) {
+                        break;
+                    }
+                    apply(id, startedAt, listened);
+                    valid += RECORD_BYTES;
+                    logEvents++;
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        if (logFile.length() > valid) {
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+                raf.setLength(valid);
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+        return seq;
+    }
+
+    private void openLog() throws IOException {
+        boolean fresh = !logFile.exists() || logFile.length() == 0;
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+        if (fresh) {
+            log.writeInt(LOG_MAGIC);
+            log.writeInt(VERSION);
+            log.writeLong(logSeq);
+        }
+    }
+
+    private void closeLog() {
+        if (log == null) return;
+        try {
+            log.close();
+        } catch (IOException ignored) {
+        }
+        log = null;
+    }
+}
@@ -0,0 +1,701 @@
+package com.example.music_app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logic phát nhạc không phụ thuộc Android: hàng đợi, prepare bất đồng bộ có gộp lệnh skip liên tục,
+ * và gapless bằng hai engine dùng luân phiên (một engine đang phát, engine còn lại chuẩn bị sẵn bài kế).
+ * Khi bật crossfade, engine chờ được start sớm và hai bài chồng lên nhau với ramp volume equal-power;
+ * ramp chạy trên fadeScheduler (thread phát riêng), không qua Handler của UI.
+ * MusicService lo phần hệ thống (session, notification, audio focus) qua Host; engine thật hoặc giả
+ * được tạo qua EngineFactory nên logic này chạy được trong unit test trên JVM.
+ */
+public class PlaybackController {
+
+    public interface EngineFactory { PlaybackEngine create(); }
+
+    /** Lên lịch trên thread của controller (main thread trong service). */
+    public interface Scheduler {
+        void postDelayed(Runnable r, long delayMs);
+        void cancel(Runnable r);
+        long now();
+    }
+
+    /**
+     * Ước lượng gain cho bài không có tag ReplayGain (gain NaN), chạy nền với ưu tiên thấp;
+     * xong thì gọi onGainEstimated trên thread của controller.
+     */
+    public interface GainEstimator { void estimate(String path, long durationMs); }
+
+    public interface Host {
+        boolean requestAudioFocus();
+        boolean isPlayable(String path);
+        /** Bài mới đã sẵn sàng (đang phát hoặc đã prepare ở trạng thái pause). */
+        void onTrackReady();
+        /** Trạng thái phát / vị trí đổi (play, pause, seek, bắt đầu prepare). */
+        void onStateChanged(int positionMs);
+        /** Khoảng lặng giữa lúc bài cũ kết thúc và bài mới bắt đầu. */
+        void onTransition(long gapMs);
+        void onError(String path, String message);
+    }
+
+    static final long SKIP_COALESCE_MS = 150;
+    static final int MAX_CROSSFADE_MS = 12_000;
+    static final long FADE_STEP_MS = 25;
+    static final long GAIN_RAMP_MS = 500;
+
+    private final EngineFactory factory;
+    private final Scheduler scheduler;
+    private final Scheduler fadeScheduler;
+    private final Host host;
+    private final PlaybackQueue queue;
+
+    private final PlaybackEngine[] engines = new PlaybackEngine[2];
+    private int active;
+    private PlaybackEngine current;
+    private boolean gapless = true;
+    private String standbyPath;         // bài mà engine chờ đã prepare xong
+    private String pendingStandbyPath;  // bài engine chờ đang prepare
+    private boolean standbyPreparing;
+    private boolean standbyChained;     // engine chờ đã được nối bằng setNext (tự phát khi bài hiện tại hết)
+    private long completedAt;
+    private volatile float volume = 1f;    // đọc cả từ fade thread
+
+    // Chuẩn hoá âm lượng: gain (dB) của bài đang nằm trên từng engine, NaN khi chưa biết (phát ở volume gốc)
+    private final float[] gainDb = new float[2];
+    private final String[] gainPath = new String[2];
+    private boolean normalize = true;
+    private GainEstimator gainEstimator;
+    private final Map<String, Float> estimatedGain = new HashMap<>();  // NaN: đang ước lượng
+    // Gain tới khi bài đang phát: đổi volume dần trong GAIN_RAMP_MS thay vì nhảy một bậc giữa bài
+    private final Runnable gainRampStep = this::stepGainRamp;
+    private int rampSlot = -1;
+    private float rampFrom;
+    private long rampStartAt;
+
+    // Crossfade: crossfadeCheck hẹn lúc bắt đầu chồng bài, fade là lần crossfade đang chạy
+    private int crossfadeMs;
+    private final Runnable crossfadeCheck = this::maybeStartCrossfade;
+    private Fade fade;
+
+    // Prepare bất đồng bộ: yêu cầu mới thay thế yêu cầu cũ, chỉ bài cuối cùng được prepare
+    private final Runnable startPendingRunnable = this::startPending;
+    private String pendingPath;
+    private int pendingStartMs;         // seek tới vị trí này khi prepare xong
+    private long prepareStartedAt;      // System.nanoTime(), để đo độ trễ prepare
+    private int prepareCookie;          // id của async trace section "prepare"
+    private boolean prepareWarm;        // bài đang prepare đã được prefetcher đọc trước
+    private Song pendingSong;
+    private boolean preparing;
+    private boolean playWhenReady = true;
+
+    // Đọc trước vài bài sắp tới trong hàng đợi (null = không dùng)
+    private Prefetcher prefetcher;
+
+    public PlaybackController(EngineFactory factory, Scheduler scheduler, Host host) {
+        this(factory, scheduler, scheduler, host);
+    }
+
+    public PlaybackController(EngineFactory factory, Scheduler scheduler, Scheduler fadeScheduler, Host host) {
+        this(factory, scheduler, fadeScheduler, host, new PlaybackQueue());
+    }
+
+    PlaybackController(EngineFactory factory, Scheduler scheduler, Scheduler fadeScheduler, Host host,
+                       PlaybackQueue queue) {
+        this.factory = factory;
+        this.scheduler = scheduler;
+        this.fadeScheduler = fadeScheduler;
+        this.host = host;
+        this.queue = queue;
+    }
+
+    public PlaybackQueue getQueue() { return queue; }
+
+    public Song getCurrentSong() { return queue.current(); }
+
+    public int getCurrentIndex() { return queue.currentIndex(); }
+
+    // ========= ENGINES =========
+    private PlaybackEngine obtainEngine(int slot) {
+        PlaybackEngine e = engines[slot];
+        if (e == null) {
+            e = factory.create();
+            e.setListener(engineListener);
+            e.setVolume(volume);
+            engines[slot] = e;
+        } else {
+            e.reset();
+        }
+        return e;
+    }
+
+    private PlaybackEngine standby() { return engines[1 - active]; }
+
+    private final PlaybackEngine.Listener engineListener = new PlaybackEngine.Listener() {
+        @Override
+        public void onPrepared(PlaybackEngine e) {
+            if (e == current && preparing) onCurrentPrepared(e);
+            else if (e == standby() && standbyPreparing) onStandbyPrepared(e);
+        }
+
+        @Override
+        public void onCompletion(PlaybackEngine e) {
+            if (e == current) onCurrentCompleted();
+        }
+
+        @Override
+        public void onStartedAsNext(PlaybackEngine e) {
+            if (completedAt != 0) {
+                host.onTransition(Math.max(0, scheduler.now() - completedAt));
+                completedAt = 0;
+            }
+        }
+
+        @Override
+        public void onError(PlaybackEngine e, String message) {
+            if (e == standby()) {
+                standbyPath = null;
+                standbyPreparing = false;
+                standbyChained = false;
+            } else if (e == current) {
+                if (preparing) Metrics.trace().endAsyncSection("prepare", prepareCookie);
+                preparing = false;
+            }
+            Metrics.PREPARE_ERRORS.inc();
+            host.onError(null, message);
+        }
+    };
+
+    /** Bỏ engine chờ (nếu có) và gỡ liên kết setNext. */
+    private void cancelStandby() {
+        if (standbyPath == null && !standbyPreparing) return;
+        if (current != null && standbyChained) current.setNext(null);
+        PlaybackEngine s = standby();
+        if (s != null) s.reset();
+        standbyPath = null;
+        standbyPreparing = false;
+        standbyChained = false;
+    }
+
+    /** Chuẩn bị bất đồng bộ bài kế tiếp trên engine chờ. */
+    private void prepareNext() {
+        if (!(gapless || crossfadeMs > 0) || current == null || preparing || fade != null || queue.size() < 2) return;
+        Song next = queue.peekNextSong();
+        if (next == null || next.getPath() == null || !host.isPlayable(next.getPath())) return;
+
+        PlaybackEngine s = obtainEngine(1 - active);
+        setGain(1 - active, next);
+        try {
+            standbyPreparing = true;
+            standbyPath = null;
+            standbyChained = false;
+            pendingStandbyPath = next.getPath();
+            s.prepare(next.getPath());
+        } catch (Exception ex) {
+            host.onError(next.getPath(), "Lỗi chuẩn bị bài kế tiếp: " + ex);
+            s.reset();
+            standbyPreparing = false;
+        }
+    }
+
+    private void onStandbyPrepared(PlaybackEngine s) {
+        standbyPreparing = false;
+        standbyPath = pendingStandbyPath;
+        applyVolume(1 - active);
+        // Crossfade cần tự start engine chờ sớm hơn nên không nối bằng setNext
+        if (current != null && crossfadeMs == 0) standbyChained = current.setNext(s);
+        scheduleCrossfade();
+    }
+
+    /** Engine chờ đã sẵn sàng đúng bài kế tiếp trong hàng đợi. */
+    private boolean standbyReadyForNext() {
+        if (standbyPath == null) return false;
+        Song s = queue.peekNextSong();
+        return s != null && standbyPath.equals(s.getPath());
+    }
+
+    /** Đổi vai hai engine: engine chờ thành engine hiện tại. Trả về engine cũ để reset hoặc fade out. */
+    private PlaybackEngine swapToStandby() {
+        PlaybackEngine old = current;
+        active = 1 - active;
+        current = engines[active];
+        queue.next();
+        standbyPath = null;
+        standbyChained = false;
+        return old;
+    }
+
+    private void onCurrentCompleted() {
+        completedAt = scheduler.now();
+        if (standbyReadyForNext()) {
+            boolean chained = standbyChained;
+            PlaybackEngine old = swapToStandby();
+            if (old != null) old.reset();
+            if (!chained) {
+                // Engine không tự nối được: start ngay engine đã prepare sẵn
+                current.start();
+                host.onTransition(Math.max(0, scheduler.now() - completedAt));
+                completedAt = 0;
+            }
+            onTrackStarted();
+        } else {
+            cancelStandby();
+            next();
+        }
+    }
+
+    public void setGapless(boolean enabled) {
+        gapless = enabled;
+        if (!enabled) cancelStandby();
+        else if (isPlaying()) prepareNext();
+    }
+
+    // ========= VOLUME / CROSSFADE =========
+    /** Volume chung (duck khi mất focus tạm thời), nhân với gain chuẩn hoá của từng bài. */
+    public void setVolume(float v) {
+        volume = v;
+        applyVolume(0);
+        applyVolume(1);
+    }
+
+    /** Bật / tắt chuẩn hoá âm lượng theo gain đã tính lúc quét thư viện. */
+    public void setNormalize(boolean enabled) {
+        normalize = enabled;
+        applyVolume(0);
+        applyVolume(1);
+    }
+
+    public void setGainEstimator(GainEstimator e) { gainEstimator = e; }
+
+    /**
+     * Gain của bài nạp lên engine. Quét thư viện không giải mã thử bài nào, nên bài không có tag
+     * được ước lượng lần đầu nó sắp phát; kết quả giữ lại cho các lần phát sau.
+     */
+    private void setGain(int slot, Song s) {
+        float g = s.getGainDb();
+        String path = s.getPath();
+        if (Float.isNaN(g) && path != null) {
+            Float known = estimatedGain.get(path);
+            if (known != null) {
+                g = known;
+            } else if (gainEstimator != null) {
+                estimatedGain.put(path, Float.NaN);
+                gainEstimator.estimate(path, s.getDuration());
+            }
+        }
+        gainDb[slot] = g;
+        gainPath[slot] = path;
+    }
+
+    /** Kết quả của GainEstimator; bài còn nằm trên engine thì đổi volume (dần dần nếu đang phát). */
+    public void onGainEstimated(String path, float db) {
+        if (Float.isNaN(db)) db = 0f;
+        estimatedGain.put(path, db);
+        for (int slot = 0; slot < 2; slot++) {
+            if (!path.equals(gainPath[slot]) || !Float.isNaN(gainDb[slot])) continue;
+            float from = trackVolume(slot);
+            gainDb[slot] = db;
+            startGainRamp(slot, from);
+        }
+    }
+
+    /**
+     * Ramp chạy trên scheduler của controller, cùng thread với mọi lần đặt volume khác nên không cần đồng bộ;
+     * lỡ một bước thì bước sau chỉ nhảy xa hơn một chút. Engine đổi bài hoặc bắt đầu crossfade thì ramp dừng.
+     */
+    private void startGainRamp(int slot, float from) {
+        PlaybackEngine e = engines[slot];
+        if (e == null || e != current || fade != null || !e.isPlaying()) {
+            applyVolume(slot);
+            return;
+        }
+        scheduler.cancel(gainRampStep);
+        rampSlot = slot;
+        rampFrom = from;
+        rampStartAt = scheduler.now();
+        stepGainRamp();
+    }
+
+    private void stepGainRamp() {
+        int slot = rampSlot;
+        PlaybackEngine e = slot >= 0 ? engines[slot] : null;
+        if (e == null || e != current || fade != null) {
+            rampSlot = -1;
+            return;
+        }
+        double t = Math.min(1.0, (scheduler.now() - rampStartAt) / (double) GAIN_RAMP_MS);
+        float to = trackVolume(slot);
+        e.setVolume(volume * (rampFrom + (float) ((to - rampFrom) * t)));
+        if (t < 1.0) scheduler.postDelayed(gainRampStep, FADE_STEP_MS);
+        else rampSlot = -1;
+    }
+
+    private float trackVolume(int slot) { return normalize ? Loudness.toVolume(gainDb[slot]) : 1f; }
+
+    /** Trong lúc crossfade, volume hai engine do fade thread đặt nên bỏ qua. */
+    private void applyVolume(int slot) {
+        PlaybackEngine e = engines[slot];
+        if (e != null && fade == null) e.setVolume(volume * trackVolume(slot));
+    }
+
+    /** Độ dài crossfade (0 = chuyển bài liền mạch như gapless, tối đa MAX_CROSSFADE_MS). */
+    public void setCrossfade(int ms) {
+        crossfadeMs = Math.max(0, Math.min(MAX_CROSSFADE_MS, ms));
+        if (current == null) return;
+        if (crossfadeMs > 0 && standbyChained) {
+            current.setNext(null);
+            standbyChained = false;
+        } else if (crossfadeMs == 0 && standbyPath != null && !standbyChained) {
+            standbyChained = current.setNext(standby());
+        }
+        if (isPlaying() && standbyPath == null && !standbyPreparing) prepareNext();
+        scheduleCrossfade();
+    }
+
+    public int getCrossfade() { return crossfadeMs; }
+
+    /** Hẹn lúc bắt đầu crossfade: khi bài hiện tại còn đúng crossfadeMs. */
+    private void scheduleCrossfade() {
+        scheduler.cancel(crossfadeCheck);
+        if (crossfadeMs == 0 || fade != null || standbyPath == null || !isReady() || !current.isPlaying()) return;
+        int remaining = current.getDuration() - current.getPosition();
+        scheduler.postDelayed(crossfadeCheck, Math.max(0, remaining - crossfadeMs));
+    }
+
+    private void maybeStartCrossfade() {
+        if (fade != null || !standbyReadyForNext() || !isReady() || !current.isPlaying()) return;
+        int remaining = current.getDuration() - current.getPosition();
+        if (remaining > crossfadeMs + FADE_STEP_MS) {
+            // Vị trí thực tế trôi chậm hơn đồng hồ (buffer, seek): hẹn lại
+            scheduleCrossfade();
+            return;
+        }
+        PlaybackEngine in = standby();
+        float outVolume = trackVolume(active);
+        PlaybackEngine out = swapToStandby();
+        in.setVolume(0f);
+        in.start();
+        fade = new Fade(out, in, outVolume, trackVolume(active), Math.max(FADE_STEP_MS, remaining));
+        fadeScheduler.postDelayed(fade, 0);
+        host.onTransition(0);
+        host.onTrackReady();
+    }
+
+    /** Fade xong: engine cũ được reset và dùng để chuẩn bị bài kế tiếp. */
+    private void finishCrossfade(Fade f) {
+        if (fade != f) return;
+        fade = null;
+        f.out.reset();
+        prepareNext();
+    }
+
+    /** Dừng crossfade đang chạy (skip, pause, seek): tắt hẳn bài cũ, bài mới về đủ âm lượng. */
+    private void cancelFade() {
+        Fade f = fade;
+        if (f == null) return;
+        fade = null;
+        f.cancelled = true;
+        fadeScheduler.cancel(f);
+        f.out.reset();
+        float v = volume * f.inVolume;
+        // Đặt volume qua fade thread để một bước ramp đang chạy dở không ghi đè lên
+        fadeScheduler.postDelayed(() -> f.in.setVolume(v), 0);
+    }
+
+    /** Một lần crossfade, chạy từng bước trên fadeScheduler; chỉ gọi setVolume của hai engine. */
+    private final class Fade implements Runnable {
+        final PlaybackEngine out, in;
+        final float outVolume, inVolume;
+        final long lengthMs;
+        final long startAt = fadeScheduler.now();
+        final Runnable finish = () -> finishCrossfade(this);
+        volatile boolean cancelled;
+
+        Fade(PlaybackEngine out, PlaybackEngine in, float outVolume, float inVolume, long lengthMs) {
+            this.out = out;
+            this.in = in;
+            this.outVolume = outVolume;
+            this.inVolume = inVolume;
+            this.lengthMs = lengthMs;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            double t = Math.min(1.0, (fadeScheduler.now() - startAt) / (double) lengthMs);
+            float v = volume;
+            // Equal-power: cos² + sin² = 1 nên tổng công suất không bị hụt ở giữa đoạn chồng
+            out.setVolume(v * outVolume * (float) Math.cos(t * Math.PI / 2));
+            in.setVolume(v * inVolume * (float) Math.sin(t * Math.PI / 2));
+            if (t < 1.0) fadeScheduler.postDelayed(this, FADE_STEP_MS);
+            else scheduler.postDelayed(finish, 0);
+        }
+    }
+
+    private void onTrackStarted() {
+        host.onTrackReady();
+        prepareNext();
+        prefetchUpcoming();
+    }
+
+    // ========= PREFETCH =========
+    public void setPrefetcher(Prefetcher p) { prefetcher = p; }
+
+    /**
+     * Đọc trước Prefetcher.AHEAD bài tiếp theo trong hàng đợi. Bài kế tiếp đang được engine chờ prepare
+     * thì bỏ qua, tránh đọc cùng một file hai lần. Gọi khi bài hiện tại đã chạy để không tranh I/O với nó.
+     */
+    private void prefetchUpcoming() {
+        if (prefetcher == null || isLoading()) return;
+        int first = standbyPreparing || standbyPath != null ? 2 : 1;
+        int last = Math.min(Prefetcher.AHEAD, queue.size() - 1);
+        if (first > last) return;
+        List<String> paths = new ArrayList<>(last - first + 1);
+        for (int k = first; k <= last; k++) {
+            int i = queue.peekAhead(k);
+            if (i >= 0) paths.add(queue.getLibrary().get(i).getPath());
+        }
+        prefetcher.prefetch(paths);
+    }
+
+    // ========= PREPARE =========
+    /**
+     * Yêu cầu phát path. Không chặn thread gọi: engine prepare bất đồng bộ, và khi người dùng bấm Next
+     * liên tục thì các yêu cầu bị thay thế được gộp lại, chỉ bài cuối cùng được prepare.
+     */
+    private void prepareAndStart(Song s) { prepare(s, host.requestAudioFocus(), 0); }
+
+    /** Prepare bài hiện tại của hàng đợi, phát ngay hoặc dừng ở startMs (khôi phục sau khi bị kill). */
+    public void prepareCurrent(boolean play, int startMs) {
+        Song s = getCurrentSong();
+        if (s != null) prepare(s, play, startMs);
+    }
+
+    private void prepare(Song s, boolean play, int startMs) {
+        cancelFade();
+        cancelStandby();
+        scheduler.cancel(crossfadeCheck);
+        boolean busy = isLoading();
+        pendingPath = s.getPath();
+        pendingSong = s;
+        pendingStartMs = startMs;
+        playWhenReady = play;
+        scheduler.cancel(startPendingRunnable);
+        // Nhường I/O cho bài người dùng vừa chọn; đọc trước lại sau khi bài này phát
+        if (prefetcher != null) prefetcher.cancel();
+
+        if (busy) {
+            // Đang prepare (hoặc đang đợi prepare) bài cũ: huỷ ngay để trả lại decoder,
+            // rồi đợi thêm một chút xem còn lệnh skip nào nữa không
+            if (preparing) Metrics.trace().endAsyncSection("prepare", prepareCookie);
+            preparing = false;
+            if (current != null) current.reset();
+            current = null;
+            scheduler.postDelayed(startPendingRunnable, SKIP_COALESCE_MS);
+        } else {
+            scheduler.postDelayed(startPendingRunnable, 0);
+        }
+        // Báo UI / session đổi bài ngay, chưa cần đợi prepare xong
+        host.onStateChanged(pendingStartMs);
+    }
+
+    private void startPending() {
+        String path = pendingPath;
+        pendingPath = null;
+        if (path == null) return;
+        if (!host.isPlayable(path)) {
+            host.onError(path, "File không tồn tại: " + path);
+            host.onStateChanged(0);
+            return;
+        }
+
+        cancelStandby();
+        PlaybackEngine e = obtainEngine(active);
+        current = e;
+        setGain(active, pendingSong);
+        try {
+            preparing = true;
+            prepareStartedAt = System.nanoTime();
+            prepareWarm = prefetcher != null && prefetcher.isWarm(path);
+            Metrics.trace().beginAsyncSection("prepare", ++prepareCookie);
+            e.prepare(path);
+        } catch (Exception ex) {
+            Metrics.trace().endAsyncSection("prepare", prepareCookie);
+            Metrics.PREPARE_ERRORS.inc();
+            host.onError(path, "Lỗi phát nhạc: " + ex);
+            preparing = false;
+            e.reset();
+            current = null;
+        }
+    }
+
+    private void onCurrentPrepared(PlaybackEngine e) {
+        preparing = false;
+        long prepareNanos = System.nanoTime() - prepareStartedAt;
+        Metrics.PREPARE.recordNanos(prepareNanos);
+        (prepareWarm ? Metrics.PREPARE_PREFETCHED : Metrics.PREPARE_COLD).recordNanos(prepareNanos);
+        Metrics.trace().endAsyncSection("prepare", prepareCookie);
+        applyVolume(active);
+        if (pendingStartMs > 0) e.seekTo(pendingStartMs);
+        pendingStartMs = 0;
+        if (!playWhenReady) {
+            host.onTrackReady();
+            return;
+        }
+        e.start();
+        if (completedAt != 0) {
+            host.onTransition(Math.max(0, scheduler.now() - completedAt));
+            completedAt = 0;
+        }
+        onTrackStarted();
+    }
+
+    // ========= QUEUE =========
+    /**
+     * Gắn snapshot thư viện (list không đổi, dùng chung với adapter). Gọi lại với cùng snapshot là O(1);
+     * snapshot mới chỉ tốn O(n) int để dựng lại hàng đợi, không copy Song.
+     */
+    public void setPlaylist(List<Song> snapshot) {
+        if (snapshot == queue.getLibrary()) return;
+        queue.setLibrary(snapshot);
+        onQueueChanged();
+    }
+
+    /** Thứ tự hàng đợi vừa đổi (snapshot mới, shuffle, khôi phục): chuẩn bị lại bài chờ nếu cần. */
+    public void onQueueChanged() {
+        if (!standbyReadyForNext()) {
+            cancelStandby();
+            if (isPlaying()) prepareNext();
+        }
+        if (isPlaying()) prefetchUpcoming();
+    }
+
+    public void playAt(int index) {
+        if (queue.isEmpty()) return;
+        if (index < 0) index = 0;
+        if (index >= queue.size()) index = queue.size() - 1;
+        queue.moveTo(index);
+        playCurrent();
+    }
+
+    private void playCurrent() {
+        Song s = getCurrentSong();
+        if (s != null) prepareAndStart(s);
+    }
+
+    public void play() {
+        if (!host.requestAudioFocus()) return;
+        if (isLoading()) {
+            playWhenReady = true;
+            host.onStateChanged(pendingStartMs);
+            return;
+        }
+        if (current == null) {
+            playCurrent();
+            return;
+        }
+        if (!current.isPlaying()) {
+            current.start();
+            host.onStateChanged(current.getPosition());
+            if (standbyPath == null && !standbyPreparing) prepareNext();
+            scheduleCrossfade();
+        }
+    }
+
+    public void pause() {
+        if (isLoading()) {
+            playWhenReady = false;
+            host.onStateChanged(pendingStartMs);
+            return;
+        }
+        cancelFade();
+        scheduler.cancel(crossfadeCheck);
+        if (current != null && current.isPlaying()) {
+            current.pause();
+            host.onStateChanged(current.getPosition());
+        }
+    }
+
+    public void next() {
+        if (queue.isEmpty()) return;
+        cancelFade();
+        if (standbyReadyForNext()) {
+            // Bài kế tiếp đã prepare sẵn: chỉ cần đổi engine, không phải prepare lại
+            if (standbyChained) current.setNext(null);
+            PlaybackEngine old = swapToStandby();
+            if (old != null) old.reset();
+            if (host.requestAudioFocus()) current.start();
+            onTrackStarted();
+            return;
+        }
+        queue.next();
+        playCurrent();
+    }
+
+    public void previous() {
+        if (queue.isEmpty()) return;
+        queue.previous();
+        playCurrent();
+    }
+
+    /** Bật / tắt shuffle: bài đang phát không bị ngắt, chỉ bài chờ (gapless) được chuẩn bị lại. */
+    public void setShuffle(boolean enabled) {
+        queue.setShuffle(enabled);
+        onQueueChanged();
+    }
+
+    public boolean isShuffle() { return queue.isShuffle(); }
+
+    // ========= STATE =========
+    /** Đang đợi prepare (chưa có gì để phát). */
+    public boolean isLoading() { return preparing || pendingPath != null; }
+
+    public boolean isPlayWhenReady() { return playWhenReady; }
+
+    private boolean isReady() { return current != null && !preparing; }
+
+    /** Vị trí hiện tại; khi đang prepare thì là vị trí sẽ seek tới. */
+    public int getPosition() {
+        if (isLoading()) return pendingStartMs;
+        return isReady() ? current.getPosition() : 0;
+    }
+
+    public int getDuration() { return isReady() ? current.getDuration() : 0; }
+
+    // Đang chờ prepare mà người dùng muốn phát thì vẫn coi là "đang phát" để UI không nhấp nháy
+    public boolean isPlaying() {
+        if (isLoading()) return playWhenReady;
+        return current != null && current.isPlaying();
+    }
+
+    public void seekTo(int pos) {
+        if (!isReady()) return;
+        cancelFade();
+        current.seekTo(pos);
+        host.onStateChanged(pos);
+        if (isPlaying() && standbyPath == null && !standbyPreparing) prepareNext();
+        scheduleCrossfade();
+    }
+
+    public void release() {
+        cancelFade();
+        scheduler.cancel(startPendingRunnable);
+        scheduler.cancel(crossfadeCheck);
+        scheduler.cancel(gainRampStep);
+        rampSlot = -1;
+        for (int i = 0; i < engines.length; i++) {
+            if (engines[i] != null) {
+                engines[i].release();
+                engines[i] = null;
+            }
+        }
+        current = null;
+        if (preparing) Metrics.trace().endAsyncSection("prepare", prepareCookie);
+        preparing = false;
+        pendingPath = null;
+        pendingSong = null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.music_app;
+
+import java.io.IOException;
+
+/**
+ * Một bộ phát đơn lẻ phía sau MusicService. Mọi hàm gọi trên main thread và mọi callback của
+ * Listener cũng về main thread, riêng setVolume gọi được từ thread bất kỳ (ramp crossfade chạy trên
+ * thread riêng). reset() huỷ luôn callback của lần prepare trước đó.
+ */
+public interface PlaybackEngine {
+
+    interface Listener {
+        void onPrepared(PlaybackEngine engine);
+        void onCompletion(PlaybackEngine engine);
+        /** Engine đã tự bắt đầu phát vì được nối sau engine khác bằng setNext(). */
+        void onStartedAsNext(PlaybackEngine engine);
+        void onError(PlaybackEngine engine, String message);
+    }
+
+    void setListener(Listener listener);
+
+    /** Chuẩn bị bất đồng bộ, xong thì gọi onPrepared. */
+    void prepare(String path) throws IOException;
+
+    void start();
+    void pause();
+    void seekTo(int ms);
+    int getPosition();
+    int getDuration();
+    boolean isPlaying();
+    void setVolume(float volume);
+
+    /**
+     * Nối engine kế tiếp để phát liền mạch khi bài hiện tại hết (null để gỡ).
+     * Trả về false nếu engine không hỗ trợ; khi đó controller tự start engine kế tiếp lúc hoàn thành.
+     */
+    boolean setNext(PlaybackEngine next);
+
+    void reset();
+    void release();
+}
@@ -0,0 +1,261 @@
+package com.example.music_app;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Hàng đợi phát nhạc: một hoán vị int[] trên snapshot thư viện dùng chung (không copy Song).
+ * Chế độ shuffle sinh thứ tự dần dần (Fisher–Yates từng bước), các vị trí đã qua chính là lịch sử
+ * nên previous() vẫn quay lại đúng bài vừa nghe.
+ * Đổi snapshot thì thứ tự cũ được ánh xạ sang snapshot mới theo id (SongStore tra id O(1)): bài hiện tại,
+ * lịch sử shuffle và phần đã xáo được giữ, bài mới thêm vào phần chưa xáo.
+ */
+public class PlaybackQueue {
+
+    private List<Song> library = Collections.emptyList();
+    private int[] order = new int[0];   // order[vị trí phát] = index trong library
+    private int[] slot = new int[0];    // nghịch đảo của order: slot[index trong library] = vị trí phát
+    private int position = -1;
+
+    private final Random random;
+    private boolean shuffle;
+    private int generated;              // order[0..generated) đã được xáo (chỉ dùng khi shuffle)
+
+    public PlaybackQueue() { this(new Random()); }
+
+    PlaybackQueue(Random random) { this.random = random; }
+
+    /**
+     * Gắn snapshot thư viện mới. Snapshot phải là list không đổi (ví dụ SongStore);
+     * gọi lại với cùng snapshot thì không tốn gì. Bài đang phát được giữ nguyên nếu vẫn còn trong snapshot;
+     * khi shuffle, lịch sử và các bài đã xáo giữ nguyên thứ tự, bài bị xoá thì bỏ ra.
+     */
+    public void setLibrary(List<Song> snapshot) {
+        if (snapshot == library) return;
+        List<Song> old = library;
+        int[] oldOrder = order;
+        int oldGenerated = generated;
+        int oldPosition = position;
+        int cur = currentIndex();
+
+        library = snapshot;
+        int n = snapshot.size();
+        order = new int[n];
+        slot = new int[n];
+        if (!shuffle) {
+            int row = cur >= 0 ? indexOfId(idAt(old, cur)) : -1;
+            if (cur >= 0 && row < 0 && n > 0) {
+                // Bài đang phát bị xoá: đứng ở bài còn lại liền trước nó (vòng về cuối), next() phát bài liền sau như cũ
+                int[] rowOf = remap(old, snapshot);
+                for (int i = 1; row < 0 && i < rowOf.length; i++) row = rowOf[(cur - i + rowOf.length) % rowOf.length];
+            }
+            resetOrder(row);
+            return;
+        }
+
+        int[] rowOf = remap(old, snapshot);
+        BitSet placed = new BitSet(n);
+        int k = 0;
+        position = -1;
+        generated = 0;
+        for (int p = 0; p < oldOrder.length; p++) {
+            if (p == oldGenerated) generated = k;
+            int row = rowOf[oldOrder[p]];
+            if (row >= 0 && !placed.get(row)) {
+                placed.set(row);
+                order[k++] = row;
+            }
+            // Bài hiện tại bị xoá: đứng ở bài liền trước trong lịch sử, next() đi tiếp như cũ
+            if (p == oldPosition) position = k - 1;
+        }
+        if (oldGenerated >= oldOrder.length) generated = k;
+        // Bài mới của snapshot nằm trong phần chưa xáo, sẽ được bốc ngẫu nhiên như các bài còn lại
+        for (int row = placed.nextClearBit(0); row < n; row = placed.nextClearBit(row + 1)) order[k++] = row;
+        for (int p = 0; p < n; p++) slot[order[p]] = p;
+    }
+
+    /** rowOf[index trong from] = index của cùng id trong to, -1 nếu không còn. */
+    private static int[] remap(List<Song> from, List<Song> to) {
+        int[] rowOf = new int[from.size()];
+        if (to instanceof SongStore) {
+            SongStore store = (SongStore) to;
+            for (int i = 0; i < rowOf.length; i++) rowOf[i] = store.indexOfId(idAt(from, i));
+            return rowOf;
+        }
+        Map<Long, Integer> rows = new HashMap<>(to.size() * 2);
+        for (int j = to.size() - 1; j >= 0; j--) rows.put(to.get(j).getId(), j);  // id trùng: giữ row đầu
+        for (int i = 0; i < rowOf.length; i++) {
+            Integer j = rows.get(idAt(from, i));
+            rowOf[i] = j != null ? j : -1;
+        }
+        return rowOf;
+    }
+
+    private static long idAt(List<Song> songs, int i) {
+        return songs instanceof SongStore ? ((SongStore) songs).id(i) : songs.get(i).getId();
+    }
+
+    /** Dựng lại thứ tự quanh bài có index cur: tuần tự, hoặc shuffle với cur ở đầu lịch sử. */
+    private void resetOrder(int cur) {
+        int n = order.length;
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            slot[i] = i;
+        }
+        if (!shuffle) {
+            position = cur;
+            return;
+        }
+        generated = 0;
+        position = -1;
+        if (cur >= 0) {
+            swap(0, cur);
+            generated = 1;
+            position = 0;
+        }
+    }
+
+    /**
+     * Bật / tắt shuffle mà không đổi bài đang phát. Chỉ tốn O(n) int, các vị trí sau
+     * bài hiện tại được xáo dần khi cần.
+     */
+    public void setShuffle(boolean enabled) {
+        if (enabled == shuffle) return;
+        int cur = currentIndex();
+        shuffle = enabled;
+        resetOrder(cur);
+    }
+
+    public boolean isShuffle() { return shuffle; }
+
+    /** Fisher–Yates từng bước: chỉ xáo tới vị trí pos. */
+    private void ensureGenerated(int pos) {
+        if (!shuffle) return;
+        int n = order.length;
+        while (generated <= pos && generated < n) {
+            swap(generated, generated + random.nextInt(n - generated));
+            generated++;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+        slot[order[i]] = i;
+        slot[order[j]] = j;
+    }
+
+    public List<Song> getLibrary() { return library; }
+
+    /** Vị trí trong thứ tự phát (không phải index trong library), -1 nếu chưa phát. */
+    int position() { return position; }
+
+    int generated() { return generated; }
+
+    /** Bản sao thứ tự phát để lưu lại; null khi phát tuần tự vì thứ tự đó suy ra được. */
+    int[] copyShuffledOrder() { return shuffle ? Arrays.copyOf(order, order.length) : null; }
+
+    /**
+     * Khôi phục thứ tự đã lưu trên đúng snapshot library đã dùng lúc lưu.
+     * Dữ liệu không khớp kích thước hoặc không phải hoán vị thì bỏ qua và trả về false.
+     */
+    public boolean restore(boolean savedShuffle, int[] savedOrder, int savedPosition, int savedGenerated) {
+        int n = order.length;
+        if (savedPosition < -1 || savedPosition >= n) return false;
+        if (!savedShuffle) {
+            shuffle = false;
+            resetOrder(savedPosition);
+            return true;
+        }
+        if (savedOrder == null || savedOrder.length != n || savedGenerated < 0 || savedGenerated > n) return false;
+        BitSet seen = new BitSet(n);
+        for (int i : savedOrder) {
+            if (i < 0 || i >= n || seen.get(i)) return false;
+            seen.set(i);
+        }
+        shuffle = true;
+        System.arraycopy(savedOrder, 0, order, 0, n);
+        for (int p = 0; p < n; p++) slot[order[p]] = p;
+        position = savedPosition;
+        generated = Math.max(savedGenerated, savedPosition + 1);
+        return true;
+    }
+
+    public int size() { return order.length; }
+
+    public boolean isEmpty() { return order.length == 0; }
+
+    /** Index trong library của bài đang phát, -1 nếu chưa có. */
+    public int currentIndex() { return position >= 0 && position < order.length ? order[position] : -1; }
+
+    public Song current() {
+        int i = currentIndex();
+        return i >= 0 ? library.get(i) : null;
+    }
+
+    public int indexOfId(long id) {
+        if (library instanceof SongStore) return ((SongStore) library).indexOfId(id);
+        for (int i = 0; i < library.size(); i++) {
+            Song s = library.get(i);
+            if (s != null && s.getId() == id) return i;
+        }
+        return -1;
+    }
+
+    /** Chuyển tới bài có index trong library. */
+    public Song moveTo(int libraryIndex) {
+        if (libraryIndex < 0 || libraryIndex >= order.length) return null;
+        if (!shuffle) {
+            position = libraryIndex;
+            return current();
+        }
+
+        int p = slot[libraryIndex];
+        if (p < generated) {
+            // Bài đã có trong lịch sử
+            position = p;
+        } else {
+            // Bài chưa tới lượt: đưa lên làm vị trí kế tiếp của phần đã xáo
+            swap(generated, p);
+            position = generated++;
+        }
+        return current();
+    }
+
+    /** Bài kế tiếp (vòng lại đầu danh sách), không di chuyển. -1 nếu hàng đợi rỗng. */
+    public int peekNext() { return peekAhead(1); }
+
+    /** Bài thứ k sau bài hiện tại theo thứ tự phát (vòng lại đầu), không di chuyển. -1 nếu hàng đợi rỗng. */
+    public int peekAhead(int k) {
+        if (order.length == 0) return -1;
+        int pos = (int) ((position + (long) k) % order.length);
+        ensureGenerated(pos);
+        return order[pos];
+    }
+
+    public Song peekNextSong() {
+        int i = peekNext();
+        return i >= 0 ? library.get(i) : null;
+    }
+
+    public int next() {
+        if (order.length == 0) return -1;
+        position = (position + 1) % order.length;
+        ensureGenerated(position);
+        return currentIndex();
+    }
+
+    /** Bài trước (vòng về cuối danh sách); chưa phát bài nào thì lấy bài cuối. */
+    public int previous() {
+        if (order.length == 0) return -1;
+        position = position < 0 ? order.length - 1 : (position - 1 + order.length) % order.length;
+        ensureGenerated(position);
+        return currentIndex();
+    }
+}
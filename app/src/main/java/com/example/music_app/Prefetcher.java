@@ -0,0 +1,214 @@
+package com.example.music_app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Đọc trước các bài sắp phát để chúng nằm sẵn trong page cache: prepare() của bài đó (MediaPlayer
+ * đọc phần đầu file và bảng index) không phải chờ thẻ nhớ / USB chậm đọc nguội.
+ * Mỗi file chỉ đọc phần đầu và vùng index (box moov của MP4, hoặc đuôi file với các định dạng khác)
+ * bằng FileChannel tuần tự theo từng chunk. Tổng số byte đọc bị giới hạn theo cửa sổ thời gian, và
+ * tạm dừng khi Conditions báo cần nhường (tiết kiệm pin, người dùng đang cuộn danh sách).
+ * Yêu cầu mới thay thế yêu cầu cũ: lượt đọc đang chạy dừng ở chunk kế tiếp.
+ */
+public class Prefetcher {
+
+    /** Gọi trên thread prefetch trước mỗi chunk. */
+    public interface Conditions { boolean shouldBackOff(); }
+
+    interface Clock {
+        long now();
+        void sleep(long ms) throws InterruptedException;
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override public long now() { return System.nanoTime() / 1_000_000; }
+        @Override public void sleep(long ms) throws InterruptedException { Thread.sleep(ms); }
+    };
+
+    public static final int AHEAD = 3;
+    static final int HEAD_BYTES = 1 << 20;          // phần đầu prepare() đọc: tag, header, các frame đầu
+    static final int TAIL_BYTES = 128 * 1024;       // ID3v1 / APE / LIST, seek table ở cuối file
+    static final int MAX_INDEX_BYTES = 8 << 20;     // moov của bài rất dài cũng không đọc quá ngần này
+    static final int CHUNK_BYTES = 64 * 1024;
+    static final long BUDGET_BYTES = 16 << 20;
+    static final long BUDGET_WINDOW_MS = 60_000;
+    static final long BACKOFF_POLL_MS = 1000;
+    static final long WARM_TTL_MS = 10 * 60_000;    // sau ngần này coi như page cache đã bị đẩy ra
+    private static final int REMEMBERED = 64;
+
+    private final Executor executor;
+    private final Clock clock;
+    private final Conditions conditions;
+    private final long budgetBytes;
+
+    // Chỉ dùng trên thread prefetch
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+    private final ByteBuffer header = ByteBuffer.allocate(16);
+    private long windowStart = Long.MIN_VALUE;
+    private long windowBytes;
+
+    // path -> lúc đọc xong; LRU theo thứ tự truy cập
+    private final Map<String, Long> warm = new LinkedHashMap<String, Long>(REMEMBERED, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) { return size() > REMEMBERED; }
+    };
+    private volatile int generation;
+    private volatile boolean enabled = true;
+
+    public Prefetcher(Executor executor, Conditions conditions) {
+        this(executor, SYSTEM_CLOCK, conditions, BUDGET_BYTES);
+    }
+
+    Prefetcher(Executor executor, Clock clock, Conditions conditions, long budgetBytes) {
+        this.executor = executor;
+        this.clock = clock;
+        this.conditions = conditions;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /** Tắt để so độ trễ prepare khi không đọc trước (dumpsys ... prefetch off). */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) cancel();
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    /** Đọc trước các path theo thứ tự; huỷ lượt đang chạy. Gọi từ main thread. */
+    public void prefetch(List<String> paths) {
+        if (!enabled) return;
+        int gen = ++generation;
+        List<String> todo = new ArrayList<>(paths);
+        executor.execute(() -> run(gen, todo));
+    }
+
+    /** Dừng lượt đang chạy, ví dụ để nhường I/O cho prepare() của bài người dùng vừa chọn. */
+    public void cancel() { generation++; }
+
+    /** Bài đã được đọc trước gần đây (dùng để tách độ trễ prepare có / không prefetch). */
+    public boolean isWarm(String path) {
+        synchronized (warm) {
+            Long at = warm.get(path);
+            return at != null && clock.now() - at < WARM_TTL_MS;
+        }
+    }
+
+    // ========= THREAD PREFETCH =========
+    private void run(int gen, List<String> paths) {
+        for (String path : paths) {
+            if (gen != generation) return;
+            if (path == null || isWarm(path)) continue;
+            long read = warmFile(path, gen);
+            if (read < 0) continue;
+            synchronized (warm) {
+                warm.put(path, clock.now());
+            }
+            Metrics.PREFETCH_FILES.inc();
+        }
+    }
+
+    /** Số byte đã đọc, -1 nếu bị huỷ / lỗi giữa chừng. */
+    long warmFile(String path, int gen) {
+        Metrics.trace().beginSection("prefetch");
+        try (FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = ch.size();
+            long headEnd = Math.min(size, HEAD_BYTES);
+            long[] index = indexRegion(ch, size);
+            long read = readRange(ch, 0, headEnd, gen);
+            if (read < 0) return -1;
+            long from = Math.max(index[0], headEnd);
+            if (from < index[1]) {
+                long more = readRange(ch, from, index[1], gen);
+                if (more < 0) return -1;
+                read += more;
+            }
+            return read;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        } finally {
+            Metrics.trace().endSection();
+        }
+    }
+
+    private long readRange(FileChannel ch, long from, long to, int gen) throws IOException {
+        long pos = from;
+        while (pos < to) {
+            if (!awaitTurn(gen)) return -1;
+            buffer.clear();
+            buffer.limit((int) Math.min(CHUNK_BYTES, to - pos));
+            int n = ch.read(buffer, pos);
+            if (n <= 0) break;
+            pos += n;
+            windowBytes += n;
+            Metrics.PREFETCH_BYTES.add(n);
+        }
+        return pos - from;
+    }
+
+    /** Chờ tới khi được đọc chunk kế tiếp; false nếu yêu cầu đã bị thay thế. */
+    private boolean awaitTurn(int gen) {
+        boolean backedOff = false;
+        try {
+            while (true) {
+                if (gen != generation) return false;
+                if (conditions.shouldBackOff()) {
+                    if (!backedOff) Metrics.PREFETCH_BACKOFFS.inc();
+                    backedOff = true;
+                    clock.sleep(BACKOFF_POLL_MS);
+                    continue;
+                }
+                long now = clock.now();
+                if (windowStart == Long.MIN_VALUE || now - windowStart >= BUDGET_WINDOW_MS) {
+                    windowStart = now;
+                    windowBytes = 0;
+                }
+                if (windowBytes < budgetBytes) return true;
+                clock.sleep(windowStart + BUDGET_WINDOW_MS - now);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Vùng index [from, to) mà prepare() cần ngoài phần đầu file: box moov với MP4 (nằm sau mdat khi
+     * file không "faststart"), đuôi file với các định dạng khác.
+     */
+    long[] indexRegion(FileChannel ch, long size) throws IOException {
+        long tail = Math.max(0, size - TAIL_BYTES);
+        if (!"ftyp".equals(boxType(ch, 0))) return new long[] {tail, size};
+        long pos = 0;
+        for (int boxes = 0; boxes < 64 && pos + 8 <= size; boxes++) {
+            String type = boxType(ch, pos);
+            long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+            if (boxSize == 1) boxSize = header.getLong(8);          // largesize 64-bit
+            else if (boxSize == 0) boxSize = size - pos;             // box kéo tới hết file
+            if (type == null || boxSize < 8) break;
+            if ("moov".equals(type)) return new long[] {pos, Math.min(size, pos + Math.min(boxSize, MAX_INDEX_BYTES))};
+            pos += boxSize;
+        }
+        return new long[] {tail, size};
+    }
+
+    /** Đọc header 16 byte của box tại pos vào header; trả về type, null nếu không đủ byte. */
+    private String boxType(FileChannel ch, long pos) throws IOException {
+        header.clear();
+        while (header.hasRemaining()) {
+            if (ch.read(header, pos + header.position()) <= 0) break;
+        }
+        if (header.position() < 8) return null;
+        char[] t = new char[4];
+        for (int i = 0; i < 4; i++) t[i] = (char) (header.get(4 + i) & 0xFF);
+        return new String(t);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.music_app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Lưu trạng thái hàng đợi (thứ tự int[], vị trí, shuffle, bài đang phát và thời điểm đang nghe)
+ * để service bị hệ thống kill vẫn khôi phục được ngay, không phải đợi quét lại thư viện.
+ * Ghi ra file tạm rồi rename như MetadataCache; việc gom các lần ghi do MusicService lo.
+ */
+public class QueueStateStore {
+
+    private static final int MAGIC = 0x51535445; // "QSTE"
+    private static final int VERSION = 3;
+
+    /** Ảnh chụp trạng thái hàng đợi tại một thời điểm. */
+    public static final class State {
+        final long libraryVersion;  // SongStore.versionOf của snapshot mà order tham chiếu tới
+        final boolean shuffle;
+        final int[] order;          // chỉ có khi shuffle, null nếu phát tuần tự
+        final int position;
+        final int generated;
+        final Song current;
+        final int positionMs;
+
+        State(long libraryVersion, boolean shuffle, int[] order, int position, int generated,
+              Song current, int positionMs) {
+            this.libraryVersion = libraryVersion;
+            this.shuffle = shuffle;
+            this.order = order;
+            this.position = position;
+            this.generated = generated;
+            this.current = current;
+            this.positionMs = positionMs;
+        }
+    }
+
+    private final File file;
+
+    public QueueStateStore(File file) { this.file = file; }
+
+    /** Đọc trạng thái đã lưu; chưa có hoặc file hỏng thì trả về null. */
+    public synchronized State load() {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            long libraryVersion = in.readLong();
+            boolean shuffle = in.readBoolean();
+            int position = in.readInt();
+            int generated = in.readInt();
+            int n = in.readInt();
+            int[] order = null;
+            if (n >= 0) {
+                order = new int[n];
+                for (int i = 0; i < n; i++) order[i] = in.readInt();
+            }
+            Song current = new Song(in.readLong(), in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(),
+                    in.readUTF(), in.readFloat());
+            int positionMs = in.readInt();
+            return new State(libraryVersion, shuffle, order, position, generated, current, positionMs);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public synchronized void save(State st) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(st.libraryVersion);
+            out.writeBoolean(st.shuffle);
+            out.writeInt(st.position);
+            out.writeInt(st.generated);
+            if (st.order == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(st.order.length);
+                for (int i : st.order) out.writeInt(i);
+            }
+            Song s = st.current;
+            out.writeLong(s.getId());
+            out.writeUTF(nonNull(s.getTitle()));
+            out.writeUTF(nonNull(s.getArtist()));
+            out.writeUTF(nonNull(s.getAlbum()));
+            out.writeLong(s.getDuration());
+            out.writeUTF(nonNull(s.getPath()));
+            out.writeFloat(s.getGainDb());
+            out.writeInt(st.positionMs);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Không ghi được " + file);
+        }
+    }
+
+    private static String nonNull(String s) { return s != null ? s : ""; }
+}
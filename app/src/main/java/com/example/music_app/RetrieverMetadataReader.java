@@ -0,0 +1,48 @@
+package com.example.music_app;
+
+import android.media.MediaMetadataRetriever;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * MetadataReader dùng MediaMetadataRetriever; retriever chỉ được tạo khi thật sự cần đọc.
+ * Gain chuẩn hoá âm lượng lấy từ tag ReplayGain, không có tag thì NaN (ước lượng lúc phát).
+ */
+public class RetrieverMetadataReader implements MetadataReader {
+
+    private MediaMetadataRetriever mmr;
+
+    @Override
+    public Song read(File f, long id) throws IOException {
+        if (mmr == null) mmr = new MediaMetadataRetriever();
+        try {
+            mmr.setDataSource(f.getAbsolutePath());
+        } catch (RuntimeException e) {
+            throw new IOException("Không đọc được metadata: " + f.getName(), e);
+        }
+
+        String title = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE);
+        String artist = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
+        String album = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUM);
+        String dur = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+
+        long duration = dur != null ? Long.parseLong(dur) : 0;
+
+        if (title == null || title.isEmpty()) title = f.getName();
+        if (artist == null || artist.isEmpty()) artist = "Unknown";
+        if (album == null || album.isEmpty()) album = HeaderMetadataReader.folderName(f);
+
+        float gain = Loudness.readTagGain(f);
+
+        return new Song(id, title, artist, album, duration, f.getAbsolutePath(), gain);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mmr != null) {
+            mmr.release();
+            mmr = null;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.music_app;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Index tìm kiếm trong bộ nhớ trên title + artist. Token được chuẩn hoá (chữ thường, bỏ dấu tiếng Việt)
+ * và lưu trong TreeMap nên tra theo tiền tố chỉ là một subMap, không phải duyệt từng Song.
+ * Doc id chính là vị trí trong snapshot thư viện (SongStore), index không giữ Song riêng nào:
+ * scanner thêm bài thì append() phần đuôi mới, xoá bài thì reset() dựng lại.
+ * Nếu một từ không khớp tiền tố nào thì thử khớp sai 1 ký tự.
+ */
+public class SearchIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final int FUZZY_MIN_LENGTH = 3;
+
+    /** Danh sách doc id tăng dần của một token. */
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        void addTo(BitSet out) {
+            for (int i = 0; i < size; i++) out.set(ids[i]);
+        }
+    }
+
+    private List<Song> library = Collections.emptyList();
+    private final TreeMap<String, Postings> tokens = new TreeMap<>();
+
+    /**
+     * Index các bài mới ở cuối snapshot. snapshot phải là bản nối thêm của snapshot trước
+     * (cùng thứ tự cho phần đã index), nếu không thì dùng reset().
+     */
+    public synchronized void append(List<Song> snapshot) {
+        int from = library.size();
+        library = snapshot;
+        for (int doc = from; doc < snapshot.size(); doc++) {
+            Song s = snapshot.get(doc);
+            indexText(s.getTitle(), doc);
+            indexText(s.getArtist(), doc);
+        }
+    }
+
+    /** Dựng lại toàn bộ index cho snapshot (sau khi xoá bài hoặc đổi nguồn). */
+    public synchronized void reset(List<Song> snapshot) {
+        clear();
+        append(snapshot);
+    }
+
+    public synchronized void clear() {
+        library = Collections.emptyList();
+        tokens.clear();
+    }
+
+    public synchronized int size() { return library.size(); }
+
+    private void indexText(String text, int doc) {
+        if (text == null) return;
+        for (String t : tokenize(text)) {
+            Postings p = tokens.get(t);
+            if (p == null) tokens.put(t, p = new Postings());
+            p.add(doc);
+        }
+    }
+
+    /**
+     * Trả về các bài khớp mọi từ trong query (mỗi từ khớp theo tiền tố), theo thứ tự trong snapshot.
+     * Query rỗng trả về danh sách rỗng.
+     */
+    public synchronized List<Song> search(String query, int limit) {
+        List<Song> result = new ArrayList<>();
+        String[] terms = tokenize(query);
+        if (terms.length == 0) return result;
+
+        BitSet matches = null;
+        for (String term : terms) {
+            BitSet termDocs = new BitSet();
+            for (Postings p : tokens.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                p.addTo(termDocs);
+            }
+            if (termDocs.isEmpty() && term.length() >= FUZZY_MIN_LENGTH) fuzzyMatch(term, termDocs);
+
+            if (matches == null) matches = termDocs;
+            else matches.and(termDocs);
+            if (matches.isEmpty()) return result;
+        }
+
+        for (int doc = matches.nextSetBit(0); doc >= 0 && result.size() < limit; doc = matches.nextSetBit(doc + 1)) {
+            result.add(library.get(doc));
+        }
+        return result;
+    }
+
+    /** Chỉ xét các token cùng chữ cái đầu, chấp nhận sai 1 ký tự (thay / thừa / thiếu / đảo) ở phần tiền tố. */
+    private void fuzzyMatch(String term, BitSet out) {
+        char first = term.charAt(0);
+        NavigableMap<String, Postings> candidates =
+                tokens.subMap(String.valueOf(first), true, String.valueOf((char) (first + 1)), false);
+        for (Map.Entry<String, Postings> e : candidates.entrySet()) {
+            if (withinOneEdit(term, e.getKey())) e.getValue().addTo(out);
+        }
+    }
+
+    /** term khớp tiền tố của token với tối đa một lần sửa. */
+    static boolean withinOneEdit(String term, String token) {
+        int n = term.length();
+        for (int len = n - 1; len <= n + 1; len++) {
+            if (len < 1 || len > token.length()) continue;
+            if (editDistanceAtMostOne(term, token.substring(0, len))) return true;
+        }
+        return false;
+    }
+
+    private static boolean editDistanceAtMostOne(String a, String b) {
+        int la = a.length(), lb = b.length();
+        if (Math.abs(la - lb) > 1) return false;
+        int i = 0, j = 0, edits = 0;
+        while (i < la && j < lb) {
+            if (a.charAt(i) == b.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (++edits > 1) return false;
+            if (la > lb) i++;
+            else if (lb > la) j++;
+            else if (i + 1 < la && a.charAt(i) == b.charAt(j + 1) && a.charAt(i + 1) == b.charAt(j)) {
+                // Gõ đảo hai ký tự liền nhau cũng tính là một lỗi
+                i += 2;
+                j += 2;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return edits + (la - i) + (lb - j) <= 1;
+    }
+
+    /** Chữ thường, bỏ dấu (kể cả đ -> d). */
+    static String fold(String s) {
+        String lower = s.toLowerCase().replace('đ', 'd');
+        return COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    /** fold() rồi tách theo ký tự không phải chữ / số. */
+    static String[] tokenize(String text) {
+        if (text == null) return new String[0];
+        String folded = fold(text).trim();
+        if (folded.isEmpty()) return new String[0];
+        String[] parts = folded.split("[^\\p{L}\\p{N}]+");
+        int n = 0;
+        for (String p : parts) if (!p.isEmpty()) parts[n++] = p;
+        return Arrays.copyOf(parts, n);
+    }
+}
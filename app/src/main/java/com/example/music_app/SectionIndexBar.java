@@ -0,0 +1,91 @@
+package com.example.music_app;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.SectionIndexer;
+
+/**
+ * Thanh chữ cái dọc bên phải danh sách: chạm / kéo tới chữ nào thì báo section đó để cuộn thẳng tới.
+ * Nhãn lấy từ SectionIndexer (MusicAdapter); không có section thì view ẩn đi.
+ */
+public class SectionIndexBar extends View {
+
+    public interface OnSectionSelectedListener { void onSectionSelected(int section); }
+
+    private static final int TEXT_COLOR = 0xFFB3B3B3;
+    private static final int ACTIVE_COLOR = 0xFF1DB954;
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float maxTextSize;
+    private Object[] sections = new Object[0];
+    private int active = -1;
+    private OnSectionSelectedListener listener;
+
+    public SectionIndexBar(Context context) { this(context, null); }
+
+    public SectionIndexBar(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        maxTextSize = 12 * getResources().getDisplayMetrics().scaledDensity;
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setFakeBoldText(true);
+    }
+
+    public void setOnSectionSelectedListener(OnSectionSelectedListener l) { listener = l; }
+
+    /** Gọi lại mỗi khi adapter đổi list (đổi cách xem, snapshot mới, kết quả tìm kiếm). */
+    public void setIndexer(SectionIndexer indexer) {
+        sections = indexer != null ? indexer.getSections() : new Object[0];
+        active = -1;
+        setVisibility(sections.length > 1 ? VISIBLE : GONE);
+        invalidate();
+    }
+
+    private float rowHeight() {
+        return (getHeight() - getPaddingTop() - getPaddingBottom()) / (float) Math.max(1, sections.length);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (sections.length == 0) return;
+        float row = rowHeight();
+        paint.setTextSize(Math.min(maxTextSize, row * 0.8f));
+        float cx = getWidth() / 2f;
+        float baseline = getPaddingTop() + row / 2 - (paint.ascent() + paint.descent()) / 2;
+        for (int i = 0; i < sections.length; i++) {
+            paint.setColor(i == active ? ACTIVE_COLOR : TEXT_COLOR);
+            canvas.drawText(sections[i].toString(), cx, baseline + row * i, paint);
+        }
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent e) {
+        if (sections.length == 0) return false;
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                getParent().requestDisallowInterceptTouchEvent(true);
+                // fallthrough
+            case MotionEvent.ACTION_MOVE:
+                int section = (int) ((e.getY() - getPaddingTop()) / rowHeight());
+                section = Math.max(0, Math.min(sections.length - 1, section));
+                if (section != active) {
+                    active = section;
+                    invalidate();
+                    if (listener != null) listener.onSectionSelected(section);
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                active = -1;
+                invalidate();
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -1,23 +1,74 @@
 package com.example.music_app;
 
+/**
+ * Một bài hát. Bài lấy từ SongStore chỉ là view (store, row): mọi getter đọc thẳng từ các cột của store,
+ * bản thân object không giữ chuỗi nào. Bài tạo bằng constructor (scanner, MediaStore) giữ giá trị riêng.
+ * Hai Song bằng nhau khi cùng id.
+ */
 public class Song {
+    private final SongStore store;
+    private final int row;
+
     private long id;
     private String title;
     private String artist;
+    private String album;
     private long duration; // ms
     private String path; // absolute path or URI string
+    private float gainDb; // chuẩn hoá âm lượng (ReplayGain), NaN nếu chưa biết (ước lượng lúc phát)
 
     public Song(long id, String title, String artist, long duration, String path) {
+        this(id, title, artist, duration, path, 0f);
+    }
+
+    public Song(long id, String title, String artist, long duration, String path, float gainDb) {
+        this(id, title, artist, null, duration, path, gainDb);
+    }
+
+    public Song(long id, String title, String artist, String album, long duration, String path, float gainDb) {
+        this.store = null;
+        this.row = -1;
         this.id = id;
         this.title = title;
         this.artist = artist;
+        this.album = album;
         this.duration = duration;
         this.path = path;
+        this.gainDb = gainDb;
+    }
+
+    Song(SongStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    /**
+     * Id ổn định theo đường dẫn (FNV-1a 64-bit) cho các bài không có id của MediaStore,
+     * để quét lại không làm đổi id và adapter chỉ animate những bài thật sự thay đổi.
+     */
+    public static long idForPath(String path) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            h ^= path.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h & Long.MAX_VALUE;
+    }
+
+    public long getId() { return store != null ? store.id(row) : id; }
+    public String getTitle() { return store != null ? store.title(row) : title; }
+    public String getArtist() { return store != null ? store.artist(row) : artist; }
+    public String getAlbum() { return store != null ? store.album(row) : album; }
+    public long getDuration() { return store != null ? store.duration(row) : duration; }
+    public String getPath() { return store != null ? store.path(row) : path; }
+    public float getGainDb() { return store != null ? store.gain(row) : gainDb; }
+
+    // Mỗi lần get() từ store là một view mới: hai Song là một bài khi cùng id, không so theo instance
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Song && ((Song) o).getId() == getId();
     }
 
-    public long getId() { return id; }
-    public String getTitle() { return title; }
-    public String getArtist() { return artist; }
-    public long getDuration() { return duration; }
-    public String getPath() { return path; }
+    @Override
+    public int hashCode() { return Long.hashCode(getId()); }
 }
@@ -0,0 +1,261 @@
+package com.example.music_app;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Thư viện nhạc lưu theo cột: id / duration / gain là mảng nguyên thuỷ, artist, album và thư mục được gom vào
+ * một pool chuỗi dùng chung, path tách thành (thư mục, tên file). Mỗi Song lấy từ store chỉ là
+ * view (store, row) nên giữ cả thư viện không tốn thêm object cho từng bài.
+ * Store là snapshot không đổi: activity, adapter, service và index tìm kiếm dùng chung một instance.
+ */
+public final class SongStore extends AbstractList<Song> implements RandomAccess {
+
+    public static final SongStore EMPTY = new Builder().snapshot();
+
+    private final int size;
+    private final long[] ids;
+    private final int[] durations;  // ms
+    private final float[] gains;    // dB
+    private final String[] titles;
+    private final int[] artists;    // index trong pool
+    private final int[] albums;     // index trong pool
+    private final int[] dirs;       // index trong pool, -1 nếu path không có '/'
+    private final String[] names;
+    private final String[] pool;
+    private volatile long version;
+    private volatile int[] idTable;  // id -> row + 1 (open addressing, 0 là ô trống), dựng lần đầu cần tìm
+
+    private SongStore(Builder b) {
+        size = b.size;
+        ids = b.ids;
+        durations = b.durations;
+        gains = b.gains;
+        titles = b.titles;
+        artists = b.artists;
+        albums = b.albums;
+        dirs = b.dirs;
+        names = b.names;
+        pool = b.pool;
+    }
+
+    @Override public int size() { return size; }
+
+    @Override
+    public Song get(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+        return new Song(this, row);
+    }
+
+    long id(int row) { return ids[row]; }
+    long duration(int row) { return durations[row]; }
+    float gain(int row) { return gains[row]; }
+    String title(int row) { return titles[row]; }
+    String artist(int row) { return pool[artists[row]]; }
+    String album(int row) { return pool[albums[row]]; }
+
+    // Chỉ số trong pool: hai bài cùng artist / album có cùng ref, so sánh không cần đụng tới chuỗi
+    int artistRef(int row) { return artists[row]; }
+    int albumRef(int row) { return albums[row]; }
+    String pooled(int ref) { return pool[ref]; }
+
+    /** Mọi ref của snapshot đều nhỏ hơn giá trị này; pool dùng chung với Builder nên có thể có ô chưa dùng tới. */
+    int poolLength() { return pool.length; }
+
+    String path(int row) {
+        int dir = dirs[row];
+        return dir < 0 ? names[row] : pool[dir] + '/' + names[row];
+    }
+
+    /** Hash của dãy id theo thứ tự (FNV-1a), dùng để biết một index / thứ tự đã lưu còn khớp snapshot không. */
+    public long version() {
+        if (version == 0) version = hashIds(ids, size);
+        return version;
+    }
+
+    public static long versionOf(List<Song> songs) {
+        if (songs instanceof SongStore) return ((SongStore) songs).version();
+        long[] ids = new long[songs.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = songs.get(i).getId();
+        return hashIds(ids, ids.length);
+    }
+
+    private static long hashIds(long[] ids, int n) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < n; i++) {
+            long v = ids[i];
+            for (int b = 0; b < 64; b += 8) {
+                h ^= (v >>> b) & 0xff;
+                h *= 0x100000001b3L;
+            }
+        }
+        h ^= n;
+        return h != 0 ? h : 1;
+    }
+
+    /** Row của bài có id này, -1 nếu không có. O(1): bảng băm trên mảng nguyên thuỷ, không tạo Song hay Long nào. */
+    public int indexOfId(long id) {
+        int[] t = idTable;
+        if (t == null) idTable = t = buildIdTable();
+        int mask = t.length - 1;
+        for (int i = slot(id) & mask; ; i = (i + 1) & mask) {
+            int r = t[i];
+            if (r == 0) return -1;
+            if (ids[r - 1] == id) return r - 1;
+        }
+    }
+
+    // Snapshot không đổi nên bảng dựng một lần; hai thread cùng dựng thì ra hai bảng giống hệt nhau
+    private int[] buildIdTable() {
+        int[] t = new int[Integer.highestOneBit(Math.max(1, size)) << 2];  // tải <= 1/2
+        int mask = t.length - 1;
+        for (int row = 0; row < size; row++) {
+            long id = ids[row];
+            int i = slot(id) & mask;
+            while (t[i] != 0 && ids[t[i] - 1] != id) i = (i + 1) & mask;
+            if (t[i] == 0) t[i] = row + 1; // id trùng thì giữ row đầu tiên
+        }
+        return t;
+    }
+
+    private static int slot(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    /**
+     * Bản đang dựng của thư viện. Chỉ ghi nối thêm vào cuối mảng nên snapshot() dùng chung mảng,
+     * không copy; xoá bài thì dựng mảng mới để các snapshot cũ vẫn nguyên vẹn.
+     * Không thread-safe: chỉ dùng trên một thread (main), snapshot thì đọc được từ mọi thread.
+     */
+    public static final class Builder {
+        private int size;
+        private long[] ids = new long[0];
+        private int[] durations = new int[0];
+        private float[] gains = new float[0];
+        private String[] titles = new String[0];
+        private int[] artists = new int[0];
+        private int[] albums = new int[0];
+        private int[] dirs = new int[0];
+        private String[] names = new String[0];
+
+        private String[] pool = new String[0];
+        private int poolSize;
+        private final Map<String, Integer> poolIndex = new HashMap<>();
+
+        private SongStore snapshot;
+
+        public int size() { return size; }
+
+        public boolean isEmpty() { return size == 0; }
+
+        public void add(Song s) {
+            if (size == ids.length) grow(Math.max(16, size * 2));
+            String path = s.getPath() != null ? s.getPath() : "";
+            int slash = path.lastIndexOf('/');
+
+            ids[size] = s.getId();
+            durations[size] = (int) Math.min(Math.max(s.getDuration(), 0), Integer.MAX_VALUE);
+            gains[size] = s.getGainDb();
+            titles[size] = s.getTitle();
+            artists[size] = intern(s.getArtist());
+            albums[size] = intern(s.getAlbum());
+            dirs[size] = slash >= 0 ? intern(path.substring(0, slash)) : -1;
+            names[size] = slash >= 0 ? path.substring(slash + 1) : path;
+            size++;
+            snapshot = null;
+        }
+
+        public void addAll(Collection<Song> songs) {
+            if (size + songs.size() > ids.length) grow(Math.max(size + songs.size(), size * 2));
+            for (Song s : songs) add(s);
+        }
+
+        /** Xoá các bài theo id, giữ thứ tự. Dựng mảng mới nên không ảnh hưởng snapshot đã phát ra. */
+        public void removeIds(Set<Long> removed) {
+            if (removed.isEmpty()) return;
+            long[] nIds = new long[ids.length];
+            int[] nDur = new int[ids.length];
+            float[] nGains = new float[ids.length];
+            String[] nTitles = new String[ids.length];
+            int[] nArtists = new int[ids.length];
+            int[] nAlbums = new int[ids.length];
+            int[] nDirs = new int[ids.length];
+            String[] nNames = new String[ids.length];
+
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (removed.contains(ids[i])) continue;
+                nIds[n] = ids[i];
+                nDur[n] = durations[i];
+                nGains[n] = gains[i];
+                nTitles[n] = titles[i];
+                nArtists[n] = artists[i];
+                nAlbums[n] = albums[i];
+                nDirs[n] = dirs[i];
+                nNames[n] = names[i];
+                n++;
+            }
+            if (n == size) return;
+
+            ids = nIds;
+            durations = nDur;
+            gains = nGains;
+            titles = nTitles;
+            artists = nArtists;
+            albums = nAlbums;
+            dirs = nDirs;
+            names = nNames;
+            size = n;
+            snapshot = null;
+        }
+
+        public void clear() {
+            size = 0;
+            ids = new long[0];
+            durations = new int[0];
+            gains = new float[0];
+            titles = new String[0];
+            artists = new int[0];
+            albums = new int[0];
+            dirs = new int[0];
+            names = new String[0];
+            pool = new String[0];
+            poolSize = 0;
+            poolIndex.clear();
+            snapshot = null;
+        }
+
+        /** Snapshot của các bài hiện có; không đổi gì từ lần trước thì trả lại đúng instance cũ. */
+        public SongStore snapshot() {
+            if (snapshot == null) snapshot = new SongStore(this);
+            return snapshot;
+        }
+
+        private int intern(String s) {
+            if (s == null) s = "";
+            Integer i = poolIndex.get(s);
+            if (i != null) return i;
+            if (poolSize == pool.length) pool = Arrays.copyOf(pool, Math.max(16, poolSize * 2));
+            pool[poolSize] = s;
+            poolIndex.put(s, poolSize);
+            return poolSize++;
+        }
+
+        private void grow(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            gains = Arrays.copyOf(gains, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            artists = Arrays.copyOf(artists, capacity);
+            albums = Arrays.copyOf(albums, capacity);
+            dirs = Arrays.copyOf(dirs, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+    }
+}
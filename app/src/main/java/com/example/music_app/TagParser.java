@@ -0,0 +1,498 @@
+package com.example.music_app;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Đọc title / artist / album / duration (và ReplayGain nếu có) thẳng từ header, không dùng decoder native:
+ * ID3v2.2–2.4 + ID3v1, frame MPEG audio (Xing / Info / VBRI, không có thì tính theo CBR), ADTS AAC,
+ * MP4 (moov/mvhd, moov/udta/meta/ilst) và WAV RIFF.
+ * Chỉ đọc vài KB đầu file; phần lớn (ảnh bìa, mdat, data) được nhảy qua bằng FileChannel đọc theo vị trí
+ * vào một direct buffer dùng lại. Không thread-safe: mỗi thread dùng một instance.
+ */
+final class TagParser {
+
+    static final class Result {
+        String title;
+        String artist;
+        String album;
+        long durationMs;
+        float gainDb = Float.NaN;
+    }
+
+    private static final int WINDOW = 64 * 1024;
+    private static final int READ_AHEAD = 4096;           // phần lớn header chỉ cần vài trăm byte
+    private static final int MAX_TEXT = 4096;
+    private static final int MAX_SYNC_SCAN = 64 * 1024;    // sau tag ID3 có thể còn padding / rác trước frame đầu
+    private static final int ADTS_PROBE_FRAMES = 256;
+    private static final String GAIN_KEY = "REPLAYGAIN_TRACK_GAIN";
+
+    // kbps theo [MPEG1 = 0, MPEG2/2.5 = 1][layer 1..3][index]
+    private static final int[][][] BITRATES = {
+            {
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            },
+            {
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+            },
+    };
+    private static final int[] MPEG_SAMPLE_RATES = {44100, 48000, 32000};
+    private static final int[] AAC_SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+
+    private static final int MOOV = fourcc("moov"), MVHD = fourcc("mvhd"), UDTA = fourcc("udta"),
+            META = fourcc("meta"), ILST = fourcc("ilst"), HDLR = fourcc("hdlr"), DATA = fourcc("data"),
+            NAME = fourcc("name"), FREEFORM = fourcc("----"), NAM = 0xA96E616D /* ©nam */, ART = 0xA9415254 /* ©ART */,
+            ALB = 0xA9616C62 /* ©alb */;
+    private static final int FMT = fourcc("fmt "), WAV_DATA = fourcc("data"), LIST = fourcc("LIST"),
+            INAM = fourcc("INAM"), IART = fourcc("IART"), IPRD = fourcc("IPRD");
+
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(WINDOW);
+    private FileChannel ch;
+    private long size;
+    private long winStart;
+    private int winLen;
+
+    // Header frame MPEG vừa đọc bởi mpegHeader()
+    private boolean mpeg1, mono;
+    private int layer, bitrate, sampleRate, samplesPerFrame, frameLength;
+
+    // Box MP4 vừa đọc bởi readBox()
+    private int boxType, boxHeader;
+    private long boxSize;
+
+    private long tlenMs;
+
+    /** Null nếu không nhận ra định dạng hoặc không tính được duration, để reader khác xử lý. */
+    Result parse(File f) throws IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            return parse(channel);
+        }
+    }
+
+    /** Như parse(File) trên channel có sẵn (fd của content:// Uri); channel không bị đóng. */
+    Result parse(FileChannel channel) throws IOException {
+        try {
+            ch = channel;
+            size = channel.size();
+            winStart = 0;
+            winLen = 0;
+            tlenMs = 0;
+            Result r = new Result();
+            return parseAny(r) && r.durationMs > 0 ? r : null;
+        } finally {
+            ch = null;
+        }
+    }
+
+    private boolean parseAny(Result r) throws IOException {
+        if (!fill(0, 12)) return false;
+        if (tag(0, "ID3")) {
+            long audioStart = parseId3v2(r);
+            return audioStart >= 0 && parseFrames(r, audioStart, true);
+        }
+        if (tag(0, "RIFF") && tag(8, "WAVE")) return parseWav(r);
+        if (tag(4, "ftyp")) return parseMp4(r);
+        return parseFrames(r, 0, false);
+    }
+
+    // ========= ĐỌC FILE =========
+    /** Đảm bảo [pos, pos + len) nằm trong cửa sổ đã đọc; không thì đọc lại (len + read-ahead) byte từ pos. */
+    private boolean fill(long pos, int len) throws IOException {
+        if (pos < 0 || len > WINDOW || pos + len > size) return false;
+        if (pos >= winStart && pos + len <= winStart + winLen) return true;
+        buf.clear();
+        buf.limit(Math.min(WINDOW, len + READ_AHEAD));
+        int n = 0;
+        while (buf.hasRemaining()) {
+            int read = ch.read(buf, pos + n);
+            if (read <= 0) break;
+            n += read;
+        }
+        winStart = pos;
+        winLen = n;
+        return n >= len;
+    }
+
+    private int u8(long pos) { return buf.get((int) (pos - winStart)) & 0xff; }
+    private int u16le(long p) { return u8(p) | u8(p + 1) << 8; }
+    private int u24be(long p) { return u8(p) << 16 | u8(p + 1) << 8 | u8(p + 2); }
+    private long u32be(long p) { return (long) u8(p) << 24 | u8(p + 1) << 16 | u8(p + 2) << 8 | u8(p + 3); }
+    private long u32le(long p) { return (long) u8(p + 3) << 24 | u8(p + 2) << 16 | u8(p + 1) << 8 | u8(p); }
+    private long u64be(long p) { return u32be(p) << 32 | u32be(p + 4); }
+    private long syncsafe(long p) { return (u8(p) & 0x7f) << 21 | (u8(p + 1) & 0x7f) << 14 | (u8(p + 2) & 0x7f) << 7 | (u8(p + 3) & 0x7f); }
+
+    private boolean tag(long pos, String s) {
+        for (int i = 0; i < s.length(); i++) if (u8(pos + i) != s.charAt(i)) return false;
+        return true;
+    }
+
+    private static int fourcc(String s) {
+        return s.charAt(0) << 24 | s.charAt(1) << 16 | s.charAt(2) << 8 | s.charAt(3);
+    }
+
+    /** Chuỗi trong [pos, pos + len) (đã fill), cắt ở ký tự kết thúc; chuỗi rỗng thành null. */
+    private String text(long pos, int len, Charset cs) {
+        boolean wide = cs == StandardCharsets.UTF_16 || cs == StandardCharsets.UTF_16BE;
+        int end = terminator(pos, len, wide);
+        byte[] bytes = new byte[end];
+        for (int i = 0; i < end; i++) bytes[i] = (byte) u8(pos + i);
+        String s = new String(bytes, cs).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    /** Vị trí ký tự NUL đầu tiên (hai byte 0 thẳng hàng nếu là UTF-16), len nếu không có. */
+    private int terminator(long pos, int len, boolean wide) {
+        if (!wide) {
+            for (int i = 0; i < len; i++) if (u8(pos + i) == 0) return i;
+            return len;
+        }
+        for (int i = 0; i + 1 < len; i += 2) if (u8(pos + i) == 0 && u8(pos + i + 1) == 0) return i;
+        return len & ~1;
+    }
+
+    static float parseGain(String v) {
+        if (v == null) return Float.NaN;
+        int end = 0;
+        v = v.trim();
+        while (end < v.length() && "+-.0123456789".indexOf(v.charAt(end)) >= 0) end++;
+        try {
+            return end > 0 ? Loudness.clamp(Float.parseFloat(v.substring(0, end))) : Float.NaN;
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    // ========= ID3 =========
+    /** Đọc các frame cần thiết của ID3v2, trả về vị trí bắt đầu audio ngay sau tag. */
+    private long parseId3v2(Result r) throws IOException {
+        int major = u8(3);
+        int flags = u8(5);
+        long tagSize = syncsafe(6);
+        long framesEnd = 10 + tagSize;
+        long audioStart = framesEnd + ((flags & 0x10) != 0 ? 10 : 0);
+        if (major < 2 || major > 4 || (flags & 0x80) != 0 && major < 4) return audioStart; // unsync cả tag: bỏ qua tag
+
+        long pos = 10;
+        if ((flags & 0x40) != 0 && major >= 3) {
+            if (!fill(pos, 4)) return -1;
+            pos += major == 4 ? syncsafe(pos) : 4 + u32be(pos);
+        }
+        int headerLen = major == 2 ? 6 : 10;
+        while (pos + headerLen <= framesEnd && fill(pos, headerLen)) {
+            if (u8(pos) == 0) break; // padding
+            int id = major == 2 ? u24be(pos) : (int) u32be(pos);
+            long frameSize = major == 2 ? u24be(pos + 3) : major == 4 ? syncsafe(pos + 4) : u32be(pos + 4);
+            long body = pos + headerLen;
+            if (frameSize <= 0 || body + frameSize > framesEnd) break;
+
+            int skip = 0;
+            boolean readable = true;
+            if (major == 3) {
+                int ff = u8(pos + 9);
+                readable = (ff & 0xC0) == 0;               // nén / mã hoá
+                if ((ff & 0x20) != 0) skip = 1;            // group id
+            } else if (major == 4) {
+                int ff = u8(pos + 9);
+                readable = (ff & 0x0E) == 0;               // nén / mã hoá / unsync từng frame
+                if ((ff & 0x40) != 0) skip += 1;
+                if ((ff & 0x01) != 0) skip += 4;           // data length indicator
+            }
+            int len = (int) Math.min(frameSize - skip, MAX_TEXT);
+            if (readable && len > 1 && isWantedFrame(id, major) && fill(body + skip, len)) {
+                readId3Frame(r, id, major, body + skip, len);
+            }
+            pos = body + frameSize;
+        }
+        return audioStart;
+    }
+
+    private static boolean isWantedFrame(int id, int major) {
+        if (major == 2) {
+            return id == 0x545432 || id == 0x545031 || id == 0x54414C || id == 0x544C45 || id == 0x545858; // TT2 TP1 TAL TLE TXX
+        }
+        return id == fourcc("TIT2") || id == fourcc("TPE1") || id == fourcc("TALB") || id == fourcc("TLEN")
+                || id == fourcc("TXXX");
+    }
+
+    private void readId3Frame(Result r, int id, int major, long pos, int len) {
+        Charset cs = id3Charset(u8(pos));
+        boolean v2 = major == 2;
+        if (id == (v2 ? 0x545432 : fourcc("TIT2"))) {
+            if (r.title == null) r.title = text(pos + 1, len - 1, cs);
+        } else if (id == (v2 ? 0x545031 : fourcc("TPE1"))) {
+            if (r.artist == null) r.artist = text(pos + 1, len - 1, cs);
+        } else if (id == (v2 ? 0x54414C : fourcc("TALB"))) {
+            if (r.album == null) r.album = text(pos + 1, len - 1, cs);
+        } else if (id == (v2 ? 0x544C45 : fourcc("TLEN"))) {
+            String ms = text(pos + 1, len - 1, cs);
+            try {
+                if (ms != null) tlenMs = Long.parseLong(ms);
+            } catch (NumberFormatException ignored) {}
+        } else {
+            // TXXX: encoding, mô tả kết thúc bằng NUL, giá trị
+            boolean wide = cs == StandardCharsets.UTF_16 || cs == StandardCharsets.UTF_16BE;
+            int descEnd = terminator(pos + 1, len - 1, wide);
+            String desc = text(pos + 1, descEnd, cs);
+            int valueStart = 1 + descEnd + (wide ? 2 : 1);
+            if (GAIN_KEY.equalsIgnoreCase(desc) && valueStart < len) {
+                r.gainDb = parseGain(text(pos + valueStart, len - valueStart, cs));
+            }
+        }
+    }
+
+    private static Charset id3Charset(int encoding) {
+        switch (encoding) {
+            case 1: return StandardCharsets.UTF_16;     // có BOM
+            case 2: return StandardCharsets.UTF_16BE;
+            case 3: return StandardCharsets.UTF_8;
+            default: return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+    // ========= MPEG / ADTS =========
+    /** Audio dạng frame (MP3, AAC ADTS) bắt đầu từ start; afterTag = có tag ID3v2 phía trước nên được dò sync. */
+    private boolean parseFrames(Result r, long start, boolean afterTag) throws IOException {
+        long audioEnd = size;
+        if (size >= 128 && fill(size - 128, 128) && tag(size - 128, "TAG")) {
+            audioEnd = size - 128;
+            if (r.title == null) r.title = text(size - 125, 30, StandardCharsets.ISO_8859_1);
+            if (r.artist == null) r.artist = text(size - 95, 30, StandardCharsets.ISO_8859_1);
+            if (r.album == null) r.album = text(size - 65, 30, StandardCharsets.ISO_8859_1);
+        }
+
+        long limit = Math.min(audioEnd - 4, start + (afterTag ? MAX_SYNC_SCAN : 0));
+        for (long pos = start; pos <= limit; pos++) {
+            if (!fill(pos, 7)) break;
+            if (isAdts(pos)) {
+                if (adtsFrameLength(pos) > 7) return parseAdts(r, pos, audioEnd);
+            } else if (mpegHeader(pos) && confirmNextMpegFrame(pos, audioEnd)) {
+                return parseMpeg(r, pos, audioEnd);
+            }
+        }
+        return false;
+    }
+
+    private boolean mpegHeader(long pos) {
+        long h = u32be(pos);
+        if ((h & 0xFFE00000L) != 0xFFE00000L) return false;
+        int version = (int) (h >> 19) & 3;     // 3 = MPEG1, 2 = MPEG2, 0 = MPEG2.5
+        int layerBits = (int) (h >> 17) & 3;
+        int brIndex = (int) (h >> 12) & 0xF;
+        int srIndex = (int) (h >> 10) & 3;
+        if (version == 1 || layerBits == 0 || brIndex == 0 || brIndex == 15 || srIndex == 3) return false;
+
+        mpeg1 = version == 3;
+        layer = 4 - layerBits;
+        bitrate = BITRATES[mpeg1 ? 0 : 1][layer - 1][brIndex] * 1000;
+        sampleRate = MPEG_SAMPLE_RATES[srIndex] >> (mpeg1 ? 0 : version == 2 ? 1 : 2);
+        samplesPerFrame = layer == 1 ? 384 : layer == 2 || mpeg1 ? 1152 : 576;
+        int padding = (int) (h >> 9) & 1;
+        frameLength = layer == 1
+                ? (12 * bitrate / sampleRate + padding) * 4
+                : samplesPerFrame / 8 * bitrate / sampleRate + padding;
+        mono = ((h >> 6) & 3) == 3;
+        return true;
+    }
+
+    /** Tránh nhận nhầm byte 0xFF trong dữ liệu là sync: frame kế tiếp phải cùng version / layer / sample rate. */
+    private boolean confirmNextMpegFrame(long pos, long audioEnd) throws IOException {
+        long next = pos + frameLength;
+        if (next + 4 > audioEnd) return true;
+        boolean m1 = mpeg1;
+        int l = layer, sr = sampleRate, br = bitrate, fl = frameLength, spf = samplesPerFrame;
+        boolean mo = mono;
+        boolean ok = fill(next, 4) && mpegHeader(next) && mpeg1 == m1 && layer == l && sampleRate == sr;
+        // Trả lại thông tin của frame đầu tiên
+        mpeg1 = m1; layer = l; sampleRate = sr; bitrate = br; frameLength = fl; samplesPerFrame = spf; mono = mo;
+        return ok && fill(pos, 4);
+    }
+
+    private boolean parseMpeg(Result r, long pos, long audioEnd) throws IOException {
+        int sideInfo = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        long xing = pos + 4 + sideInfo;
+        if (fill(xing, 12) && (tag(xing, "Xing") || tag(xing, "Info")) && (u32be(xing + 4) & 1) != 0) {
+            r.durationMs = u32be(xing + 8) * samplesPerFrame * 1000 / sampleRate;
+            return true;
+        }
+        long vbri = pos + 4 + 32;
+        if (fill(vbri, 18) && tag(vbri, "VBRI")) {
+            r.durationMs = u32be(vbri + 14) * samplesPerFrame * 1000 / sampleRate;
+            return true;
+        }
+        // Không có header VBR: TLEN nếu có, không thì coi như CBR
+        r.durationMs = tlenMs > 0 ? tlenMs : (audioEnd - pos) * 8000 / bitrate;
+        return true;
+    }
+
+    private boolean isAdts(long pos) { return u8(pos) == 0xFF && (u8(pos + 1) & 0xF6) == 0xF0; }
+
+    private int adtsFrameLength(long pos) { return (u8(pos + 3) & 3) << 11 | u8(pos + 4) << 3 | u8(pos + 5) >> 5; }
+
+    /** ADTS không có tổng số frame: đo bitrate trung bình của các frame đầu rồi suy ra theo kích thước file. */
+    private boolean parseAdts(Result r, long start, long audioEnd) throws IOException {
+        int srIndex = (u8(start + 2) >> 2) & 0xF;
+        if (srIndex >= AAC_SAMPLE_RATES.length) return false;
+        int rate = AAC_SAMPLE_RATES[srIndex];
+
+        long pos = start;
+        long samples = 0;
+        for (int frames = 0; frames < ADTS_PROBE_FRAMES && pos + 7 <= audioEnd && fill(pos, 7) && isAdts(pos); frames++) {
+            int len = adtsFrameLength(pos);
+            if (len < 7) break;
+            samples += 1024L * ((u8(pos + 6) & 3) + 1);
+            pos += len;
+        }
+        long probed = pos - start;
+        if (probed <= 0 || samples == 0) return false;
+        long total = pos >= audioEnd ? samples : samples * (audioEnd - start) / probed;
+        r.durationMs = total * 1000 / rate;
+        return true;
+    }
+
+    // ========= MP4 =========
+    private boolean parseMp4(Result r) throws IOException {
+        long pos = 0;
+        while (pos + 8 <= size && readBox(pos, size)) {
+            long next = pos + boxSize;
+            // moov có thể nằm sau mdat: chỉ đọc header từng box top-level rồi nhảy qua
+            if (boxType == MOOV) {
+                parseBoxes(r, pos + boxHeader, next);
+                return true;
+            }
+            pos = next;
+        }
+        return false;
+    }
+
+    /** Đọc header box tại pos vào boxType / boxHeader / boxSize; false nếu box hỏng hoặc vượt quá end. */
+    private boolean readBox(long pos, long end) throws IOException {
+        if (!fill(pos, 8)) return false;
+        long size32 = u32be(pos);
+        boxType = (int) u32be(pos + 4);
+        boxHeader = 8;
+        if (size32 == 1) {
+            if (!fill(pos, 16)) return false;
+            boxSize = u64be(pos + 8);
+            boxHeader = 16;
+        } else {
+            boxSize = size32 == 0 ? end - pos : size32;
+        }
+        return boxSize >= boxHeader && pos + boxSize <= end;
+    }
+
+    private void parseBoxes(Result r, long start, long end) throws IOException {
+        long pos = start;
+        while (pos + 8 <= end && readBox(pos, end)) {
+            int type = boxType;
+            long body = pos + boxHeader;
+            long next = pos + boxSize;
+            if (type == MVHD) {
+                parseMvhd(r, body);
+            } else if (type == UDTA) {
+                parseBoxes(r, body, next);
+            } else if (type == META) {
+                // meta chuẩn ISO là full box (4 byte version / flags trước box con), kiểu QuickTime thì không
+                boolean fullBox = !(fill(body, 8) && u32be(body + 4) == HDLR);
+                parseBoxes(r, fullBox ? body + 4 : body, next);
+            } else if (type == ILST) {
+                parseIlst(r, body, next);
+            }
+            pos = next;
+        }
+    }
+
+    private void parseMvhd(Result r, long body) throws IOException {
+        if (!fill(body, 32)) return;
+        long timescale, duration;
+        if (u8(body) == 1) {
+            timescale = u32be(body + 20);
+            duration = u64be(body + 24);
+        } else {
+            timescale = u32be(body + 12);
+            duration = u32be(body + 16);
+        }
+        if (timescale > 0) r.durationMs = duration * 1000 / timescale;
+    }
+
+    private void parseIlst(Result r, long start, long end) throws IOException {
+        long pos = start;
+        while (pos + 8 <= end && readBox(pos, end)) {
+            int item = boxType;
+            long next = pos + boxSize;
+            if (item == NAM || item == ART || item == ALB || item == FREEFORM) parseIlstItem(r, item, pos + boxHeader, next);
+            pos = next;
+        }
+    }
+
+    /** Item của ilst chứa box data (type 4 byte + locale 4 byte + giá trị); item "----" có thêm mean / name. */
+    private void parseIlstItem(Result r, int item, long start, long end) throws IOException {
+        String name = null;
+        long pos = start;
+        while (pos + 8 <= end && readBox(pos, end)) {
+            int type = boxType;
+            long body = pos + boxHeader;
+            long next = pos + boxSize;
+            int len = (int) Math.min(next - body, MAX_TEXT);
+            if (type == NAME && len > 4 && fill(body, len)) {
+                name = text(body + 4, len - 4, StandardCharsets.UTF_8);
+            } else if (type == DATA && len > 8 && fill(body, len)) {
+                String value = text(body + 8, len - 8, StandardCharsets.UTF_8);
+                if (item == NAM) r.title = value;
+                else if (item == ART) r.artist = value;
+                else if (item == ALB) r.album = value;
+                else if (GAIN_KEY.equalsIgnoreCase(name)) r.gainDb = parseGain(value);
+            }
+            pos = next;
+        }
+    }
+
+    // ========= WAV =========
+    private boolean parseWav(Result r) throws IOException {
+        long byteRate = 0;
+        long dataSize = -1;
+        long pos = 12;
+        while (pos + 8 <= size && fill(pos, 8)) {
+            int id = (int) u32be(pos);
+            long len = u32le(pos + 4);
+            long body = pos + 8;
+            if (id == FMT && fill(body, 16)) {
+                byteRate = u32le(body + 8);
+            } else if (id == WAV_DATA) {
+                dataSize = Math.min(len, size - body);
+            } else if (id == LIST && fill(body, 4) && tag(body, "INFO")) {
+                parseInfo(r, body + 4, Math.min(body + len, size));
+            }
+            pos = body + len + (len & 1);   // chunk được đệm cho chẵn byte
+        }
+        if (byteRate <= 0 || dataSize < 0) return false;
+        r.durationMs = dataSize * 1000 / byteRate;
+        return true;
+    }
+
+    private void parseInfo(Result r, long pos, long end) throws IOException {
+        while (pos + 8 <= end && fill(pos, 8)) {
+            int id = (int) u32be(pos);
+            long len = u32le(pos + 4);
+            long body = pos + 8;
+            int textLen = (int) Math.min(len, MAX_TEXT);
+            if ((id == INAM || id == IART || id == IPRD) && body + textLen <= end && fill(body, textLen)) {
+                String value = text(body, textLen, StandardCharsets.UTF_8);
+                if (id == INAM) r.title = value;
+                else if (id == IART) r.artist = value;
+                else r.album = value;
+            }
+            pos = body + len + (len & 1);
+        }
+    }
+}
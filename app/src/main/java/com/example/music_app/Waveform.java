@@ -0,0 +1,122 @@
+package com.example.music_app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Dạng sóng thu gọn của một bài: BUCKETS cặp (min, max) 8-bit có dấu, tức ~2 KB mỗi bài.
+ * Builder nhận PCM 16-bit theo từng chunk khi giải mã tuần tự nên không bao giờ giữ cả bài trong bộ nhớ.
+ * File cache được đặt tên theo đường dẫn + kích thước + lastModified như index metadata.
+ */
+public final class Waveform {
+
+    public static final int BUCKETS = 1024;
+
+    private static final int MAGIC = 0x57415645; // "WAVE"
+    private static final int VERSION = 1;
+
+    private Waveform() {}
+
+    /** Tên file cache cho bài; đổi khi file nhạc bị sửa nên không cần kiểm tra lại lúc đọc. */
+    static String cacheName(File f) {
+        return Long.toHexString(Song.idForPath(f.getAbsolutePath() + ':' + f.length() + ':' + f.lastModified())) + ".wf";
+    }
+
+    // ========= DOWNSAMPLE =========
+    /** Gom mẫu PCM interleaved vào BUCKETS bucket theo vị trí frame trong bài. */
+    static final class Builder {
+        private final long totalFrames;
+        private int channels;
+        private long samples;
+        private final byte[] peaks = new byte[BUCKETS * 2];
+        private int bucket = -1;
+        private long nextBoundary;      // chỉ số mẫu đầu tiên của bucket kế tiếp
+        private int min, max;
+
+        /** totalFrames ước lượng từ duration × sample rate; giải mã ra nhiều hơn thì dồn vào bucket cuối. */
+        Builder(long totalFrames, int channels) {
+            this.totalFrames = Math.max(1, totalFrames);
+            this.channels = Math.max(1, channels);
+        }
+
+        /** Output format của decoder có thể đổi giữa chừng (INFO_OUTPUT_FORMAT_CHANGED). */
+        void setChannels(int channels) {
+            long frames = samples / this.channels;
+            this.channels = Math.max(1, channels);
+            samples = frames * this.channels;
+            nextBoundary = samples;     // tính lại biên ở mẫu kế tiếp
+        }
+
+        void add(short[] pcm, int count) {
+            for (int i = 0; i < count; i++) {
+                if (samples >= nextBoundary) startBucket();
+                short s = pcm[i];
+                if (s < min) min = s;
+                if (s > max) max = s;
+                samples++;
+            }
+        }
+
+        /** Chỉ chạy ở biên bucket (~BUCKETS lần mỗi bài) nên phép chia không nằm trong vòng lặp theo mẫu. */
+        private void startBucket() {
+            int b = (int) Math.min(BUCKETS - 1, samples / channels * BUCKETS / totalFrames);
+            if (b != bucket) {
+                flush();
+                bucket = b;
+                min = Short.MAX_VALUE;
+                max = Short.MIN_VALUE;
+            }
+            nextBoundary = b == BUCKETS - 1
+                    ? Long.MAX_VALUE
+                    : ((b + 1) * totalFrames + BUCKETS - 1) / BUCKETS * channels;
+        }
+
+        private void flush() {
+            if (bucket < 0) return;
+            peaks[bucket * 2] = (byte) (min >> 8);
+            peaks[bucket * 2 + 1] = (byte) (max >> 8);
+        }
+
+        /** Bucket chưa nhận mẫu nào (bài ngắn hơn ước lượng) giữ giá trị 0 = im lặng. */
+        byte[] build() {
+            flush();
+            return peaks;
+        }
+    }
+
+    // ========= FILE =========
+    static void write(File file, byte[] peaks) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeShort(peaks.length / 2);
+            out.write(peaks);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Không ghi được " + file);
+        }
+    }
+
+    /** Null nếu chưa có file hoặc file hỏng / khác phiên bản. */
+    static byte[] read(File file) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            int buckets = in.readUnsignedShort();
+            if (buckets != BUCKETS) return null;
+            byte[] peaks = new byte[buckets * 2];
+            in.readFully(peaks);
+            return peaks;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.music_app;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tính dạng sóng cho bài đang phát: giải mã tuần tự cả file bằng MediaCodec trên một thread
+ * độ ưu tiên thấp nhất (không tranh CPU với thread phát nhạc), gom thành Waveform rồi lưu ~2 KB xuống đĩa.
+ * Lần sau mở lại bài thì đọc từ bộ nhớ / đĩa, không giải mã nữa. Chỉ một yêu cầu chạy tại một thời điểm:
+ * đổi bài thì yêu cầu cũ bị huỷ giữa chừng.
+ */
+public class WaveformLoader {
+
+    public interface Callback { void onLoaded(Song song, byte[] peaks); }
+
+    private static final String TAG = "WaveformLoader";
+    private static final long TIMEOUT_US = 10_000;
+    private static final int CHUNK_SAMPLES = 8192;
+    private static final int MEMORY_ENTRIES = 16;
+
+    private static WaveformLoader instance;
+
+    public static synchronized WaveformLoader get(Context context) {
+        if (instance == null) instance = new WaveformLoader(context.getApplicationContext());
+        return instance;
+    }
+
+    // Key giống tên file trên đĩa (path + size + mtime): file bị ghi đè thì không trả waveform cũ
+    private final LruCache<String, byte[]> memory = new LruCache<>(MEMORY_ENTRIES);
+    private final File diskDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+        r.run();
+    }, "waveform"));
+
+    private volatile Request current;
+
+    private static final class Request {
+        final Song song;
+        final String key;
+        volatile boolean cancelled;
+
+        Request(Song song, String key) {
+            this.song = song;
+            this.key = key;
+        }
+    }
+
+    private WaveformLoader(Context context) {
+        diskDir = new File(context.getCacheDir(), "waveform");
+        diskDir.mkdirs();
+    }
+
+    public byte[] getCached(Song s) {
+        return s != null && s.getPath() != null ? memory.get(Waveform.cacheName(new File(s.getPath()))) : null;
+    }
+
+    /** Callback chạy trên main thread; không gọi nếu yêu cầu bị thay bằng bài khác trước khi xong. */
+    public void load(Song s, Callback callback) {
+        Request old = current;
+        if (old != null) old.cancelled = true;
+        current = null;
+        if (s == null || s.getPath() == null) return;
+
+        String key = Waveform.cacheName(new File(s.getPath()));
+        byte[] cached = memory.get(key);
+        if (cached != null) {
+            callback.onLoaded(s, cached);
+            return;
+        }
+        Request req = new Request(s, key);
+        current = req;
+        executor.execute(() -> {
+            if (req.cancelled) return;
+            byte[] peaks = loadBlocking(req);
+            if (peaks == null) return;
+            mainHandler.post(() -> {
+                if (!req.cancelled) callback.onLoaded(req.song, peaks);
+            });
+        });
+    }
+
+    // ========= BACKGROUND =========
+    private byte[] loadBlocking(Request req) {
+        String path = req.song.getPath();
+        File cacheFile = new File(diskDir, req.key);
+        byte[] peaks = Waveform.read(cacheFile);
+        if (peaks == null) {
+            peaks = decode(path, req);
+            if (peaks == null) return null;
+            try {
+                Waveform.write(cacheFile, peaks);
+            } catch (IOException e) {
+                Log.w(TAG, "Không lưu được waveform: " + path);
+            }
+        }
+        memory.put(req.key, peaks);
+        return peaks;
+    }
+
+    /** Giải mã cả bài theo từng buffer của decoder; null nếu lỗi hoặc bị huỷ giữa chừng. */
+    private static byte[] decode(String path, Request req) {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(path);
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat f = extractor.getTrackFormat(i);
+                String mime = f.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = f;
+                    break;
+                }
+            }
+            if (format == null) return null;
+
+            long durationUs = format.containsKey(MediaFormat.KEY_DURATION)
+                    ? format.getLong(MediaFormat.KEY_DURATION) : req.song.getDuration() * 1000;
+            int rate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            Waveform.Builder builder = new Waveform.Builder(durationUs * rate / 1_000_000,
+                    format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            short[] chunk = new short[CHUNK_SAMPLES];
+            boolean inputDone = false;
+            while (!req.cancelled) {
+                if (!inputDone) {
+                    int in = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (in >= 0) {
+                        ByteBuffer buf = codec.getInputBuffer(in);
+                        int size = buf != null ? extractor.readSampleData(buf, 0) : -1;
+                        if (size < 0) {
+                            codec.queueInputBuffer(in, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(in, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int out = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (out == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    builder.setChannels(codec.getOutputFormat().getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+                    continue;
+                }
+                if (out < 0) continue;
+                ByteBuffer pcm = codec.getOutputBuffer(out);
+                if (pcm != null && info.size > 0) {
+                    pcm.position(info.offset);
+                    pcm.limit(info.offset + info.size);
+                    ShortBuffer samples = pcm.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    while (samples.hasRemaining()) {
+                        int n = Math.min(chunk.length, samples.remaining());
+                        samples.get(chunk, 0, n);
+                        builder.add(chunk, n);
+                    }
+                }
+                codec.releaseOutputBuffer(out, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) return builder.build();
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Không tính được waveform: " + path);
+            return null;
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException ignored) {}
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.music_app;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Bundle;
+import android.util.AttributeSet;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.SeekBar;
+
+/**
+ * Thanh seek của mini player vẽ dạng sóng của bài: phần đã phát màu xanh, phần còn lại màu xám.
+ * Toạ độ các vạch được tính sẵn khi đổi kích thước hoặc đổi waveform; onDraw chỉ clip và vẽ lại
+ * cùng một mảng nên không cấp phát gì. Chưa có waveform thì vẽ như một progress bar phẳng.
+ * Với TalkBack / bàn phím vẫn là một SeekBar: có RangeInfo, ACTION_SET_PROGRESS và phím D-pad trái / phải.
+ */
+public class WaveformSeekBar extends View {
+
+    public interface OnSeekListener {
+        void onStartSeek();
+        /** commit = false khi cử chỉ bị huỷ (ACTION_CANCEL), vị trí đã trả về như trước khi kéo. */
+        void onStopSeek(boolean commit);
+    }
+
+    private static final int PLAYED_COLOR = 0xFF1DB954;
+    private static final int REST_COLOR = 0xFF404040;
+    private static final int KEY_STEPS = 20;  // mỗi lần bấm phím / vuốt TalkBack nhảy 1/20 bài, như AbsSeekBar
+
+    private final Paint playedPaint = new Paint();
+    private final Paint restPaint = new Paint();
+    private final float barWidth;
+    private final float barGap;
+
+    private byte[] peaks;
+    private float[] lines = new float[0];   // x0, y0, x1, y1 cho từng vạch
+    private int lineCount;
+
+    private int max;
+    private int progress;
+    private int progressBeforeSeek;
+    private float drawnX = -1;
+    private boolean seeking;
+    private OnSeekListener listener;
+
+    public WaveformSeekBar(Context context) { this(context, null); }
+
+    public WaveformSeekBar(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        barWidth = 2 * density;
+        barGap = density;
+        playedPaint.setColor(PLAYED_COLOR);
+        playedPaint.setStrokeWidth(barWidth);
+        restPaint.setColor(REST_COLOR);
+        restPaint.setStrokeWidth(barWidth);
+        setFocusable(true);
+    }
+
+    public void setOnSeekListener(OnSeekListener l) { listener = l; }
+
+    /** Null để quay về thanh phẳng (chưa có waveform hoặc đổi bài). */
+    public void setPeaks(byte[] peaks) {
+        if (this.peaks == peaks) return;
+        this.peaks = peaks;
+        rebuildLines();
+        invalidate();
+    }
+
+    public int getMax() { return max; }
+
+    public void setMax(int max) {
+        if (this.max == max) return;
+        this.max = Math.max(0, max);
+        if (progress > this.max) progress = this.max;
+        invalidateIfMoved();
+    }
+
+    public int getProgress() { return progress; }
+
+    /** Vị trí do service báo về bị bỏ qua khi người dùng đang kéo. */
+    public void setProgress(int progress) {
+        if (seeking) return;
+        this.progress = Math.max(0, Math.min(progress, max));
+        invalidateIfMoved();
+    }
+
+    /** Chỉ vẽ lại khi phần đã phát dài thêm ít nhất một pixel. */
+    private void invalidateIfMoved() {
+        if ((int) progressX() != (int) drawnX) invalidate();
+    }
+
+    private float progressX() {
+        int w = getWidth() - getPaddingLeft() - getPaddingRight();
+        return getPaddingLeft() + (max > 0 ? w * (float) progress / max : 0);
+    }
+
+    // ========= LAYOUT =========
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        rebuildLines();
+    }
+
+    /** Mỗi vạch gom một dải bucket liên tiếp, lấy min nhỏ nhất và max lớn nhất trong dải. */
+    private void rebuildLines() {
+        lineCount = 0;
+        int left = getPaddingLeft();
+        int width = getWidth() - left - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (peaks == null || width <= 0 || height <= 0) return;
+
+        int buckets = peaks.length / 2;
+        int bars = Math.max(1, Math.min(buckets, (int) ((width + barGap) / (barWidth + barGap))));
+        if (lines.length < bars * 4) lines = new float[bars * 4];
+        float step = width / (float) bars;
+        float center = getPaddingTop() + height / 2f;
+        float half = height / 2f;
+        for (int i = 0; i < bars; i++) {
+            int from = i * buckets / bars;
+            int to = Math.max(from + 1, (i + 1) * buckets / bars);
+            int lo = 0, hi = 0;
+            for (int b = from; b < to; b++) {
+                lo = Math.min(lo, peaks[b * 2]);
+                hi = Math.max(hi, peaks[b * 2 + 1]);
+            }
+            float top = center - half * hi / 128f;
+            float bottom = center - half * lo / 128f;
+            if (bottom - top < 1) {   // im lặng vẫn hiện một vạch mảnh
+                top = center - 0.5f;
+                bottom = center + 0.5f;
+            }
+            float x = left + step * i + barWidth / 2;
+            int p = i * 4;
+            lines[p] = x;
+            lines[p + 1] = top;
+            lines[p + 2] = x;
+            lines[p + 3] = bottom;
+        }
+        lineCount = bars;
+    }
+
+    // ========= VẼ =========
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float x = progressX();
+        drawnX = x;
+        int top = getPaddingTop();
+        int bottom = getHeight() - getPaddingBottom();
+
+        if (lineCount == 0) {
+            float cy = (top + bottom) / 2f;
+            canvas.drawLine(getPaddingLeft(), cy, getWidth() - getPaddingRight(), cy, restPaint);
+            canvas.drawLine(getPaddingLeft(), cy, x, cy, playedPaint);
+            return;
+        }
+
+        canvas.save();
+        canvas.clipRect(0, top, x, bottom);
+        canvas.drawLines(lines, 0, lineCount * 4, playedPaint);
+        canvas.restore();
+
+        canvas.save();
+        canvas.clipRect(x, top, getWidth(), bottom);
+        canvas.drawLines(lines, 0, lineCount * 4, restPaint);
+        canvas.restore();
+    }
+
+    // ========= KÉO ĐỂ SEEK =========
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent e) {
+        if (!isEnabled() || max <= 0) return false;
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                getParent().requestDisallowInterceptTouchEvent(true);
+                progressBeforeSeek = progress;
+                seeking = true;
+                if (listener != null) listener.onStartSeek();
+                trackTouch(e.getX());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (seeking) trackTouch(e.getX());
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (!seeking) return true;
+                boolean commit = e.getActionMasked() == MotionEvent.ACTION_UP;
+                if (commit) trackTouch(e.getX());
+                else progress = progressBeforeSeek;
+                seeking = false;
+                invalidate();
+                if (listener != null) listener.onStopSeek(commit);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // ========= BÀN PHÍM / ACCESSIBILITY =========
+    private int keyStep() { return Math.max(1, Math.round(max / (float) KEY_STEPS)); }
+
+    /** Seek một lần tới vị trí (phím, TalkBack): báo listener như một lần kéo ngắn. */
+    private boolean seekTo(int target) {
+        if (!isEnabled() || max <= 0 || seeking) return false;
+        target = Math.max(0, Math.min(target, max));
+        if (target == progress) return false;
+        if (listener != null) listener.onStartSeek();
+        progress = target;
+        invalidateIfMoved();
+        if (listener != null) listener.onStopSeek(true);
+        sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_SELECTED);
+        return true;
+    }
+
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        int step = keyStep();
+        if (getLayoutDirection() == LAYOUT_DIRECTION_RTL) step = -step;
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_LEFT:
+            case KeyEvent.KEYCODE_MINUS:
+                if (seekTo(progress - step)) return true;
+                break;
+            case KeyEvent.KEYCODE_DPAD_RIGHT:
+            case KeyEvent.KEYCODE_PLUS:
+            case KeyEvent.KEYCODE_EQUALS:
+                if (seekTo(progress + step)) return true;
+                break;
+        }
+        return super.onKeyDown(keyCode, event);
+    }
+
+    @Override
+    public CharSequence getAccessibilityClassName() { return SeekBar.class.getName(); }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setRangeInfo(AccessibilityNodeInfo.RangeInfo.obtain(
+                AccessibilityNodeInfo.RangeInfo.RANGE_TYPE_INT, 0, max, progress));
+        if (!isEnabled() || max <= 0) return;
+        info.addAction(AccessibilityNodeInfo.AccessibilityAction.ACTION_SET_PROGRESS);
+        if (progress > 0) info.addAction(AccessibilityNodeInfo.AccessibilityAction.ACTION_SCROLL_BACKWARD);
+        if (progress < max) info.addAction(AccessibilityNodeInfo.AccessibilityAction.ACTION_SCROLL_FORWARD);
+    }
+
+    @Override
+    public boolean performAccessibilityAction(int action, Bundle arguments) {
+        if (super.performAccessibilityAction(action, arguments)) return true;
+        if (action == AccessibilityNodeInfo.AccessibilityAction.ACTION_SET_PROGRESS.getId()) {
+            if (arguments == null || !arguments.containsKey(AccessibilityNodeInfo.ACTION_ARGUMENT_PROGRESS_VALUE)) return false;
+            return seekTo(Math.round(arguments.getFloat(AccessibilityNodeInfo.ACTION_ARGUMENT_PROGRESS_VALUE)));
+        }
+        if (action == AccessibilityNodeInfo.ACTION_SCROLL_FORWARD) return seekTo(progress + keyStep());
+        if (action == AccessibilityNodeInfo.ACTION_SCROLL_BACKWARD) return seekTo(progress - keyStep());
+        return false;
+    }
+
+    private void trackTouch(float touchX) {
+        int w = getWidth() - getPaddingLeft() - getPaddingRight();
+        if (w <= 0) return;
+        float fraction = Math.max(0f, Math.min(1f, (touchX - getPaddingLeft()) / w));
+        progress = Math.round(fraction * max);
+        invalidateIfMoved();
+    }
+}
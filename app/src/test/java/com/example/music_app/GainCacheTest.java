@@ -0,0 +1,74 @@
+package com.example.music_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class GainCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File track(String name, int bytes) throws IOException {
+        File f = tmp.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(new byte[bytes]);
+        }
+        return f;
+    }
+
+    @Test
+    public void savedGain_survivesReload() throws IOException {
+        File index = new File(tmp.getRoot(), "gain.idx");
+        File a = track("a.mp3", 100);
+        File b = track("b.mp3", 200);
+        GainCache cache = new GainCache(index);
+        cache.load();
+        assertTrue(Float.isNaN(cache.lookup(a)));
+        cache.put(a, -6.5f);
+        cache.put(b, Float.NaN); // không ước lượng được: không lưu, lần sau thử lại
+        cache.save();
+
+        GainCache reloaded = new GainCache(index);
+        reloaded.load();
+        assertEquals(1, reloaded.size());
+        assertEquals(-6.5f, reloaded.lookup(a), 0f);
+        assertTrue(Float.isNaN(reloaded.lookup(b)));
+    }
+
+    @Test
+    public void changedFile_isNotReused() throws IOException {
+        File index = new File(tmp.getRoot(), "gain.idx");
+        File a = track("a.mp3", 100);
+        File b = track("b.mp3", 100);
+        GainCache cache = new GainCache(index);
+        cache.load();
+        cache.put(a, -3f);
+        cache.put(b, -4f);
+        cache.save();
+
+        try (FileOutputStream out = new FileOutputStream(a)) {
+            out.write(new byte[300]);
+        }
+        assertTrue(b.setLastModified(b.lastModified() - 60_000));
+
+        GainCache reloaded = new GainCache(index);
+        reloaded.load();
+        assertTrue(Float.isNaN(reloaded.lookup(a)));
+        assertTrue(Float.isNaN(reloaded.lookup(b)));
+    }
+
+    @Test
+    public void brokenIndex_isTreatedAsEmpty() throws IOException {
+        File index = track("gain.idx", 7);
+        GainCache cache = new GainCache(index);
+        cache.load();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.music_app;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndBounded() {
+        int prev = -1;
+        for (long v = 0; v < 100_000; v++) {
+            int i = LatencyHistogram.indexOf(v);
+            assertTrue(i == prev || i == prev + 1);
+            assertTrue(LatencyHistogram.highestValueAt(i) >= v);
+            // Sai số tương đối của bucket không quá 1/16
+            assertTrue(LatencyHistogram.highestValueAt(i) - v <= Math.max(1, v / 16));
+            prev = i;
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformValues() {
+        LatencyHistogram h = new LatencyHistogram("test");
+        for (int us = 1; us <= 10_000; us++) h.recordMicros(us);
+
+        assertEquals(10_000, h.count());
+        assertEquals(10_000, h.maxMicros());
+        assertEquals(5000.5, h.meanMicros(), 1e-9);
+        assertEquals(5000, h.percentileMicros(50), 5000 / 16.0);
+        assertEquals(9900, h.percentileMicros(99), 9900 / 16.0);
+        assertEquals(10_000, h.percentileMicros(100));
+    }
+
+    @Test
+    public void skewedDistribution_tailIsVisible() {
+        LatencyHistogram h = new LatencyHistogram("prepare");
+        Random r = new Random(1);
+        for (int i = 0; i < 990; i++) h.recordMillis(20 + r.nextInt(10));
+        for (int i = 0; i < 10; i++) h.recordMillis(800);
+
+        assertTrue(h.percentileMicros(50) < 31_000);
+        assertTrue(h.percentileMicros(99) < 31_000);
+        assertTrue(h.percentileMicros(99.5) >= 750_000);
+        assertTrue(h.summary().contains("n=1000"));
+    }
+
+    @Test
+    public void outOfRangeValuesAreClampedAndResetClears() {
+        LatencyHistogram h = new LatencyHistogram("x");
+        h.recordNanos(-5);
+        h.recordMicros(Long.MAX_VALUE);
+        assertEquals(2, h.count());
+        assertEquals(0, h.percentileMicros(50));
+        assertTrue(h.maxMicros() > 0);
+
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentileMicros(99));
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws InterruptedException {
+        LatencyHistogram h = new LatencyHistogram("mt");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) h.recordMicros(i % 1000);
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(200_000, h.count());
+        assertEquals(999, h.maxMicros());
+    }
+}
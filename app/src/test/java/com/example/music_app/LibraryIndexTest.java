@@ -0,0 +1,121 @@
+package com.example.music_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LibraryIndexTest {
+
+    private static SongStore store(String[][] rows) {
+        SongStore.Builder b = new SongStore.Builder();
+        for (int i = 0; i < rows.length; i++) {
+            b.add(new Song(i + 1, rows[i][0], rows[i][1], rows[i][2], 1000, "/m/" + i + ".mp3", 0f));
+        }
+        return b.snapshot();
+    }
+
+    private static final String[][] LIBRARY = {
+            {"Đừng Làm Trái Tim Anh Đau", "Sơn Tùng M-TP", "Single"},
+            {"Âm Thầm Bên Em", "Sơn Tùng M-TP", "m-tp M-TP"},
+            {"Bohemian Rhapsody", "Queen", "A Night at the Opera"},
+            {"Love of My Life", "Queen", "A Night at the Opera"},
+            {"Anh Ơi Ở Lại", "Chi Pu", "Single"},
+            {"3107", "W/n", ""},
+            {"Em Của Ngày Hôm Qua", "Sơn Tùng M-TP", "m-tp M-TP"},
+    };
+
+    private static List<String> titles(List<Song> songs) {
+        List<String> out = new ArrayList<>();
+        for (Song s : songs) out.add(s.getTitle());
+        return out;
+    }
+
+    @Test
+    public void songsMode_sortedByFoldedTitle_withLetterSections() {
+        LibraryIndex.Rows rows = LibraryIndex.build(store(LIBRARY)).rows(LibraryIndex.Mode.SONGS);
+        assertEquals(Arrays.asList("3107", "Âm Thầm Bên Em", "Anh Ơi Ở Lại", "Bohemian Rhapsody",
+                "Đừng Làm Trái Tim Anh Đau", "Em Của Ngày Hôm Qua", "Love of My Life"), titles(rows));
+        assertEquals(Arrays.asList("#", "A", "B", "D", "E", "L"), Arrays.asList(rows.getSections()));
+        assertEquals(4, rows.getPositionForSection(3));   // Đ được xếp vào D
+        assertEquals(1, rows.getSectionForPosition(2));
+        assertEquals(5, rows.getSectionForPosition(6));
+        assertFalse(rows.isHeader(0));
+        assertEquals(titles(rows), titles(rows.songs()));
+    }
+
+    @Test
+    public void artistsMode_groupsWithHeaders() {
+        LibraryIndex.Rows rows = LibraryIndex.build(store(LIBRARY)).rows(LibraryIndex.Mode.ARTISTS);
+        // Chi Pu(1), Queen(2), Sơn Tùng(3), W/n(1): 7 bài + 4 header
+        assertEquals(11, rows.size());
+        assertEquals(Arrays.asList("Chi Pu", "Anh Ơi Ở Lại", "Queen", "Bohemian Rhapsody", "Love of My Life",
+                "Sơn Tùng M-TP", "Âm Thầm Bên Em", "Em Của Ngày Hôm Qua", "Đừng Làm Trái Tim Anh Đau",
+                "W/n", "3107"), titles(rows));
+        assertTrue(rows.isHeader(0));
+        assertTrue(rows.isHeader(5));
+        assertFalse(rows.isHeader(6));
+        assertEquals("3 bài", rows.get(5).getArtist());
+        assertTrue(rows.get(5).getId() < 0);
+
+        assertEquals(-1, rows.songIndexAt(2));
+        assertEquals(1, rows.songIndexAt(3));
+        assertEquals("Bohemian Rhapsody", rows.songs().get(1).getTitle());
+        for (int i = 0; i < rows.songs().size(); i++) {
+            int pos = rows.positionOfSong(i);
+            assertEquals(i, rows.songIndexAt(pos));
+            assertSame(rows.songs().get(i).getId(), rows.get(pos).getId());
+        }
+        assertEquals(Arrays.asList("C", "Q", "S", "W"), Arrays.asList(rows.getSections()));
+        assertEquals(5, rows.getPositionForSection(2));
+
+        // Adapter bind theo row của store: khớp với get() mà không tạo Song
+        for (int p = 0; p < rows.size(); p++) {
+            int row = rows.storeRow(p);
+            if (rows.isHeader(p)) {
+                assertEquals(-1, row);
+                assertSame(rows.get(p), rows.headerAt(p));
+            } else {
+                assertNull(rows.headerAt(p));
+                assertEquals(rows.get(p).getId(), rows.store().id(row));
+                assertEquals(rows.get(p).getTitle(), rows.store().title(row));
+            }
+        }
+    }
+
+    @Test
+    public void albumsMode_splitsSameAlbumNameByArtist() {
+        LibraryIndex.Rows rows = LibraryIndex.build(store(LIBRARY)).rows(LibraryIndex.Mode.ALBUMS);
+        List<String> headers = new ArrayList<>();
+        for (int p = 0; p < rows.size(); p++) if (rows.isHeader(p)) headers.add(rows.get(p).getTitle());
+        assertEquals(Arrays.asList("Không rõ album", "A Night at the Opera", "m-tp M-TP", "Single", "Single"), headers);
+        assertEquals("Chi Pu · 1 bài", rows.get(rows.positionOfSong(5) - 1).getArtist());
+        assertEquals(rows.size() - 5, rows.songs().size());
+    }
+
+    @Test
+    public void headerIdsStableAcrossSnapshots() {
+        SongStore a = store(LIBRARY);
+        SongStore b = store(Arrays.copyOf(LIBRARY, 4));
+        LibraryIndex.Rows rowsA = LibraryIndex.build(a).rows(LibraryIndex.Mode.ARTISTS);
+        LibraryIndex.Rows rowsB = LibraryIndex.build(b).rows(LibraryIndex.Mode.ARTISTS);
+        assertEquals("Queen", rowsB.get(0).getTitle());
+        assertEquals(rowsA.get(2).getId(), rowsB.get(0).getId());
+        assertTrue(rowsA.get(0).getId() != rowsA.get(2).getId());
+    }
+
+    @Test
+    public void emptyStore() {
+        LibraryIndex index = LibraryIndex.build(SongStore.EMPTY);
+        for (LibraryIndex.Mode m : LibraryIndex.Mode.values()) {
+            LibraryIndex.Rows rows = index.rows(m);
+            assertEquals(0, rows.size());
+            assertEquals(0, rows.getSections().length);
+            assertEquals(0, rows.getPositionForSection(0));
+            assertEquals(0, rows.getSectionForPosition(0));
+        }
+    }
+}
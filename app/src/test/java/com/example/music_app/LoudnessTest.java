@@ -0,0 +1,73 @@
+package com.example.music_app;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class LoudnessTest {
+
+    private static byte[] bytes(Object... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object p : parts) {
+            if (p instanceof String) {
+                byte[] b = ((String) p).getBytes(StandardCharsets.ISO_8859_1);
+                out.write(b, 0, b.length);
+            } else if (p instanceof byte[]) {
+                out.write((byte[]) p, 0, ((byte[]) p).length);
+            } else {
+                out.write((Integer) p);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static float find(byte[] b) { return Loudness.findTagGain(b, b.length); }
+
+    @Test
+    public void vorbisAndApeComments() {
+        assertEquals(-7.89f, find(bytes("\u0001vorbis", 0x20, 0, 0, 0, "REPLAYGAIN_TRACK_GAIN=-7.89 dB")), 1e-4);
+        assertEquals(2.5f, find(bytes("APETAGEX....", "Replaygain_Track_Gain", 0, "+2.50 dB")), 1e-4);
+    }
+
+    @Test
+    public void id3TxxxFrame_latin1AndUtf16() {
+        assertEquals(-3.12f, find(bytes("TXXX", 0, 0, 0, 30, 0, 0, 0, "replaygain_track_gain", 0, "-3.12 dB")), 1e-4);
+
+        byte[] utf16 = "REPLAYGAIN_TRACK_GAIN".getBytes(StandardCharsets.UTF_16LE);
+        byte[] value = "-4.5 dB".getBytes(StandardCharsets.UTF_16LE);
+        assertEquals(-4.5f, find(bytes("TXXX", 0, 0, 0, 70, 0, 0, 1, 0xFF, 0xFE, utf16, 0, 0, 0xFF, 0xFE, value)), 1e-4);
+    }
+
+    @Test
+    public void mp4FreeformAtom() {
+        byte[] b = bytes("----", 0, 0, 0, 28, "mean", 0, 0, 0, 0, "com.apple.iTunes", 0, 0, 0, 33, "name", 0, 0, 0, 0,
+                "replaygain_track_gain", 0, 0, 0, 24, "data", 0, 0, 0, 1, 0, 0, 0, 0, "-9.10 dB");
+        assertEquals(-9.1f, find(b), 1e-4);
+    }
+
+    @Test
+    public void missingOrMalformedTag_isNaN() {
+        assertTrue(Float.isNaN(find(bytes("ID3 no gain here, replaygain_album_gain=-1 dB"))));
+        assertTrue(Float.isNaN(find(bytes("REPLAYGAIN_TRACK_GAIN=abc"))));
+    }
+
+    @Test
+    public void gainIsClampedAndConvertedToVolume() {
+        assertEquals(Loudness.MIN_GAIN_DB, find(bytes("REPLAYGAIN_TRACK_GAIN=-40 dB")), 1e-6);
+        assertEquals(0.5f, Loudness.toVolume(-6.0206f), 1e-4);
+        assertEquals(1f, Loudness.toVolume(3f), 0);
+    }
+
+    @Test
+    public void meter_fullScaleSquareWave() {
+        Loudness.Meter m = new Loudness.Meter();
+        for (int i = 0; i < 1000; i++) m.add((short) (i % 2 == 0 ? 16384 : -16384));
+        assertEquals(0.5, m.rms(), 1e-9);
+        // RMS 0.5 ≈ -6 dBFS, cần giảm thêm ~12 dB để về -18 dBFS
+        assertEquals(-11.98f, m.gainDb(), 0.01);
+        assertTrue(Float.isNaN(new Loudness.Meter().gainDb()));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.music_app;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hit / miss của index metadata: file không đổi lấy thẳng từ index, đổi kích thước hoặc lastModified thì đọc lại.
+ * Thời gian quét cold / warm đo bằng ScanBenchmark (module benchmark), không đo trong unit test.
+ */
+public class MetadataCacheTest {
+
+    private static final int FILE_COUNT = 50;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<File> files = new ArrayList<>();
+    private File indexFile;
+
+    /** Đếm số lần phải đọc file thật (miss). */
+    private static class CountingReader implements MetadataReader {
+        int reads;
+
+        @Override
+        public Song read(File file, long id) {
+            reads++;
+            return new Song(id, "Title " + file.getName(), "Artist", "Album", 180_000, file.getAbsolutePath(),
+                    file.getName().equals("song3.mp3") ? Float.NaN : -4.5f);
+        }
+
+        @Override public void close() {}
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        File dir = tmp.newFolder("Music");
+        for (int i = 0; i < FILE_COUNT; i++) {
+            File f = new File(dir, "song" + i + ".mp3");
+            write(f, 16 + i % 7);
+            files.add(f);
+        }
+        indexFile = new File(tmp.getRoot(), "metadata.idx");
+    }
+
+    private static void write(File f, int bytes) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(new byte[bytes]);
+        }
+    }
+
+    /** Quét một lần với index rỗng rồi lưu, trả về số lần reader phải đọc. */
+    private int coldScan() throws IOException {
+        MetadataCache cache = new MetadataCache(indexFile);
+        cache.load();
+        CountingReader reader = new CountingReader();
+        cache.resolve(files, reader);
+        cache.save();
+        return reader.reads;
+    }
+
+    @Test
+    public void warmScan_reusesEveryEntry() throws IOException {
+        MetadataCache cold = new MetadataCache(indexFile);
+        cold.load();
+        CountingReader coldReader = new CountingReader();
+        List<Song> coldSongs = cold.resolve(files, coldReader);
+        cold.save();
+
+        MetadataCache warm = new MetadataCache(indexFile);
+        warm.load();
+        CountingReader warmReader = new CountingReader();
+        List<Song> warmSongs = warm.resolve(files, warmReader);
+
+        assertEquals(FILE_COUNT, coldReader.reads);
+        assertEquals(0, warmReader.reads);
+        assertEquals(FILE_COUNT, warm.size());
+        assertEquals(coldSongs.size(), warmSongs.size());
+        for (int i = 0; i < coldSongs.size(); i++) {
+            Song c = coldSongs.get(i), w = warmSongs.get(i);
+            assertEquals(c.getId(), w.getId());
+            assertEquals(c.getTitle(), w.getTitle());
+            assertEquals(c.getArtist(), w.getArtist());
+            assertEquals(c.getAlbum(), w.getAlbum());
+            assertEquals(c.getDuration(), w.getDuration());
+            assertEquals(c.getPath(), w.getPath());
+            assertEquals(c.getGainDb(), w.getGainDb(), 0f);
+        }
+        // Gain chưa biết (NaN) vẫn là NaN sau khi lưu / đọc lại, để được ước lượng lúc phát
+        assertTrue(Float.isNaN(warm.lookup(files.get(3), 3).getGainDb()));
+    }
+
+    @Test
+    public void lookup_missesWhenFileIsNotIndexed() {
+        MetadataCache cache = new MetadataCache(indexFile);
+        cache.load();
+        assertNull(cache.lookup(files.get(0), 1));
+        cache.put(files.get(0), new Song(1, "T", "A", 1000, files.get(0).getAbsolutePath()));
+        assertNotNull(cache.lookup(files.get(0), 1));
+        assertNull(cache.lookup(files.get(1), 2));
+    }
+
+    @Test
+    public void modifiedFile_isReExtracted() throws IOException {
+        assertEquals(FILE_COUNT, coldScan());
+
+        write(files.get(5), 4096); // đổi kích thước
+
+        MetadataCache reloaded = new MetadataCache(indexFile);
+        reloaded.load();
+        assertNull(reloaded.lookup(files.get(5), 5));
+        CountingReader reader = new CountingReader();
+        reloaded.resolve(files, reader);
+        assertEquals(1, reader.reads);
+        reloaded.save();
+
+        // Entry mới thay entry cũ: lần quét sau lại hit toàn bộ
+        MetadataCache again = new MetadataCache(indexFile);
+        again.load();
+        CountingReader none = new CountingReader();
+        again.resolve(files, none);
+        assertEquals(0, none.reads);
+    }
+
+    @Test
+    public void touchedFile_isReExtracted() throws IOException {
+        assertEquals(FILE_COUNT, coldScan());
+
+        File f = files.get(8);
+        assertTrue(f.setLastModified(f.lastModified() - 60_000)); // cùng kích thước, khác mtime
+
+        MetadataCache reloaded = new MetadataCache(indexFile);
+        reloaded.load();
+        assertNull(reloaded.lookup(f, 8));
+        assertNotNull(reloaded.lookup(files.get(9), 9));
+        CountingReader reader = new CountingReader();
+        reloaded.resolve(files, reader);
+        assertEquals(1, reader.reads);
+    }
+
+    @Test
+    public void deletedFiles_areDropped() throws IOException {
+        MetadataCache cache = new MetadataCache(indexFile);
+        cache.load();
+        cache.resolve(files, new CountingReader());
+
+        Set<String> remaining = new HashSet<>();
+        for (int i = 0; i < 10; i++) remaining.add(files.get(i).getAbsolutePath());
+        cache.retainOnly(remaining);
+        cache.save();
+
+        MetadataCache reloaded = new MetadataCache(indexFile);
+        reloaded.load();
+        assertEquals(10, reloaded.size());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.music_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlayHistoryTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Executor chạy ngay trên thread gọi: mọi lần ghi xong trước khi record() trả về. */
+    private PlayHistory open(File dir) { return new PlayHistory(dir, Runnable::run); }
+
+    private static Song song(long id) { return new Song(id, "Song " + id, "Artist", 1000, "/music/" + id + ".mp3"); }
+
+    @Test
+    public void mostAndRecentlyPlayed_surviveReopen() throws IOException {
+        File dir = tmp.newFolder();
+        PlayHistory h = open(dir);
+        h.record(1, 100, 60_000);
+        h.record(2, 200, 60_000);
+        h.record(2, 300, 30_000);
+        h.record(3, 400, 10_000);
+        h.record(2, 500, 5_000);
+        h.record(1, 600, 5_000);
+
+        assertTopIds(h.mostPlayed(2), 2, 1);
+        assertTopIds(h.recentlyPlayed(3), 1, 2, 3);
+
+        PlayHistory reopened = open(dir);
+        assertTopIds(reopened.mostPlayed(10), 2, 1, 3);
+        PlayHistory.Entry e = reopened.get(2);
+        assertEquals(3, e.plays);
+        assertEquals(95_000, e.listenedMs);
+        assertEquals(500, e.lastPlayedAt);
+    }
+
+    @Test
+    public void compaction_movesCountsIntoSnapshotAndStartsNewLog() throws IOException {
+        File dir = tmp.newFolder();
+        PlayHistory h = open(dir);
+        for (int i = 0; i < PlayHistory.COMPACT_EVENTS; i++) h.record(i % 10, i, 1000);
+        assertFalse(new File(dir, "history.log").exists());
+        assertTrue(new File(dir, "history.snap").exists());
+
+        h.record(7, 5000, 1000);
+        PlayHistory reopened = open(dir);
+        assertEquals(PlayHistory.COMPACT_EVENTS / 10 + 1, reopened.get(7).plays);
+        assertTopIds(reopened.mostPlayed(1), 7);
+    }
+
+    /** App chết sau khi ghi snapshot nhưng trước khi xoá log: log cũ không được cộng lần nữa. */
+    @Test
+    public void logAlreadyMergedIntoSnapshot_isNotCountedTwice() throws IOException {
+        File dir = tmp.newFolder();
+        File log = new File(dir, "history.log");
+        PlayHistory h = open(dir);
+        h.record(1, 100, 60_000);
+        h.record(1, 200, 60_000);
+        byte[] oldLog = Files.readAllBytes(log.toPath());
+        h.compact();
+        Files.write(log.toPath(), oldLog);
+
+        PlayHistory reopened = open(dir);
+        assertEquals(2, reopened.get(1).plays);
+        reopened.record(1, 300, 60_000);
+        assertEquals(3, open(dir).get(1).plays);
+    }
+
+    @Test
+    public void tornRecordAtEndOfLog_isDroppedAndAppendsStayAligned() throws IOException {
+        File dir = tmp.newFolder();
+        PlayHistory h = open(dir);
+        h.record(1, 100, 60_000);
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "history.log"), true)) {
+            out.write(new byte[] {0, 0, 0, 0, 0, 0, 0});
+        }
+
+        PlayHistory reopened = open(dir);
+        assertEquals(1, reopened.get(1).plays);
+        reopened.record(2, 200, 30_000);
+
+        PlayHistory again = open(dir);
+        assertEquals(1, again.get(1).plays);
+        assertEquals(30_000, again.get(2).listenedMs);
+    }
+
+    @Test
+    public void tracker_countsOnlyAudibleTime_andDropsQuickSkips() throws IOException {
+        PlayHistory h = open(tmp.newFolder());
+        PlayHistory.Tracker t = new PlayHistory.Tracker(h);
+
+        t.update(song(1), false, 10_000, 0);       // đang prepare
+        t.update(song(1), true, 10_500, 500);      // bắt đầu phát
+        t.update(song(1), false, 30_500, 20_500);  // pause sau 20 s
+        t.update(song(1), true, 90_500, 80_500);   // phát tiếp
+        t.update(song(2), true, 100_500, 90_500);  // đổi bài sau 10 s nữa
+        t.update(song(3), true, 101_500, 91_500);  // bài 2 chỉ nghe 1 s
+        t.finish(95_500);
+
+        PlayHistory.Entry first = h.get(1);
+        assertEquals(30_000, first.listenedMs);
+        assertEquals(10_500, first.lastPlayedAt);
+        assertNull(h.get(2));
+        assertEquals(4_000, h.get(3).listenedMs);
+    }
+
+    private static void assertTopIds(List<PlayHistory.Entry> entries, long... ids) {
+        assertEquals(ids.length, entries.size());
+        for (int i = 0; i < ids.length; i++) assertEquals(ids[i], entries.get(i).id);
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.music_app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Logic hàng đợi / gapless / gộp lệnh skip của PlaybackController chạy trên FakeEngine,
+ * với Scheduler giả để chủ động cho thời gian trôi.
+ */
+public class PlaybackControllerTest {
+
+    /** Engine giả: prepare chỉ ghi lại path, test tự gọi finishPrepare() / complete(). */
+    static class FakeEngine implements PlaybackEngine {
+        final boolean chainable;
+        Listener listener;
+        String preparing, prepared;
+        boolean playing;
+        int position;
+        float volume = 1f;
+        PlaybackEngine next;
+        int prepareCount, resetCount;
+
+        FakeEngine(boolean chainable) { this.chainable = chainable; }
+
+        void finishPrepare() {
+            prepared = preparing;
+            preparing = null;
+            listener.onPrepared(this);
+        }
+
+        /** Bài phát hết; engine được nối sau (nếu có) tự bắt đầu phát như MediaPlayer. */
+        void complete() {
+            playing = false;
+            FakeEngine n = (FakeEngine) next;
+            if (n != null) n.playing = true;
+            listener.onCompletion(this);
+            if (n != null) n.listener.onStartedAsNext(n);
+        }
+
+        @Override public void setListener(Listener l) { listener = l; }
+        @Override public void prepare(String path) { preparing = path; prepareCount++; }
+        @Override public void start() { if (prepared != null) playing = true; }
+        @Override public void pause() { playing = false; }
+        @Override public void seekTo(int ms) { position = ms; }
+        @Override public int getPosition() { return position; }
+        @Override public int getDuration() { return prepared != null ? 1000 : 0; }
+        @Override public boolean isPlaying() { return playing; }
+        @Override public void setVolume(float v) { volume = v; }
+
+        @Override
+        public boolean setNext(PlaybackEngine n) {
+            if (!chainable) return n == null;
+            next = n;
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            resetCount++;
+            preparing = null;
+            prepared = null;
+            playing = false;
+            position = 0;
+            next = null;
+        }
+
+        @Override public void release() { reset(); }
+    }
+
+    static class FakeScheduler implements PlaybackController.Scheduler {
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Long> due = new ArrayList<>();
+        long now;
+
+        @Override
+        public void postDelayed(Runnable r, long delayMs) {
+            tasks.add(r);
+            due.add(now + delayMs);
+        }
+
+        @Override
+        public void cancel(Runnable r) {
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                if (tasks.get(i) == r) {
+                    tasks.remove(i);
+                    due.remove(i);
+                }
+            }
+        }
+
+        @Override public long now() { return now; }
+
+        void advance(long ms) {
+            now += ms;
+            for (int i = 0; i < tasks.size(); ) {
+                if (due.get(i) <= now) {
+                    Runnable r = tasks.remove(i);
+                    due.remove(i);
+                    r.run();
+                    i = 0;
+                } else {
+                    i++;
+                }
+            }
+        }
+    }
+
+    static class RecordingHost implements PlaybackController.Host {
+        boolean focus = true;
+        int tracksReady;
+        final List<Long> transitions = new ArrayList<>();
+
+        @Override public boolean requestAudioFocus() { return focus; }
+        @Override public boolean isPlayable(String path) { return true; }
+        @Override public void onTrackReady() { tracksReady++; }
+        @Override public void onStateChanged(int positionMs) {}
+        @Override public void onTransition(long gapMs) { transitions.add(gapMs); }
+        @Override public void onError(String path, String message) { fail(message); }
+    }
+
+    private final List<FakeEngine> engines = new ArrayList<>();
+    private FakeScheduler scheduler;
+    private RecordingHost host;
+    private PlaybackController controller;
+    private boolean chainable = true;
+
+    private static List<Song> library(int n) {
+        List<Song> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) list.add(new Song(i, "Song " + i, "Artist", 1000, "/music/" + i + ".mp3"));
+        return Collections.unmodifiableList(list);
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        host = new RecordingHost();
+        controller = new PlaybackController(() -> {
+            FakeEngine e = new FakeEngine(chainable);
+            engines.add(e);
+            return e;
+        }, scheduler, host);
+        controller.setPlaylist(library(5));
+    }
+
+    private void playAndPrepare(int index) {
+        controller.playAt(index);
+        scheduler.advance(0);
+        engines.get(0).finishPrepare();
+    }
+
+    @Test
+    public void playAt_preparesAsyncThenStarts() {
+        controller.playAt(2);
+        assertTrue(controller.isPlaying());      // đang chờ prepare nhưng người dùng muốn phát
+        assertTrue(controller.isLoading());
+        scheduler.advance(0);
+
+        FakeEngine e = engines.get(0);
+        assertEquals("/music/2.mp3", e.preparing);
+        e.finishPrepare();
+        assertTrue(e.playing);
+        assertFalse(controller.isLoading());
+        assertEquals(1, host.tracksReady);
+    }
+
+    @Test
+    public void rapidSkips_areCoalescedIntoOnePrepare() {
+        controller.playAt(0);
+        scheduler.advance(0);
+        FakeEngine e = engines.get(0);
+        assertEquals(1, e.prepareCount);
+
+        // Bấm Next 3 lần liên tiếp trong lúc bài đầu còn đang prepare
+        controller.next();
+        controller.next();
+        controller.next();
+        scheduler.advance(PlaybackController.SKIP_COALESCE_MS - 1);
+        assertEquals(1, e.prepareCount);
+        scheduler.advance(1);
+
+        assertEquals(2, e.prepareCount);
+        assertEquals("/music/3.mp3", e.preparing);
+        assertEquals(3, controller.getCurrentIndex());
+    }
+
+    @Test
+    public void gapless_standbyIsPreparedAndTakesOverOnCompletion() {
+        playAndPrepare(0);
+        FakeEngine first = engines.get(0);
+        assertEquals(2, engines.size());
+        FakeEngine standby = engines.get(1);
+        assertEquals("/music/1.mp3", standby.preparing);
+        standby.finishPrepare();
+        assertSame(standby, first.next);
+
+        scheduler.now = 5000;
+        first.complete();
+
+        assertEquals(1, controller.getCurrentIndex());
+        assertTrue(standby.playing);
+        assertEquals(Collections.singletonList(0L), host.transitions);
+        // Engine cũ được dùng lại để chuẩn bị bài tiếp theo
+        assertEquals("/music/2.mp3", first.preparing);
+    }
+
+    @Test
+    public void gapless_withoutChaining_controllerStartsStandby() {
+        chainable = false;
+        playAndPrepare(0);
+        FakeEngine first = engines.get(0);
+        FakeEngine standby = engines.get(1);
+        standby.finishPrepare();
+        assertNull(first.next);
+
+        first.complete();
+        assertTrue(standby.playing);
+        assertEquals(1, controller.getCurrentIndex());
+    }
+
+    @Test
+    public void next_reusesPreparedStandby() {
+        playAndPrepare(0);
+        FakeEngine standby = engines.get(1);
+        standby.finishPrepare();
+
+        controller.next();
+        assertTrue(standby.playing);
+        assertFalse(controller.isLoading());
+        assertEquals(1, standby.prepareCount);
+    }
+
+    @Test
+    public void shuffleChange_replacesStaleStandby() {
+        playAndPrepare(0);
+        FakeEngine standby = engines.get(1);
+        standby.finishPrepare();
+        int resets = standby.resetCount;
+
+        controller.setShuffle(true);
+        String expected = controller.getQueue().peekNextSong().getPath();
+        if (!"/music/1.mp3".equals(expected)) {
+            assertTrue(standby.resetCount > resets);
+            assertEquals(expected, standby.preparing);
+        }
+        assertEquals(0, controller.getCurrentIndex());
+    }
+
+    @Test
+    public void pauseWhilePreparing_doesNotStart() {
+        controller.playAt(1);
+        controller.pause();
+        scheduler.advance(0);
+        engines.get(0).finishPrepare();
+
+        assertFalse(engines.get(0).playing);
+        assertFalse(controller.isPlaying());
+        assertEquals(1, host.tracksReady);
+    }
+
+    @Test
+    public void prepareCurrent_restoresPausedAtPosition() {
+        controller.getQueue().moveTo(3);
+        controller.prepareCurrent(false, 42_000);
+        assertEquals(42_000, controller.getPosition());
+        scheduler.advance(0);
+        FakeEngine e = engines.get(0);
+        e.finishPrepare();
+
+        assertFalse(e.playing);
+        assertEquals(42_000, e.position);
+        controller.play();
+        assertTrue(e.playing);
+    }
+
+    @Test
+    public void noAudioFocus_prepareButDoNotPlay() {
+        host.focus = false;
+        controller.playAt(0);
+        scheduler.advance(0);
+        engines.get(0).finishPrepare();
+        assertFalse(engines.get(0).playing);
+        assertFalse(controller.isPlaying());
+    }
+
+    @Test
+    public void crossfade_overlapsTracksWithEqualPowerRamp() {
+        controller.setCrossfade(400);
+        playAndPrepare(0);
+        FakeEngine first = engines.get(0);
+        FakeEngine second = engines.get(1);
+        second.finishPrepare();
+        assertNull(first.next);             // crossfade tự start engine chờ, không nối bằng setNext
+
+        first.position = 600;
+        scheduler.advance(600);
+        assertTrue(first.playing);
+        assertTrue(second.playing);
+        assertEquals(1, controller.getCurrentIndex());
+        assertEquals(0f, second.volume, 1e-6);
+
+        scheduler.advance(200);
+        assertEquals(Math.sqrt(0.5), first.volume, 1e-3);
+        assertEquals(Math.sqrt(0.5), second.volume, 1e-3);
+
+        scheduler.advance(200);
+        assertEquals(1f, second.volume, 1e-6);
+        assertFalse(first.playing);
+        assertEquals("/music/2.mp3", first.preparing);
+    }
+
+    @Test
+    public void skipDuringCrossfade_stopsOutgoingTrack() {
+        controller.setCrossfade(400);
+        playAndPrepare(0);
+        FakeEngine first = engines.get(0);
+        engines.get(1).finishPrepare();
+        first.position = 600;
+        scheduler.advance(800);
+
+        controller.pause();
+        assertFalse(first.playing);
+        scheduler.advance(0);
+        assertEquals(1f, engines.get(1).volume, 1e-6);
+    }
+
+    @Test
+    public void trackGain_isAppliedToEngineVolume() {
+        List<Song> songs = new ArrayList<>();
+        songs.add(new Song(1, "Loud", "Artist", 1000, "/music/loud.mp3", -6.0206f));
+        controller.setPlaylist(Collections.unmodifiableList(songs));
+        playAndPrepare(0);
+        assertEquals(0.5f, engines.get(0).volume, 1e-3);
+
+        controller.setVolume(0.2f);
+        assertEquals(0.1f, engines.get(0).volume, 1e-3);
+        controller.setNormalize(false);
+        assertEquals(0.2f, engines.get(0).volume, 1e-3);
+    }
+    @Test
+    public void unknownGain_isEstimatedOnceWhenTrackIsPlayed() {
+        List<String> requested = new ArrayList<>();
+        controller.setGainEstimator((path, durationMs) -> requested.add(path));
+        List<Song> songs = new ArrayList<>();
+        songs.add(new Song(1, "Không tag", "Artist", 1000, "/music/untagged.mp3", Float.NaN));
+        controller.setPlaylist(Collections.unmodifiableList(songs));
+        playAndPrepare(0);
+
+        assertEquals(Collections.singletonList("/music/untagged.mp3"), requested);
+        assertEquals(1f, engines.get(0).volume, 1e-6);   // chưa biết gain: phát ở volume gốc
+        controller.onGainEstimated("/music/untagged.mp3", -6.0206f);
+        // Đang phát: volume giảm dần, không nhảy một bậc
+        assertEquals(1f, engines.get(0).volume, 1e-6);
+        scheduler.advance(PlaybackController.GAIN_RAMP_MS / 2);
+        assertTrue(engines.get(0).volume > 0.55f && engines.get(0).volume < 0.95f);
+        scheduler.advance(PlaybackController.GAIN_RAMP_MS);
+        assertEquals(0.5f, engines.get(0).volume, 1e-3);
+
+        // Phát lại dùng kết quả đã có, không ước lượng lần nữa
+        controller.playAt(0);
+        scheduler.advance(0);
+        assertEquals(1, requested.size());
+        assertEquals(0.5f, engines.get(0).volume, 1e-3);
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.music_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PlaybackQueueTest {
+
+    private static List<Song> library(int n) {
+        List<Song> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) list.add(new Song(i, "Song " + i, "Artist", 1000, "/music/" + i + ".mp3"));
+        return Collections.unmodifiableList(list);
+    }
+
+    @Test
+    public void nextAndPrevious_wrapAround() {
+        PlaybackQueue q = new PlaybackQueue();
+        q.setLibrary(library(3));
+
+        assertEquals(-1, q.currentIndex());
+        assertEquals(0, q.next());
+        assertEquals(1, q.next());
+        assertEquals(2, q.next());
+        assertEquals(0, q.next());
+        assertEquals(2, q.previous());
+        assertEquals(0, q.peekNext());
+    }
+
+    @Test
+    public void previous_withoutCurrent_startsFromLast() {
+        PlaybackQueue q = new PlaybackQueue();
+        q.setLibrary(library(4));
+        assertEquals(3, q.previous());
+    }
+
+    @Test
+    public void indexOfId_findsTrackInListAndSongStore() {
+        PlaybackQueue q = new PlaybackQueue();
+        q.setLibrary(library(100));
+        assertEquals(42, q.indexOfId(42));
+        assertEquals(-1, q.indexOfId(1000));
+
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(library(100));
+        q.setLibrary(b.snapshot());
+        assertEquals(42, q.indexOfId(42));
+        assertEquals(-1, q.indexOfId(1000));
+    }
+
+    @Test
+    public void setLibrary_keepsCurrentTrack() {
+        PlaybackQueue q = new PlaybackQueue();
+        List<Song> first = library(5);
+        q.setLibrary(first);
+        q.moveTo(3);
+
+        List<Song> reordered = new ArrayList<>(first);
+        Collections.reverse(reordered);
+        q.setLibrary(Collections.unmodifiableList(reordered));
+
+        assertEquals(1, q.currentIndex());
+        assertEquals("/music/3.mp3", q.current().getPath());
+    }
+
+    @Test
+    public void setLibrary_sameSnapshot_isNoOp() {
+        PlaybackQueue q = new PlaybackQueue();
+        List<Song> lib = library(5);
+        q.setLibrary(lib);
+        q.moveTo(2);
+        q.setLibrary(lib);
+        assertEquals(2, q.currentIndex());
+        assertSame(lib, q.getLibrary());
+    }
+
+    @Test
+    public void emptyQueue() {
+        PlaybackQueue q = new PlaybackQueue();
+        assertTrue(q.isEmpty());
+        assertEquals(-1, q.next());
+        assertEquals(-1, q.previous());
+        assertNull(q.current());
+        assertNull(q.peekNextSong());
+    }
+
+    @Test
+    public void shuffle_keepsCurrentTrackAndVisitsEverySongOnce() {
+        PlaybackQueue q = new PlaybackQueue(new Random(7));
+        q.setLibrary(library(50));
+        q.moveTo(10);
+
+        q.setShuffle(true);
+        assertEquals(10, q.currentIndex());
+
+        Set<Integer> seen = new HashSet<>();
+        seen.add(q.currentIndex());
+        for (int i = 1; i < 50; i++) assertTrue(seen.add(q.next()));
+        assertEquals(50, seen.size());
+    }
+
+    @Test
+    public void shuffle_previousWalksBackThroughHistory() {
+        PlaybackQueue q = new PlaybackQueue(new Random(3));
+        q.setLibrary(library(20));
+        q.moveTo(0);
+        q.setShuffle(true);
+
+        int[] played = new int[5];
+        played[0] = q.currentIndex();
+        for (int i = 1; i < played.length; i++) played[i] = q.next();
+
+        for (int i = played.length - 2; i >= 0; i--) assertEquals(played[i], q.previous());
+    }
+
+    @Test
+    public void shuffle_peekNextMatchesNext() {
+        PlaybackQueue q = new PlaybackQueue(new Random(11));
+        q.setLibrary(library(30));
+        q.setShuffle(true);
+        for (int i = 0; i < 40; i++) {
+            int peek = q.peekNext();
+            assertEquals(peek, q.next());
+        }
+    }
+
+    @Test
+    public void shuffle_peekAheadMatchesUpcomingNexts() {
+        PlaybackQueue q = new PlaybackQueue(new Random(5));
+        q.setLibrary(library(10));
+        q.setShuffle(true);
+        q.next();
+        int[] ahead = new int[12];
+        for (int k = 1; k <= ahead.length; k++) ahead[k - 1] = q.peekAhead(k);
+        for (int expected : ahead) assertEquals(expected, q.next());
+    }
+
+    @Test
+    public void shuffle_disable_keepsCurrentAndRestoresOrder() {
+        PlaybackQueue q = new PlaybackQueue(new Random(5));
+        q.setLibrary(library(10));
+        q.moveTo(4);
+        q.setShuffle(true);
+        int cur = q.next();
+
+        q.setShuffle(false);
+        assertEquals(cur, q.currentIndex());
+        assertEquals((cur + 1) % 10, q.next());
+    }
+
+    @Test
+    public void shuffle_moveTo_unplayedSongBecomesNextInHistory() {
+        PlaybackQueue q = new PlaybackQueue(new Random(9));
+        q.setLibrary(library(10));
+        q.moveTo(0);
+        q.setShuffle(true);
+
+        q.moveTo(7);
+        assertEquals(7, q.currentIndex());
+        assertEquals(0, q.previous());
+    }
+
+    @Test
+    public void shuffle_newSnapshot_keepsHistoryAndQueuesAddedSongs() {
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(library(20));
+        PlaybackQueue q = new PlaybackQueue(new Random(13));
+        q.setLibrary(b.snapshot());
+        q.moveTo(4);
+        q.setShuffle(true);
+        long[] played = new long[6];
+        played[0] = q.current().getId();
+        for (int i = 1; i < played.length; i++) {
+            q.next();
+            played[i] = q.current().getId();
+        }
+
+        // Quét thêm được 10 bài: thứ tự đã nghe và bài đang phát không đổi
+        for (int i = 20; i < 30; i++) b.add(new Song(i, "Song " + i, "Artist", 1000, "/music/" + i + ".mp3"));
+        q.setLibrary(b.snapshot());
+        assertEquals(played[5], q.current().getId());
+        assertEquals(6, q.generated());
+        for (int i = played.length - 2; i >= 0; i--) {
+            q.previous();
+            assertEquals(played[i], q.current().getId());
+        }
+
+        // Đi tiếp hết vòng: mỗi bài (cả bài mới) đúng một lần
+        for (int i = 0; i < played.length - 1; i++) q.next();
+        Set<Long> seen = new HashSet<>();
+        for (long id : played) seen.add(id);
+        for (int i = played.length; i < 30; i++) {
+            q.next();
+            assertTrue(seen.add(q.current().getId()));
+        }
+        assertEquals(30, seen.size());
+    }
+
+    @Test
+    public void shuffle_newSnapshot_dropsRemovedSongsFromHistory() {
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(library(10));
+        PlaybackQueue q = new PlaybackQueue(new Random(21));
+        q.setLibrary(b.snapshot());
+        q.moveTo(0);
+        q.setShuffle(true);
+        q.next();
+        long removed = q.current().getId();
+        q.next();
+        long cur = q.current().getId();
+
+        b.removeIds(Collections.singleton(removed));
+        q.setLibrary(b.snapshot());
+        assertEquals(9, q.size());
+        assertEquals(cur, q.current().getId());
+        assertEquals(2, q.generated());
+        q.previous();
+        assertEquals(0, q.current().getId());
+
+        // Bài đang phát bị xoá: đứng ở bài liền trước trong lịch sử
+        q.next();
+        b.removeIds(Collections.singleton(cur));
+        q.setLibrary(b.snapshot());
+        assertEquals(0, q.current().getId());
+    }
+
+    @Test
+    public void shuffle_moveTo_findsEveryTrackAfterRemap() {
+        PlaybackQueue q = new PlaybackQueue(new Random(2));
+        q.setLibrary(library(40));
+        q.setShuffle(true);
+        for (int i = 0; i < 15; i++) q.next();
+        q.setLibrary(library(60));
+        for (int i = 59; i >= 0; i--) assertEquals(i, q.moveTo(i).getId());
+        // Đi qua cả 60 bài rồi tiếp tục vòng sau vẫn hợp lệ
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 60; i++) seen.add(q.next());
+        assertEquals(60, seen.size());
+    }
+
+    @Test
+    public void sequential_newSnapshotWithoutCurrent_keepsPlaceInOrder() {
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(library(10));
+        PlaybackQueue q = new PlaybackQueue();
+        q.setLibrary(b.snapshot());
+        q.moveTo(4);
+
+        b.removeIds(Collections.singleton(4L));
+        q.setLibrary(b.snapshot());
+        assertEquals(3, q.current().getId());
+        q.next();
+        assertEquals(5, q.current().getId());
+
+        // Bài đầu tiên bị xoá: vòng về bài cuối, next() lại về đầu danh sách
+        q.moveTo(0);
+        b.removeIds(Collections.singleton(0L));
+        q.setLibrary(b.snapshot());
+        assertEquals(9, q.current().getId());
+        q.next();
+        assertEquals(1, q.current().getId());
+
+        // Snapshot rỗng thì không còn bài nào
+        b.clear();
+        q.setLibrary(b.snapshot());
+        assertNull(q.current());
+    }
+}
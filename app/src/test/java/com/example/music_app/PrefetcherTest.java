@@ -0,0 +1,143 @@
+package com.example.music_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PrefetcherTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Đồng hồ giả: sleep chỉ cộng thời gian nên test không phải chờ thật. */
+    private static final class FakeClock implements Prefetcher.Clock {
+        long now = 1_000;
+        long slept;
+
+        @Override public long now() { return now; }
+        @Override public void sleep(long ms) {
+            now += ms;
+            slept += ms;
+        }
+    }
+
+    private static Prefetcher prefetcher(FakeClock clock, Prefetcher.Conditions conditions, long budget) {
+        return new Prefetcher(Runnable::run, clock, conditions, budget);
+    }
+
+    private File file(String name, byte[] data) throws IOException {
+        File f = tmp.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(data);
+        }
+        return f;
+    }
+
+    private static void box(ByteBuffer b, String type, int size) {
+        b.putInt(size);
+        for (int i = 0; i < 4; i++) b.put((byte) type.charAt(i));
+        b.position(b.position() + size - 8);
+    }
+
+    /** ftyp, rồi các box theo thứ tự cho trước (type, size). */
+    private static byte[] mp4(Object... boxes) {
+        int total = 24;
+        for (int i = 1; i < boxes.length; i += 2) total += (Integer) boxes[i];
+        ByteBuffer b = ByteBuffer.allocate(total);
+        box(b, "ftyp", 24);
+        for (int i = 0; i < boxes.length; i += 2) box(b, (String) boxes[i], (Integer) boxes[i + 1]);
+        return b.array();
+    }
+
+    @Test
+    public void plainFile_readsHeadAndTail_thenRemembersIt() throws IOException {
+        File f = file("a.mp3", new byte[3 << 20]);
+        Prefetcher p = prefetcher(new FakeClock(), () -> false, Long.MAX_VALUE);
+
+        assertEquals(Prefetcher.HEAD_BYTES + Prefetcher.TAIL_BYTES, p.warmFile(f.getPath(), 0));
+
+        long files = Metrics.PREFETCH_FILES.get();
+        p.prefetch(Collections.singletonList(f.getPath()));
+        assertTrue(p.isWarm(f.getPath()));
+        p.prefetch(Collections.singletonList(f.getPath()));
+        assertEquals(files + 1, Metrics.PREFETCH_FILES.get());
+    }
+
+    @Test
+    public void smallFile_isReadOnce() throws IOException {
+        File f = file("short.wav", new byte[100_000]);
+        Prefetcher p = prefetcher(new FakeClock(), () -> false, Long.MAX_VALUE);
+        assertEquals(100_000, p.warmFile(f.getPath(), 0));
+    }
+
+    @Test
+    public void mp4_readsMoovAfterMdat_orOnlyHeadWhenFaststart() throws IOException {
+        Prefetcher p = prefetcher(new FakeClock(), () -> false, Long.MAX_VALUE);
+
+        File late = file("late.m4a", mp4("mdat", 2 << 20, "moov", 300_000, "free", 1000));
+        assertEquals(Prefetcher.HEAD_BYTES + 300_000, p.warmFile(late.getPath(), 0));
+
+        File fast = file("fast.m4a", mp4("moov", 300_000, "mdat", 2 << 20));
+        assertEquals(Prefetcher.HEAD_BYTES, p.warmFile(fast.getPath(), 0));
+    }
+
+    @Test
+    public void backsOffAndStaysWithinBudget() throws IOException {
+        File f = file("b.mp3", new byte[1 << 20]);
+        FakeClock clock = new FakeClock();
+        int[] polls = {0};
+        Prefetcher p = prefetcher(clock, () -> ++polls[0] <= 2, 256 * 1024);
+
+        long backoffs = Metrics.PREFETCH_BACKOFFS.get();
+        p.prefetch(Collections.singletonList(f.getPath()));
+
+        assertTrue(p.isWarm(f.getPath()));
+        assertEquals(backoffs + 1, Metrics.PREFETCH_BACKOFFS.get());
+        // 2 lần chờ vì back-off, 1 MB với ngân sách 256 KB / cửa sổ = chờ thêm 3 cửa sổ
+        assertEquals(2 * Prefetcher.BACKOFF_POLL_MS + 3 * Prefetcher.BUDGET_WINDOW_MS, clock.slept);
+    }
+
+    @Test
+    public void cancel_stopsAtNextChunk_andSkipsRemainingFiles() throws IOException {
+        File a = file("a.mp3", new byte[1 << 20]);
+        File b = file("b.mp3", new byte[1 << 20]);
+        Prefetcher[] ref = new Prefetcher[1];
+        int[] chunks = {0};
+        ref[0] = prefetcher(new FakeClock(), () -> {
+            if (++chunks[0] == 3) ref[0].cancel();
+            return false;
+        }, Long.MAX_VALUE);
+
+        ref[0].prefetch(Arrays.asList(a.getPath(), b.getPath()));
+
+        assertEquals(3, chunks[0]);
+        assertFalse(ref[0].isWarm(a.getPath()));
+        assertFalse(ref[0].isWarm(b.getPath()));
+    }
+
+    @Test
+    public void disabled_doesNothing_andWarmEntriesExpire() throws IOException {
+        File f = file("c.mp3", new byte[10_000]);
+        FakeClock clock = new FakeClock();
+        Prefetcher p = prefetcher(clock, () -> false, Long.MAX_VALUE);
+
+        p.setEnabled(false);
+        p.prefetch(Collections.singletonList(f.getPath()));
+        assertFalse(p.isWarm(f.getPath()));
+
+        p.setEnabled(true);
+        p.prefetch(Collections.singletonList(f.getPath()));
+        assertTrue(p.isWarm(f.getPath()));
+        clock.now += Prefetcher.WARM_TTL_MS;
+        assertFalse(p.isWarm(f.getPath()));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.music_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QueueStateStoreTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void saveAndLoad_roundTripsShuffledQueue() throws IOException {
+        SongStore.Builder b = new SongStore.Builder();
+        for (int i = 0; i < 50; i++) b.add(new Song(i, "Bài " + i, "Ca sĩ", 1000 + i, "/music/" + i + ".mp3"));
+        SongStore library = b.snapshot();
+
+        PlaybackQueue q = new PlaybackQueue(new Random(3));
+        q.setLibrary(library);
+        q.setShuffle(true);
+        for (int i = 0; i < 7; i++) q.next();
+        Song cur = q.current();
+
+        File file = new File(tmp.getRoot(), "queue.state");
+        QueueStateStore store = new QueueStateStore(file);
+        store.save(new QueueStateStore.State(library.version(), true, q.copyShuffledOrder(), q.position(),
+                q.generated(), cur, 42_000));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        QueueStateStore.State st = new QueueStateStore(file).load();
+        assertNotNull(st);
+        assertEquals(library.version(), st.libraryVersion);
+        assertEquals(42_000, st.positionMs);
+        assertEquals(cur.getId(), st.current.getId());
+        assertEquals(cur.getPath(), st.current.getPath());
+
+        // Khôi phục trên cùng snapshot: bài hiện tại và các bài tiếp theo giống hệt hàng đợi gốc
+        PlaybackQueue restored = new PlaybackQueue(new Random(99));
+        restored.setLibrary(library);
+        assertTrue(restored.restore(st.shuffle, st.order, st.position, st.generated));
+        assertEquals(q.currentIndex(), restored.currentIndex());
+        for (int i = 0; i < 5; i++) assertEquals(q.previous(), restored.previous());
+    }
+
+    @Test
+    public void missingOrCorruptFile_loadsNull() throws IOException {
+        File file = new File(tmp.getRoot(), "queue.state");
+        assertNull(new QueueStateStore(file).load());
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{0x51, 0x53, 0x54, 0x45, 0, 0, 0, 1, 7});
+        }
+        assertNull(new QueueStateStore(file).load());
+    }
+
+    @Test
+    public void restore_rejectsMismatchedOrder() {
+        SongStore.Builder b = new SongStore.Builder();
+        for (int i = 0; i < 4; i++) b.add(new Song(i, "T", "A", 1, "/m/" + i));
+        PlaybackQueue q = new PlaybackQueue();
+        q.setLibrary(b.snapshot());
+
+        assertFalse(q.restore(true, new int[]{0, 1, 2}, 0, 1));
+        assertFalse(q.restore(true, new int[]{0, 1, 1, 2}, 0, 1));
+        assertFalse(q.restore(false, null, 9, 0));
+        assertTrue(q.restore(false, null, 2, 0));
+        assertEquals(2, q.currentIndex());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.music_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    private static Song song(long id, String title, String artist) {
+        return new Song(id, title, artist, 1000, "/music/" + id + ".mp3");
+    }
+
+    private static final List<Song> SONGS = Arrays.asList(
+            song(1, "Nơi này có anh", "Sơn Tùng M-TP"),
+            song(2, "Đừng làm trái tim anh đau", "Sơn Tùng M-TP"),
+            song(3, "Hãy trao cho anh", "Sơn Tùng M-TP"),
+            song(4, "Bohemian Rhapsody", "Queen"),
+            song(5, "Đường một chiều", "Huỳnh Tú"));
+
+    private static SearchIndex index() {
+        SearchIndex idx = new SearchIndex();
+        idx.append(SONGS);
+        return idx;
+    }
+
+    private static List<Long> ids(List<Song> songs) {
+        List<Long> ids = new ArrayList<>();
+        for (Song s : songs) ids.add(s.getId());
+        return ids;
+    }
+
+    @Test
+    public void fold_removesVietnameseDiacritics() {
+        assertEquals("duong mot chieu", SearchIndex.fold("Đường Một Chiều"));
+        assertEquals("son tung", SearchIndex.fold("Sơn Tùng"));
+    }
+
+    @Test
+    public void prefix_matchesWithoutDiacritics() {
+        assertEquals(Arrays.asList(2L, 5L), ids(index().search("du", 10)));
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(index().search("son tu", 10)));
+    }
+
+    @Test
+    public void allTermsMustMatch() {
+        assertEquals(Collections.singletonList(3L), ids(index().search("trao anh", 10)));
+    }
+
+    @Test
+    public void fuzzy_toleratesOneTypo() {
+        assertEquals(Collections.singletonList(4L), ids(index().search("bohemain", 10)));
+        assertEquals(Collections.singletonList(4L), ids(index().search("qeen", 10)));
+    }
+
+    @Test
+    public void append_indexesOnlyNewTail() {
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(SONGS.subList(0, 3));
+        SearchIndex idx = new SearchIndex();
+        idx.append(b.snapshot());
+        assertTrue(idx.search("queen", 10).isEmpty());
+
+        b.addAll(SONGS.subList(3, 5));
+        idx.append(b.snapshot());
+        assertEquals(5, idx.size());
+        assertEquals(Collections.singletonList(4L), ids(idx.search("queen", 10)));
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(idx.search("son", 10)));
+    }
+
+    @Test
+    public void removedSongs_areNotReturnedAfterReset() {
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(SONGS);
+        b.removeIds(Collections.singleton(2L));
+        SearchIndex idx = index();
+        idx.reset(b.snapshot());
+        assertEquals(Collections.singletonList(5L), ids(idx.search("duong", 10)));
+        assertEquals(Collections.singletonList(5L), ids(idx.search("du", 10)));
+    }
+
+    @Test
+    public void emptyQuery_returnsNothing() {
+        assertTrue(index().search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void limit_isRespected() {
+        assertEquals(2, index().search("anh", 2).size());
+    }
+}
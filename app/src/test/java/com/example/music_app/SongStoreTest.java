@@ -0,0 +1,124 @@
+package com.example.music_app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SongStoreTest {
+
+    private static final int TRACKS = 100_000;
+    private static final int ARTISTS = 800;
+    private static final int FOLDERS = 400;
+
+    /** Thư viện giả lập như khi đọc từ cursor: mỗi bài có chuỗi riêng, artist / thư mục lặp lại nhiều. */
+    private static List<Song> syntheticLibrary() {
+        List<Song> list = new ArrayList<>(TRACKS);
+        for (int i = 0; i < TRACKS; i++) {
+            String artist = new String("Ca sĩ số " + (i % ARTISTS));
+            String dir = "/storage/emulated/0/Music/Album " + (i % FOLDERS);
+            list.add(new Song(1_000_000L + i, "Bài hát thứ " + i, artist, 180_000 + i % 60_000,
+                    dir + "/track_" + i + ".mp3"));
+        }
+        return list;
+    }
+
+    @Test
+    public void store_sharesRepeatedStringsThroughPool() {
+        List<Song> songs = syntheticLibrary();
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(songs);
+        SongStore store = b.snapshot();
+
+        assertEquals(TRACKS, store.size());
+        assertEquals("/storage/emulated/0/Music/Album 7/track_12007.mp3", store.get(12_007).getPath());
+        // Mỗi bài có String artist riêng, nhưng store chỉ giữ một bản cho mỗi artist / thư mục / album
+        assertEquals(store.artistRef(5), store.artistRef(5 + ARTISTS));
+        assertNotSame(songs.get(5).getArtist(), songs.get(5 + ARTISTS).getArtist());
+        assertSame(store.get(5).getArtist(), store.get(5 + ARTISTS).getArtist());
+        assertEquals(store.albumRef(0), store.albumRef(TRACKS - 1));
+        int distinct = ARTISTS + FOLDERS + 1; // + album rỗng
+        assertTrue("pool " + store.poolLength(), store.poolLength() >= distinct && store.poolLength() < 2 * distinct);
+        for (int i = 0; i < TRACKS; i += 997) {
+            assertEquals(songs.get(i).getPath(), store.get(i).getPath());
+            assertEquals(songs.get(i).getArtist(), store.pooled(store.artistRef(i)));
+        }
+    }
+
+    @Test
+    public void indexOfId_findsEveryRow() {
+        List<Song> songs = syntheticLibrary();
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(songs);
+        b.add(new Song(1_000_010L, "Trùng id", "A", 1, "/m/dup.mp3"));
+        SongStore store = b.snapshot();
+
+        for (int i = 0; i < TRACKS; i++) assertEquals(i, store.indexOfId(1_000_000L + i));
+        assertEquals(10, store.indexOfId(1_000_010L)); // id trùng: row đầu tiên
+        assertEquals(-1, store.indexOfId(999_999L));
+        assertEquals(-1, store.indexOfId(1_000_000L + TRACKS + 1));
+        assertEquals(-1, SongStore.EMPTY.indexOfId(0));
+    }
+
+    @Test
+    public void views_equalByIdNotInstance() {
+        SongStore.Builder b = new SongStore.Builder();
+        b.add(new Song(7, "A", "X", 1, "/m/a.mp3"));
+        SongStore store = b.snapshot();
+
+        assertNotSame(store.get(0), store.get(0));
+        assertEquals(store.get(0), store.get(0));
+        assertEquals(store.get(0).hashCode(), store.get(0).hashCode());
+        assertEquals(new Song(7, "Khác", "Y", 2, "/m/b.mp3"), store.get(0));
+        assertFalse(store.get(0).equals(new Song(8, "A", "X", 1, "/m/a.mp3")));
+        assertFalse(store.get(0).equals(null));
+    }
+
+    @Test
+    public void views_readBackAllFields() {
+        SongStore.Builder b = new SongStore.Builder();
+        b.add(new Song(7, "Hãy trao cho anh", "Sơn Tùng M-TP", 245_000, "/music/a/b.mp3"));
+        b.add(new Song(8, "Stream", null, 1000, "content://media/external/audio/media/8"));
+        b.add(new Song(9, "NoDir", "X", 0, "file.mp3"));
+        SongStore store = b.snapshot();
+
+        Song s = store.get(0);
+        assertEquals(7, s.getId());
+        assertEquals("Hãy trao cho anh", s.getTitle());
+        assertEquals("Sơn Tùng M-TP", s.getArtist());
+        assertEquals(245_000, s.getDuration());
+        assertEquals("/music/a/b.mp3", s.getPath());
+        assertEquals("content://media/external/audio/media/8", store.get(1).getPath());
+        assertEquals("file.mp3", store.get(2).getPath());
+        assertEquals(2, store.indexOfId(9));
+    }
+
+    @Test
+    public void snapshots_areImmutable() {
+        SongStore.Builder b = new SongStore.Builder();
+        for (int i = 0; i < 20; i++) b.add(new Song(i, "T" + i, "A", 1, "/m/" + i + ".mp3"));
+        SongStore first = b.snapshot();
+        assertSame(first, b.snapshot());
+
+        for (int i = 20; i < 100; i++) b.add(new Song(i, "T" + i, "A", 1, "/m/" + i + ".mp3"));
+        b.removeIds(new HashSet<>(Arrays.asList(0L, 5L)));
+        SongStore second = b.snapshot();
+
+        assertEquals(20, first.size());
+        assertEquals(0, first.get(0).getId());
+        assertEquals("/m/5.mp3", first.get(5).getPath());
+        assertEquals(98, second.size());
+        assertEquals(1, second.get(0).getId());
+        assertEquals(-1, second.indexOfId(5));
+
+        b.clear();
+        assertEquals(0, b.snapshot().size());
+        assertEquals(98, second.size());
+        assertEquals(Collections.emptyList(), SongStore.EMPTY);
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.music_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fixture được dựng byte-by-byte trong thư mục tạm: MP3 (ID3v2.2/2.3/2.4, ID3v1, Xing, VBRI, CBR),
+ * ADTS, MP4 (moov trước / sau mdat) và WAV.
+ */
+public class TagParserTest {
+
+    // MPEG1 layer III, 128 kbps, 44.1 kHz, stereo: frame 417 byte, 1152 mẫu
+    private static final int FRAME_LEN = 417;
+    private static final byte[] MP3_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final TagParser parser = new TagParser();
+
+    // ========= MP3 =========
+    @Test
+    public void id3v23_utf16_andXing() throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        id3Frame(frames, "TIT2", 3, text(1, "Chạy Ngay Đi"));
+        id3Frame(frames, "TPE1", 3, text(0, "Son Tung"));
+        id3Frame(frames, "TALB", 3, text(1, "Sky Tour"));
+        id3Frame(frames, "TXXX", 3, txxx("REPLAYGAIN_TRACK_GAIN", "-7.25 dB"));
+        File f = write("a.mp3", id3(3, frames.toByteArray()), xingFrame(1000), mpegFrames(20));
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals("Chạy Ngay Đi", r.title);
+        assertEquals("Son Tung", r.artist);
+        assertEquals("Sky Tour", r.album);
+        assertEquals(1000L * 1152 * 1000 / 44100, r.durationMs);
+        assertEquals(-7.25f, r.gainDb, 0.001f);
+    }
+
+    @Test
+    public void id3v24_syncsafeSizes_utf8_andLargeArtworkSkipped() throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        id3Frame(frames, "APIC", 4, new byte[200_000]);   // lớn hơn cửa sổ đọc: phải nhảy qua
+        id3Frame(frames, "TIT2", 4, text(3, "Hà Nội"));
+        id3Frame(frames, "TPE1", 4, text(3, "Nghệ sĩ"));
+        File f = write("b.mp3", id3(4, frames.toByteArray()), mpegFrames(100));
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals("Hà Nội", r.title);
+        assertEquals("Nghệ sĩ", r.artist);
+        assertEquals(100L * FRAME_LEN * 8000 / 128_000, r.durationMs);   // CBR theo kích thước
+        assertTrue(Float.isNaN(r.gainDb));
+    }
+
+    @Test
+    public void id3v22_andTlen() throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        id3Frame(frames, "TT2", 2, text(0, "Old"));
+        id3Frame(frames, "TP1", 2, text(0, "Tagger"));
+        id3Frame(frames, "TLE", 2, text(0, "123456"));
+        File f = write("c.mp3", id3(2, frames.toByteArray()), mpegFrames(10));
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals("Old", r.title);
+        assertEquals("Tagger", r.artist);
+        assertEquals(123456, r.durationMs);
+    }
+
+    @Test
+    public void id3v1Only_andVbri() throws IOException {
+        byte[] v1 = new byte[128];
+        put(v1, 0, "TAG");
+        put(v1, 3, "V1 Title");
+        put(v1, 33, "V1 Artist");
+        put(v1, 63, "V1 Album");
+        File f = write("d.mp3", vbriFrame(500), mpegFrames(10), v1);
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals("V1 Title", r.title);
+        assertEquals("V1 Artist", r.artist);
+        assertEquals("V1 Album", r.album);
+        assertEquals(500L * 1152 * 1000 / 44100, r.durationMs);
+    }
+
+    @Test
+    public void paddingBetweenTagAndFirstFrame() throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        id3Frame(frames, "TIT2", 3, text(0, "Padded"));
+        File f = write("e.mp3", id3(3, frames.toByteArray()), new byte[3000], mpegFrames(40));
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals("Padded", r.title);
+        assertNull(r.artist);
+        assertEquals(40L * FRAME_LEN * 8000 / 128_000, r.durationMs);
+    }
+
+    // ========= ADTS =========
+    @Test
+    public void adts() throws IOException {
+        int frames = 600;
+        File f = write("f.aac", adtsFrames(frames, 371));
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals((long) frames * 1024 * 1000 / 44100, r.durationMs);
+        assertNull(r.title);
+    }
+
+    // ========= MP4 =========
+    @Test
+    public void mp4_moovAfterMdat() throws IOException {
+        byte[] ilst = box("ilst",
+                box("©nam", dataBox("Tên bài")),
+                box("©ART", dataBox("Ca sĩ")),
+                box("©alb", dataBox("Album")),
+                box("----", box("mean", concat(new byte[4], ascii("com.apple.iTunes"))),
+                        box("name", concat(new byte[4], ascii("replaygain_track_gain"))),
+                        dataBox("+3.10 dB")));
+        byte[] meta = box("meta", new byte[4], box("hdlr", new byte[25]), ilst);
+        byte[] moov = box("moov", mvhd(0, 44100, 44100L * 215), box("trak", new byte[5000]), box("udta", meta));
+        File f = write("g.m4a", box("ftyp", ascii("M4A "), new byte[4]), box("mdat", new byte[300_000]), moov);
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals("Tên bài", r.title);
+        assertEquals("Ca sĩ", r.artist);
+        assertEquals("Album", r.album);
+        assertEquals(215_000, r.durationMs);
+        assertEquals(3.1f, r.gainDb, 0.001f);
+    }
+
+    @Test
+    public void mp4_version1Mvhd_quickTimeMeta() throws IOException {
+        byte[] meta = box("meta", box("hdlr", new byte[25]), box("ilst", box("©nam", dataBox("QT"))));
+        byte[] moov = box("moov", mvhd(1, 1000, 61_500), box("udta", meta));
+        File f = write("h.m4a", box("ftyp", ascii("M4A "), new byte[4]), moov, box("mdat", new byte[1000]));
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals("QT", r.title);
+        assertEquals(61_500, r.durationMs);
+    }
+
+    // ========= WAV =========
+    @Test
+    public void wav() throws IOException {
+        ByteArrayOutputStream info = new ByteArrayOutputStream();
+        info.write(ascii("INFO"));
+        info.write(riffChunk("INAM", concat("Sóng".getBytes(StandardCharsets.UTF_8), new byte[1])));
+        info.write(riffChunk("IART", concat(ascii("Band"), new byte[1])));
+        byte[] fmt = new byte[16];
+        le16(fmt, 0, 1);
+        le16(fmt, 2, 2);
+        le32(fmt, 4, 44100);
+        le32(fmt, 8, 44100 * 4);
+        le16(fmt, 12, 4);
+        le16(fmt, 14, 16);
+        byte[] body = concat(ascii("WAVE"), riffChunk("fmt ", fmt), riffChunk("data", new byte[44100 * 4 * 3]),
+                riffChunk("LIST", info.toByteArray()));
+        byte[] riff = riffChunk("RIFF", body);
+        File f = write("i.wav", riff);
+
+        TagParser.Result r = parser.parse(f);
+        assertEquals("Sóng", r.title);
+        assertEquals("Band", r.artist);
+        assertEquals(3000, r.durationMs);
+
+        // Channel có sẵn (như fd của content:// Uri): parse xong channel vẫn mở cho người gọi
+        try (FileInputStream in = new FileInputStream(f)) {
+            TagParser.Result fromFd = parser.parse(in.getChannel());
+            assertEquals("Sóng", fromFd.title);
+            assertTrue(in.getChannel().isOpen());
+        }
+    }
+
+    // ========= KHÔNG NHẬN RA =========
+    @Test
+    public void unknownOrBrokenFiles_returnNull() throws IOException {
+        assertNull(parser.parse(write("j.ogg", ascii("OggS"), new byte[5000])));
+        assertNull(parser.parse(write("k.mp3", new byte[3])));
+        byte[] randomish = new byte[20_000];
+        for (int i = 0; i < randomish.length; i++) randomish[i] = (byte) (i * 31 + 7);
+        assertNull(parser.parse(write("l.bin", randomish)));
+        // Tag ID3 khai báo kích thước lớn hơn file
+        byte[] tag = id3(3, new byte[100]);
+        assertNull(parser.parse(write("m.mp3", java.util.Arrays.copyOf(tag, 60))));
+        // moov hỏng
+        assertNull(parser.parse(write("n.m4a", box("ftyp", ascii("M4A ")), ascii("\u0000\u0000\u0000\u0001moov"))));
+    }
+
+    // ========= FIXTURE =========
+    private File write(String name, byte[]... parts) throws IOException {
+        File f = new File(tmp.getRoot(), name);
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            for (byte[] p : parts) out.write(p);
+        }
+        return f;
+    }
+
+    private static byte[] mpegFrames(int count) {
+        byte[] out = new byte[count * FRAME_LEN];
+        for (int i = 0; i < count; i++) System.arraycopy(MP3_HEADER, 0, out, i * FRAME_LEN, 4);
+        return out;
+    }
+
+    /** Frame đầu chứa header Xing (sau 32 byte side info của MPEG1 stereo). */
+    private static byte[] xingFrame(int frameCount) {
+        byte[] frame = mpegFrames(1);
+        put(frame, 36, "Xing");
+        be32(frame, 40, 1);
+        be32(frame, 44, frameCount);
+        return frame;
+    }
+
+    private static byte[] vbriFrame(int frameCount) {
+        byte[] frame = mpegFrames(1);
+        put(frame, 36, "VBRI");
+        be32(frame, 36 + 14, frameCount);
+        return frame;
+    }
+
+    private static byte[] adtsFrames(int count, int frameLen) {
+        byte[] out = new byte[count * frameLen];
+        for (int i = 0; i < count; i++) {
+            int p = i * frameLen;
+            out[p] = (byte) 0xFF;
+            out[p + 1] = (byte) 0xF1;                              // MPEG-4, không CRC
+            out[p + 2] = (byte) (1 << 6 | 4 << 2);                 // AAC LC, 44.1 kHz
+            out[p + 3] = (byte) (2 << 6 | (frameLen >> 11) & 3);   // stereo
+            out[p + 4] = (byte) (frameLen >> 3);
+            out[p + 5] = (byte) ((frameLen & 7) << 5 | 0x1F);
+            out[p + 6] = (byte) 0xFC;                              // 1 raw block
+        }
+        return out;
+    }
+
+    private static byte[] id3(int major, byte[] frames) {
+        byte[] h = new byte[10];
+        put(h, 0, "ID3");
+        h[3] = (byte) major;
+        syncsafe(h, 6, frames.length + 64);
+        return concat(h, frames, new byte[64]);   // kèm padding
+    }
+
+    private static void id3Frame(ByteArrayOutputStream out, String id, int major, byte[] body) {
+        byte[] h = new byte[major == 2 ? 6 : 10];
+        put(h, 0, id);
+        if (major == 2) {
+            h[3] = (byte) (body.length >> 16);
+            h[4] = (byte) (body.length >> 8);
+            h[5] = (byte) body.length;
+        } else if (major == 4) {
+            syncsafe(h, 4, body.length);
+        } else {
+            be32(h, 4, body.length);
+        }
+        out.write(h, 0, h.length);
+        out.write(body, 0, body.length);
+    }
+
+    private static byte[] text(int encoding, String s) {
+        byte[] value = encoding == 1 ? s.getBytes(StandardCharsets.UTF_16)
+                : s.getBytes(encoding == 3 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+        return concat(new byte[]{(byte) encoding}, value);
+    }
+
+    private static byte[] txxx(String desc, String value) {
+        return concat(new byte[]{0}, ascii(desc), new byte[1], ascii(value));
+    }
+
+    private static byte[] mvhd(int version, int timescale, long duration) {
+        byte[] b = new byte[version == 1 ? 112 : 100];
+        b[0] = (byte) version;
+        if (version == 1) {
+            be32(b, 20, timescale);
+            be32(b, 24, (int) (duration >>> 32));
+            be32(b, 28, (int) duration);
+        } else {
+            be32(b, 12, timescale);
+            be32(b, 16, (int) duration);
+        }
+        return box("mvhd", b);
+    }
+
+    private static byte[] dataBox(String value) {
+        byte[] head = new byte[8];
+        head[3] = 1;   // UTF-8
+        return box("data", head, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] box(String type, byte[]... children) {
+        byte[] body = concat(children);
+        byte[] h = new byte[8];
+        be32(h, 0, body.length + 8);
+        byte[] t = type.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(t, 0, h, 4, 4);
+        return concat(h, body);
+    }
+
+    private static byte[] riffChunk(String id, byte[] body) {
+        byte[] h = new byte[8];
+        put(h, 0, id);
+        le32(h, 4, body.length);
+        return concat(h, body, new byte[body.length & 1]);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] p : parts) out.write(p, 0, p.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] ascii(String s) { return s.getBytes(StandardCharsets.ISO_8859_1); }
+
+    private static void put(byte[] b, int off, String s) {
+        byte[] a = ascii(s);
+        System.arraycopy(a, 0, b, off, a.length);
+    }
+
+    private static void be32(byte[] b, int off, int v) {
+        b[off] = (byte) (v >> 24);
+        b[off + 1] = (byte) (v >> 16);
+        b[off + 2] = (byte) (v >> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static void le32(byte[] b, int off, int v) {
+        b[off] = (byte) v;
+        b[off + 1] = (byte) (v >> 8);
+        b[off + 2] = (byte) (v >> 16);
+        b[off + 3] = (byte) (v >> 24);
+    }
+
+    private static void le16(byte[] b, int off, int v) {
+        b[off] = (byte) v;
+        b[off + 1] = (byte) (v >> 8);
+    }
+
+    private static void syncsafe(byte[] b, int off, int v) {
+        b[off] = (byte) (v >> 21 & 0x7f);
+        b[off + 1] = (byte) (v >> 14 & 0x7f);
+        b[off + 2] = (byte) (v >> 7 & 0x7f);
+        b[off + 3] = (byte) (v & 0x7f);
+    }
+}
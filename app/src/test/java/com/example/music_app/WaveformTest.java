@@ -0,0 +1,104 @@
+package com.example.music_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class WaveformTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /** PCM stereo tăng dần biên độ, đưa vào theo chunk lẻ để bucket bị cắt ngang giữa các chunk. */
+    @Test
+    public void builder_downsamplesToMinMaxPerBucket() {
+        int frames = Waveform.BUCKETS * 100;
+        Waveform.Builder b = new Waveform.Builder(frames, 2);
+        short[] chunk = new short[777];
+        int n = 0;
+        for (int f = 0; f < frames; f++) {
+            short amp = (short) (f / 100 * 32);   // bucket k có biên độ k * 32
+            chunk[n++] = amp;
+            chunk[n++] = (short) -amp;
+            if (n >= chunk.length - 1) {
+                b.add(chunk, n);
+                n = 0;
+            }
+        }
+        b.add(chunk, n);
+        byte[] peaks = b.build();
+
+        assertEquals(Waveform.BUCKETS * 2, peaks.length);
+        for (int k = 0; k < Waveform.BUCKETS; k++) {
+            assertEquals("max " + k, (byte) (k * 32 >> 8), peaks[k * 2 + 1]);
+            assertEquals("min " + k, (byte) (-k * 32 >> 8), peaks[k * 2]);
+        }
+    }
+
+    @Test
+    public void builder_extraFramesGoToLastBucket_missingFramesStaySilent() {
+        Waveform.Builder over = new Waveform.Builder(Waveform.BUCKETS, 1);
+        short[] loud = new short[Waveform.BUCKETS * 2];
+        java.util.Arrays.fill(loud, Waveform.BUCKETS, loud.length, Short.MAX_VALUE);
+        over.add(loud, loud.length);
+        byte[] p = over.build();
+        assertEquals(0, p[(Waveform.BUCKETS - 2) * 2 + 1]);
+        assertEquals(127, p[(Waveform.BUCKETS - 1) * 2 + 1]);
+
+        Waveform.Builder under = new Waveform.Builder(Waveform.BUCKETS * 10L, 1);
+        short[] half = new short[Waveform.BUCKETS * 5];
+        java.util.Arrays.fill(half, Short.MAX_VALUE);
+        under.add(half, half.length);
+        p = under.build();
+        assertEquals(127, p[(Waveform.BUCKETS / 2 - 1) * 2 + 1]);
+        assertEquals(0, p[(Waveform.BUCKETS / 2) * 2 + 1]);
+    }
+
+    @Test
+    public void builder_channelChangeKeepsFramePosition() {
+        Waveform.Builder b = new Waveform.Builder(Waveform.BUCKETS, 1);
+        short[] mono = new short[Waveform.BUCKETS / 2];
+        b.add(mono, mono.length);
+        b.setChannels(2);
+        short[] stereo = new short[Waveform.BUCKETS];
+        java.util.Arrays.fill(stereo, (short) 1000);
+        b.add(stereo, stereo.length);
+        byte[] p = b.build();
+        assertEquals(0, p[(Waveform.BUCKETS / 2 - 1) * 2 + 1]);
+        assertEquals(1000 >> 8, p[(Waveform.BUCKETS / 2) * 2 + 1]);
+        assertEquals(1000 >> 8, p[(Waveform.BUCKETS - 1) * 2 + 1]);
+    }
+
+    @Test
+    public void file_roundTripAndRejectsGarbage() throws IOException {
+        byte[] peaks = new byte[Waveform.BUCKETS * 2];
+        for (int i = 0; i < peaks.length; i++) peaks[i] = (byte) i;
+        File f = tmp.newFile("a.wf");
+        Waveform.write(f, peaks);
+        assertEquals(2 * 1024 + 10, f.length());
+        assertArrayEquals(peaks, Waveform.read(f));
+
+        assertNull(Waveform.read(new File(tmp.getRoot(), "missing.wf")));
+        File bad = tmp.newFile("bad.wf");
+        try (FileOutputStream out = new FileOutputStream(bad)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        assertNull(Waveform.read(bad));
+    }
+
+    @Test
+    public void cacheName_changesWhenFileChanges() throws IOException {
+        File song = tmp.newFile("song.mp3");
+        String before = Waveform.cacheName(song);
+        try (FileOutputStream out = new FileOutputStream(song)) {
+            out.write(new byte[100]);
+        }
+        assertFalse(before.equals(Waveform.cacheName(song)));
+    }
+}
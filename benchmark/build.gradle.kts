@@ -0,0 +1,42 @@
+// Benchmark JMH cho phần logic thuần Java của app (quét thư mục + metadata cache, hàng đợi, shuffle, tìm kiếm).
+// Chạy: ./gradlew :benchmark:jmh -PbenchTag=1.0
+// Kết quả ghi ra benchmark/results/jmh-<benchTag>.json; commit file này để so sánh giữa các phiên bản.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Biên dịch lại đúng các class không dùng API Android từ source của app, không cần tách module riêng
+val jvmSources = listOf(
+    "AudioFiles", "LatencyHistogram", "Loudness", "MetadataCache", "MetadataReader", "Metrics",
+    "PlaybackController", "PlaybackEngine", "PlaybackQueue", "Prefetcher", "QueueStateStore", "SearchIndex", "Song", "SongStore"
+)
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            setIncludes(jvmSources.map { "com/example/music_app/$it.java" })
+        }
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+val benchTag = (findProperty("benchTag") as String?) ?: "dev"
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.projectDirectory.file("results/jmh-$benchTag.json"))
+}
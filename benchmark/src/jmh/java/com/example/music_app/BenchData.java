@@ -0,0 +1,41 @@
+package com.example.music_app;
+
+import java.util.Random;
+
+/** Thư viện giả lập cho benchmark: tên bài có dấu, artist lặp lại, path chia theo thư mục như máy thật. */
+final class BenchData {
+
+    private static final String[] WORDS = {
+            "Em", "Anh", "Mưa", "Nắng", "Chiều", "Hà Nội", "Sài Gòn", "Yêu", "Nhớ", "Người", "Đêm", "Thu",
+            "Phố", "Biển", "Dòng sông", "Mùa hè", "Love", "Night", "Dream", "Heart", "Summer", "Fire", "Rain", "Blue"
+    };
+    private static final String[] ARTIST_PARTS = {
+            "Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Sơn", "Tùng", "Mỹ", "Hà", "Đen", "The", "Band", "Taylor", "Swift"
+    };
+
+    private BenchData() {}
+
+    static SongStore library(int size, long seed) {
+        Random r = new Random(seed);
+        String[] artists = new String[Math.max(1, size / 20)];
+        for (int i = 0; i < artists.length; i++) {
+            artists[i] = ARTIST_PARTS[r.nextInt(ARTIST_PARTS.length)] + " " + ARTIST_PARTS[r.nextInt(ARTIST_PARTS.length)] + " " + i;
+        }
+        SongStore.Builder b = new SongStore.Builder();
+        for (int i = 0; i < size; i++) b.add(song(r, artists, i));
+        return b.snapshot();
+    }
+
+    static Song song(Random r, String[] artists, int i) {
+        StringBuilder title = new StringBuilder();
+        int words = 1 + r.nextInt(4);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) title.append(' ');
+            title.append(WORDS[r.nextInt(WORDS.length)]);
+        }
+        String artist = artists[r.nextInt(artists.length)];
+        String path = "/storage/emulated/0/Music/" + artist + "/Album " + (i / 12) + "/" + i + " - " + title + ".mp3";
+        return new Song(Song.idForPath(path), title.toString(), artist, 120_000 + r.nextInt(240_000), path,
+                -12f + r.nextFloat() * 10f);
+    }
+}
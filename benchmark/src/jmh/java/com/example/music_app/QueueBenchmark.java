@@ -0,0 +1,146 @@
+package com.example.music_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * setPlaylist / playAt / next qua PlaybackController (engine giả prepare tức thì) và tạo thứ tự shuffle.
+ * Đo chi phí của controller + hàng đợi, không tính thời gian decoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    private SongStore library, grown;
+    private boolean useGrown;
+    private final Random random = new Random(7);
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private PlaybackController controller;
+
+    /** Engine không phát gì, prepare xong ngay trong lời gọi. */
+    static final class InstantEngine implements PlaybackEngine {
+        private Listener listener;
+        private boolean playing;
+
+        @Override public void setListener(Listener l) { listener = l; }
+        @Override public void prepare(String path) { listener.onPrepared(this); }
+        @Override public void start() { playing = true; }
+        @Override public void pause() { playing = false; }
+        @Override public void seekTo(int ms) {}
+        @Override public int getPosition() { return 0; }
+        @Override public int getDuration() { return 180_000; }
+        @Override public boolean isPlaying() { return playing; }
+        @Override public void setVolume(float volume) {}
+        @Override public boolean setNext(PlaybackEngine next) { return true; }
+        @Override public void reset() { playing = false; }
+        @Override public void release() { playing = false; }
+    }
+
+    /** Gom việc được hẹn, drain() chạy hết ngay (bỏ qua độ trễ). */
+    static final class ManualScheduler implements PlaybackController.Scheduler {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override public void postDelayed(Runnable r, long delayMs) { tasks.add(r); }
+        @Override public void cancel(Runnable r) { tasks.remove(r); }
+        @Override public long now() { return System.nanoTime() / 1_000_000; }
+
+        void drain() {
+            Runnable r;
+            while ((r = tasks.poll()) != null) r.run();
+        }
+    }
+
+    static final class NoopHost implements PlaybackController.Host {
+        @Override public boolean requestAudioFocus() { return true; }
+        @Override public boolean isPlayable(String path) { return true; }
+        @Override public void onTrackReady() {}
+        @Override public void onStateChanged(int positionMs) {}
+        @Override public void onTransition(long gapMs) {}
+        @Override public void onError(String path, String message) {}
+    }
+
+    @Setup
+    public void setUp() {
+        SongStore.Builder b = new SongStore.Builder();
+        b.addAll(BenchData.library(size, 42));
+        library = b.snapshot();
+        // Snapshot mới sau khi quét thêm một bài: trường hợp setPlaylist phải dựng lại hàng đợi
+        b.add(BenchData.song(new Random(1), new String[]{"Extra"}, size));
+        grown = b.snapshot();
+
+        controller = new PlaybackController(InstantEngine::new, scheduler, new NoopHost());
+        controller.setPlaylist(library);
+        controller.playAt(0);
+        scheduler.drain();
+    }
+
+    @Benchmark
+    public int setPlaylist_newSnapshot() {
+        useGrown = !useGrown;
+        controller.setPlaylist(useGrown ? grown : library);
+        scheduler.drain();
+        return controller.getCurrentIndex();
+    }
+
+    @Benchmark
+    public int playAt_random() {
+        controller.playAt(random.nextInt(size));
+        scheduler.drain();
+        return controller.getCurrentIndex();
+    }
+
+    @Benchmark
+    public int next() {
+        controller.next();
+        scheduler.drain();
+        return controller.getCurrentIndex();
+    }
+
+    @Benchmark
+    public int next_shuffled() {
+        if (!controller.isShuffle()) controller.setShuffle(true);
+        controller.next();
+        scheduler.drain();
+        return controller.getCurrentIndex();
+    }
+
+    /** Bật shuffle rồi đi hết hàng đợi: toàn bộ hoán vị được sinh ra. */
+    @Benchmark
+    public int shuffle_generateFullOrder() {
+        PlaybackQueue q = new PlaybackQueue(new Random(size));
+        q.setLibrary(library);
+        q.moveTo(0);
+        q.setShuffle(true);
+        int sum = 0;
+        for (int i = 1; i < size; i++) sum += q.next();
+        return sum;
+    }
+
+    /** Chỉ bật shuffle (thứ tự được sinh dần khi next). */
+    @Benchmark
+    public int shuffle_toggle() {
+        controller.setShuffle(!controller.isShuffle());
+        scheduler.drain();
+        return controller.getCurrentIndex();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.music_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tương đương LibraryScanner.runScan trên một luồng: duyệt cây thư mục giả lập, lấy metadata qua
+ * MetadataCache (cold: index rỗng, mọi file đều phải đọc; warm: index đã có từ lần quét trước) rồi dựng SongStore.
+ * Reader giả đọc tag ReplayGain ở đầu file bằng Loudness.readTagGain nên vẫn có I/O cho mỗi file bị miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+    private static final int FILES_PER_DIR = 200;
+
+    @Param({"1000", "10000", "50000"})
+    public int files;
+
+    @Param({"cold", "warm"})
+    public String metadata;
+
+    private File root;
+    private File warmIndex;
+    private File coldIndex;
+
+    private static final MetadataReader READER = new MetadataReader() {
+        @Override
+        public Song read(File f, long id) throws IOException {
+            return new Song(id, f.getName(), "Unknown", 180_000, f.getAbsolutePath(), Loudness.readTagGain(f));
+        }
+
+        @Override public void close() {}
+    };
+
+    @Setup(Level.Trial)
+    public void createLibrary() throws IOException {
+        root = Files.createTempDirectory("scan-bench-" + files).toFile();
+        byte[] tag = "ID3....TXXX....REPLAYGAIN_TRACK_GAIN\0-6.20 dB".getBytes(StandardCharsets.ISO_8859_1);
+        for (int i = 0; i < files; i++) {
+            File dir = new File(root, "artist" + (i / FILES_PER_DIR));
+            if (i % FILES_PER_DIR == 0 && !dir.mkdirs()) throw new IOException("mkdirs " + dir);
+            try (FileOutputStream out = new FileOutputStream(new File(dir, "track" + i + ".mp3"))) {
+                out.write(tag);
+            }
+        }
+        // Vài file không phải nhạc để bộ lọc đuôi file cũng được đo
+        new File(root, "cover.jpg").createNewFile();
+        new File(root, "notes.txt").createNewFile();
+
+        warmIndex = new File(root, "warm.idx");
+        coldIndex = new File(root, "cold.idx");
+        MetadataCache cache = new MetadataCache(warmIndex);
+        cache.load();
+        List<File> list = new ArrayList<>();
+        AudioFiles.collect(root, list);
+        cache.resolve(list, READER);
+        cache.save();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLibrary() throws IOException {
+        try (Stream<Path> walk = Files.walk(root.toPath())) {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public SongStore scan() {
+        MetadataCache cache = new MetadataCache("warm".equals(metadata) ? warmIndex : coldIndex);
+        cache.load();
+        List<File> list = new ArrayList<>();
+        AudioFiles.collect(root, list);
+        SongStore.Builder library = new SongStore.Builder();
+        library.addAll(cache.resolve(list, READER));
+        return library.snapshot();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.music_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Dựng SearchIndex và các kiểu truy vấn mà ô tìm kiếm gửi xuống (prefix ngắn, nhiều từ, gõ sai). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    private SongStore library;
+    private SearchIndex index;
+
+    @Setup
+    public void setUp() {
+        library = BenchData.library(size, 42);
+        index = new SearchIndex();
+        index.append(library);
+    }
+
+    @Benchmark
+    public int buildIndex() {
+        SearchIndex i = new SearchIndex();
+        i.append(library);
+        return i.size();
+    }
+
+    @Benchmark
+    public List<Song> singleCharPrefix() { return index.search("n", 500); }
+
+    @Benchmark
+    public List<Song> multiTermFolded() { return index.search("mua ha noi", 500); }
+
+    @Benchmark
+    public List<Song> typoFallback() { return index.search("sumemr", 500); }
+}
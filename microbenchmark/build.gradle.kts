@@ -0,0 +1,50 @@
+// Microbenchmark androidx.benchmark cho các đường nóng phụ thuộc Android (bind adapter, LibraryScanner).
+// Chạy trên thiết bị thật: ./gradlew :microbenchmark:connectedReleaseAndroidTest
+// Kết quả JSON nằm trong build/outputs/connected_android_test_additional_output/.
+plugins {
+    alias(libs.plugins.android.library)
+    alias(libs.plugins.androidx.benchmark)
+}
+
+android {
+    // Cùng namespace với app để source và R của app dùng lại nguyên vẹn
+    namespace = "com.example.music_app"
+    compileSdk = 36
+
+    defaultConfig {
+        minSdk = 29
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+    }
+
+    // Đo trên bản release (không debuggable) để số liệu gần với máy người dùng
+    testBuildType = "release"
+    buildTypes {
+        release {
+            isMinifyEnabled = false
+        }
+    }
+
+    sourceSets {
+        getByName("main") {
+            java.srcDir("../app/src/main/java")
+            res.srcDir("../app/src/main/res")
+        }
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+}
+
+dependencies {
+    implementation(libs.appcompat)
+    implementation(libs.material)
+    implementation(libs.activity)
+    implementation(libs.constraintlayout)
+    implementation("androidx.recyclerview:recyclerview:1.2.1")
+    implementation("androidx.cardview:cardview:1.0.0")
+    implementation("androidx.media:media:1.6.0")
+    androidTestImplementation(libs.benchmark.junit4)
+    androidTestImplementation(libs.ext.junit)
+}
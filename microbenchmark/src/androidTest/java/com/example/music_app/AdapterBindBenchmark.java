@@ -0,0 +1,86 @@
+package com.example.music_app;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Thông lượng onBindViewHolder của MusicAdapter trên thư viện 10k bài (một ViewHolder bind lần lượt từng dòng). */
+@RunWith(AndroidJUnit4.class)
+public class AdapterBindBenchmark {
+
+    private static final int SIZE = 10_000;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private MusicAdapter adapter;
+    private RecyclerView.ViewHolder holder;
+
+    // Cùng thư viện xem theo nghệ sĩ: 400 header xen giữa các bài
+    private MusicAdapter groupedAdapter;
+    private RecyclerView.ViewHolder songHolder, headerHolder;
+    private int groupedSize;
+
+    @Before
+    public void setUp() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Context context = new ContextThemeWrapper(
+                    InstrumentationRegistry.getInstrumentation().getTargetContext(), R.style.Theme_MusicApp);
+            SongStore.Builder library = new SongStore.Builder();
+            for (int i = 0; i < SIZE; i++) {
+                String path = "/storage/emulated/0/Music/Artist " + (i % 400) + "/" + i + ".mp3";
+                library.add(new Song(Song.idForPath(path), "Bài hát " + i, "Artist " + (i % 400), 200_000, path));
+            }
+            RecyclerView parent = new RecyclerView(context);
+            parent.setLayoutManager(new LinearLayoutManager(context));
+            adapter = new MusicAdapter(ArtworkLoader.get(context));
+            // List đầu tiên được áp dụng đồng bộ, không qua diff nền
+            adapter.submitList(library.snapshot());
+            holder = adapter.createViewHolder(parent, 0);
+
+            LibraryIndex.Rows rows = LibraryIndex.build(library.snapshot()).rows(LibraryIndex.Mode.ARTISTS);
+            groupedAdapter = new MusicAdapter(ArtworkLoader.get(context));
+            groupedAdapter.submitList(rows);
+            groupedSize = rows.size();
+            songHolder = groupedAdapter.createViewHolder(parent, groupedAdapter.getItemViewType(1));
+            headerHolder = groupedAdapter.createViewHolder(parent, groupedAdapter.getItemViewType(0));
+        });
+    }
+
+    @Test
+    @UiThreadTest
+    public void bind() {
+        BenchmarkState state = benchmarkRule.getState();
+        int position = 0;
+        while (state.keepRunning()) {
+            adapter.bindViewHolder(holder, position);
+            adapter.onViewRecycled(holder);
+            position = (position + 1) % SIZE;
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void bindGrouped() {
+        BenchmarkState state = benchmarkRule.getState();
+        int position = 0;
+        while (state.keepRunning()) {
+            boolean header = groupedAdapter.getItemViewType(position) != groupedAdapter.getItemViewType(1);
+            RecyclerView.ViewHolder h = header ? headerHolder : songHolder;
+            groupedAdapter.bindViewHolder(h, position);
+            groupedAdapter.onViewRecycled(h);
+            position = (position + 1) % groupedSize;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.music_app;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LibraryScanner đầy đủ (worker pool + gửi batch về main thread) với metadata đã có trong index.
+ * File giả lập không phải nhạc thật nên đường cold (MediaMetadataRetriever) được đo ở module JMH bằng reader giả.
+ */
+@RunWith(Parameterized.class)
+public class ScannerBenchmark {
+
+    @Parameterized.Parameters(name = "files={0}")
+    public static Collection<Object[]> sizes() { return Arrays.asList(new Object[][]{{1_000}, {10_000}}); }
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int files;
+    private File root;
+    private LibraryScanner scanner;
+
+    public ScannerBenchmark(int files) { this.files = files; }
+
+    @Before
+    public void setUp() throws IOException {
+        File cacheDir = InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir();
+        root = new File(cacheDir, "scan-bench-" + files);
+        File index = new File(cacheDir, "scan-bench-" + files + ".idx");
+        MetadataCache cache = new MetadataCache(index);
+        cache.load();
+        for (int i = 0; i < files; i++) {
+            File dir = new File(root, "artist" + (i / 200));
+            dir.mkdirs();
+            File f = new File(dir, "track" + i + ".mp3");
+            if (!f.exists() && !f.createNewFile()) throw new IOException("Không tạo được " + f);
+            cache.put(f, new Song(Song.idForPath(f.getAbsolutePath()), "Track " + i, "Artist " + (i / 200), 200_000,
+                    f.getAbsolutePath()));
+        }
+        cache.save();
+        scanner = new LibraryScanner(new MetadataCache(index));
+    }
+
+    @After
+    public void tearDown() { scanner.shutdown(); }
+
+    @Test
+    public void warmScan() throws InterruptedException {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            CountDownLatch done = new CountDownLatch(1);
+            List<Song> songs = new ArrayList<>(files);
+            scanner.scan(root, new LibraryScanner.Callback() {
+                @Override public void onBatch(List<Song> batch) { songs.addAll(batch); }
+                @Override public void onFinished(int total) { done.countDown(); }
+            });
+            if (!done.await(60, TimeUnit.SECONDS)) throw new AssertionError("Quét quá lâu");
+            if (songs.size() != files) throw new AssertionError("Quét được " + songs.size() + "/" + files);
+        }
+    }
+}
@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Music_app"
 include(":app")
+include(":benchmark")
+include(":microbenchmark")
  
\ No newline at end of file